@@ -19,9 +19,12 @@ package com.git.ifly6.communique.data;
 
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -44,9 +47,14 @@ public class Communique7Parser {
      */
     public static final int VERSION = 13;
 
+    private static final Logger LOGGER = Logger.getLogger(Communique7Parser.class.getName());
+
     /** List of recipients changed by various actions and applications called by the parser. */
     private Set<CommuniqueRecipient> recipients = new LinkedHashSet<>();
 
+    /** Decompositions of tokens applied by this parser, so that each is only decomposed once. */
+    private final CommuniqueDecompositionMemo memo = new CommuniqueDecompositionMemo();
+
     /**
      * Creates a new empty parser without any applied tokens. To actually use the parser, apply tokens using the apply
      * methods, either in the form of a <code>List&lt;String&gt;</code> or any number of
@@ -57,26 +65,31 @@ public class Communique7Parser {
 
     /**
      * Applies the tokens, specified in the <code>CommuniqueRecipient</code> object, to the recipients list in the
-     * parser.
+     * parser. The token is planned like a list of one, so that its decomposition is remembered for the rest of the
+     * parse.
      * @param token a <code>CommuniqueRecipient</code>
      * @return this parser
      */
     public Communique7Parser apply(CommuniqueRecipient token) throws JTelegramException {
-        recipients = token.getFilterType().apply(recipients, token);
         /* This is the beautiful part, because I've chained everything to a filter, this means that I don't have to
          * write any code whatsoever to sort things into what they have to do, unlike the old parser. Now, everything is
          * chained to an ENUM which already knows exactly what it has to do, and therefore, everything is already dealt
          * with. */
-        return this;
+        return apply(Collections.singletonList(token));
     }
 
     /**
-     * Applies the tokens to the recipients list with a specified list of tokens.
+     * Applies the tokens to the recipients list with a specified list of tokens. Tokens are planned before any is
+     * decomposed, by {@link CommuniqueQueryPlan}, which gives the same result as applying them one by one while
+     * skipping decompositions which cannot change it. Each token is decomposed at most once for the life of this
+     * parser, however many times it is referred to, whatever its filter type.
      * @param list of {@link CommuniqueRecipient}
      * @return this parser
      */
     public Communique7Parser apply(List<CommuniqueRecipient> list) throws JTelegramException {
-        list.forEach(this::apply);
+        CommuniqueQueryPlan plan = CommuniqueQueryPlan.of(list, recipients.isEmpty(), memo);
+        recipients = plan.execute(recipients);
+        if (LOGGER.isLoggable(Level.FINE)) LOGGER.fine(plan.explain());
         return this;
     }
 
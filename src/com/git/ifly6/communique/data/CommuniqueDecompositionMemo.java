@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.NSPriority;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Remembers decompositions of tokens for the length of one parse, so that a token referred to more than once, such as
+ * {@code tag:wa} and {@code -tag:wa}, is decomposed once. Decompositions are keyed on recipient type and name, not
+ * filter type; recipients remembered keep the filter type of whichever token was decomposed first. Concurrent requests
+ * for the same key share one decomposition. A failed or cancelled decomposition is forgotten. Decompositions run with
+ * the {@link NSPriority} of the thread asking for them, whichever thread runs them.
+ * <p>
+ * Nation tokens decompose to themselves and are not remembered.
+ * </p>
+ * @since version 13
+ */
+class CommuniqueDecompositionMemo {
+
+    private final Map<Key, CompletableFuture<List<CommuniqueRecipient>>> memo = new ConcurrentHashMap<>();
+    private final Function<CommuniqueRecipient, List<CommuniqueRecipient>> decomposer;
+
+    CommuniqueDecompositionMemo() {
+        this(CommuniqueRecipient::decompose);
+    }
+
+    /** @param decomposer to apply to tokens not remembered */
+    CommuniqueDecompositionMemo(Function<CommuniqueRecipient, List<CommuniqueRecipient>> decomposer) {
+        this.decomposer = decomposer;
+    }
+
+    /**
+     * @param token to look up
+     * @return true if token is, or is being, decomposed
+     */
+    boolean contains(CommuniqueRecipient token) {
+        return memo.containsKey(new Key(token));
+    }
+
+    /**
+     * Decomposes token, or returns decomposition already started.
+     * @param token    to decompose
+     * @param executor on which to decompose, if not yet started, with the priority of this thread
+     * @return future completing with decomposition
+     */
+    CompletableFuture<List<CommuniqueRecipient>> decompose(CommuniqueRecipient token, Executor executor) {
+        if (token.getRecipientType() == CommuniqueRecipientType.NATION)
+            return CompletableFuture.completedFuture(token.decompose());
+
+        Key key = new Key(token);
+        CompletableFuture<List<CommuniqueRecipient>> existing = memo.get(key);
+        if (existing != null) return existing;
+
+        CompletableFuture<List<CommuniqueRecipient>> created = new CompletableFuture<>();
+        existing = memo.putIfAbsent(key, created);
+        if (existing != null) return existing;
+
+        created.whenComplete((r, e) -> {
+            if (e != null) memo.remove(key, created);
+        });
+        NSPriority priority = NSPriority.current(); // of the asking thread, not the executor's
+        executor.execute(() -> {
+            if (created.isDone()) return; // cancelled before started
+            try {
+                created.complete(priority.call(() -> decomposer.apply(token)));
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+    /** @return number of decompositions remembered */
+    int size() {
+        return memo.size();
+    }
+
+    private static class Key {
+        private final CommuniqueRecipientType type;
+        private final String name;
+
+        private Key(CommuniqueRecipient token) {
+            this.type = token.getRecipientType();
+            this.name = token.getName();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return type == key.type && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, name);
+        }
+    }
+}
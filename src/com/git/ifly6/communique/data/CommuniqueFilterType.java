@@ -17,8 +17,8 @@
 
 package com.git.ifly6.communique.data;
 
+import com.git.ifly6.nsapi.NSNameSet;
 
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -149,7 +149,7 @@ public enum CommuniqueFilterType {
     private static Set<String> decomposeToNameSet(CommuniqueRecipient recipient) {
         return recipient.decompose().stream() // turn it into the raw recipients
                 .map(CommuniqueRecipient::getName) // get strings for matching
-                .collect(Collectors.toCollection(HashSet::new)); // for fast Set#contains()
+                .collect(Collectors.toCollection(NSNameSet::new)); // for fast Set#contains(), a bit per name
     }
 
     /**
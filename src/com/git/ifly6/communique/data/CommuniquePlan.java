@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.CommuniqueUtilities;
+import com.git.ifly6.communique.io.CommuniqueConfig;
+import com.git.ifly6.communique.io.CommuniqueProcessingAction;
+import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.builders.NSNationShard;
+import com.git.ifly6.nsapi.ctelegram.CommRecipientChecker;
+import com.git.ifly6.nsapi.ctelegram.io.cache.CommDelegatesCache;
+import com.git.ifly6.nsapi.ctelegram.io.cache.CommNationCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.stream.Collectors;
+
+/**
+ * Pre-flight estimate of the API calls a configuration will make and how long it will take, made without contacting
+ * the API. Each recipient token is costed by the calls its decomposition makes: one list for a region, the World
+ * Assembly, or new nations; one list of regions and then one per region for a region tag; and one lookup for the
+ * nation whose endorsers are wanted. Prioritising delegates costs one list of delegates. Each recipient then costs
+ * one {@link CommRecipientChecker} lookup when sent.
+ * Lookups already in {@link CommNationCache} or {@link CommDelegatesCache} are not counted.
+ * <p>
+ * Time is projected from the current {@link NSConnection#getRateLimiter() rate limit} and the configured telegram
+ * interval. Recipient lookups are made while waiting between telegrams, so sending takes the longer of the two.
+ * </p>
+ * <p>
+ * Some costs depend on lists not yet fetched, such as the number of regions with a tag. Those tokens are marked
+ * {@link Step#isOpen() open} and only their known cost is counted. Recipients are likewise unknown until the
+ * configuration is decomposed, unless it names only nations; pass the decomposed recipients to
+ * {@link #of(CommuniqueConfig, List)} to cost sending exactly.
+ * </p>
+ * @since version 13
+ */
+public class CommuniquePlan {
+
+    /** Age within which delegates and endorsers are reused when decomposing; see {@link CommuniqueRecipientType}. */
+    private static final Duration RECENT = Duration.ofSeconds(70);
+
+    private final List<Step> steps;
+    private final int processingCalls;
+    private final OptionalInt recipients;
+    private final int lookups;
+    private final double rate;
+    private final Duration interval;
+
+    private CommuniquePlan(CommuniqueConfig config, List<CommuniqueRecipient> tokens, List<String> recipients) {
+        this.steps = Collections.unmodifiableList(plan(tokens));
+        this.processingCalls = config.getProcessingAction() == CommuniqueProcessingAction.DELEGATE_PRIORITISE
+                && !isDelegatesCached(CommDelegatesCache.CACHE_DURATION) ? 1 : 0;
+        this.rate = NSConnection.getRateLimiter().getRate();
+        this.interval = config.getTelegramInterval();
+        if (recipients == null) {
+            this.recipients = OptionalInt.empty();
+            this.lookups = 0;
+        } else {
+            this.recipients = OptionalInt.of(recipients.size());
+            this.lookups = (int) recipients.stream()
+                    .filter(r -> !CommRecipientChecker.isCached(r))
+                    .count();
+        }
+    }
+
+    /**
+     * Plans configuration before it is decomposed. If it names only nations, decomposition is free and the recipients
+     * are costed too.
+     * @param config to plan
+     * @return plan
+     */
+    public static CommuniquePlan of(CommuniqueConfig config) {
+        List<CommuniqueRecipient> tokens = tokens(config);
+        List<String> recipients = tokens.stream().allMatch(CommuniquePlan::isFree)
+                ? new Communique7Parser().apply(tokens).listRecipients()
+                : null;
+        return new CommuniquePlan(config, tokens, recipients);
+    }
+
+    /**
+     * Plans configuration which has already been decomposed.
+     * @param config     to plan
+     * @param recipients to which telegrams will be sent, from decomposing {@code config}
+     * @return plan
+     */
+    public static CommuniquePlan of(CommuniqueConfig config, List<String> recipients) {
+        return new CommuniquePlan(config, tokens(config), recipients);
+    }
+
+    private static List<CommuniqueRecipient> tokens(CommuniqueConfig config) {
+        List<CommuniqueRecipient> tokens = config.getcRecipients();
+        return tokens == null ? Collections.emptyList() : tokens;
+    }
+
+    /** @return true if token decomposes without calls to the API or its caches */
+    private static boolean isFree(CommuniqueRecipient token) {
+        return token.getRecipientType() == CommuniqueRecipientType.NATION || isRegex(token);
+    }
+
+    private static boolean isRegex(CommuniqueRecipient token) {
+        return token.getFilterType() == CommuniqueFilterType.REQUIRE_REGEX
+                || token.getFilterType() == CommuniqueFilterType.EXCLUDE_REGEX;
+    }
+
+    private static List<Step> plan(List<CommuniqueRecipient> tokens) {
+        List<Step> steps = new ArrayList<>(tokens.size());
+        for (CommuniqueRecipient token : tokens)
+            steps.add(cost(token));
+        return steps;
+    }
+
+    /** @return calls made decomposing token */
+    private static Step cost(CommuniqueRecipient token) {
+        if (isRegex(token)) return new Step(token, 0, false);
+        switch (token.getRecipientType()) {
+            case REGION_TAG:
+                return new Step(token, 1, true); // then one per region
+            case REGION:
+                return new Step(token, 1, false);
+            case TAG:
+                boolean cached = token.getName().equals("delegates") && isDelegatesCached(RECENT);
+                return new Step(token, cached ? 0 : 1, false);
+            case ENDORSERS_OF:
+                boolean endorsers = CommNationCache.getInstance()
+                        .isCached(token.getName(), RECENT, NSNationShard.ENDORSEMENT_LIST);
+                return new Step(token, endorsers ? 0 : 1, false);
+            case _HAPPENINGS:
+            case _MOVEMENT:
+            case _APPROVALS:
+            case _VOTING:
+                return new Step(token, 1, false); // on each update
+            default:
+                return new Step(token, 0, false);
+        }
+    }
+
+    private static boolean isDelegatesCached(Duration age) {
+        return CommDelegatesCache.getInstance().isCached(CommDelegatesCache.DELEGATE_KEY, age);
+    }
+
+    /** @return cost of each recipient token, in order */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /** @return known number of API calls made decomposing recipients and applying the processing action */
+    public int getDecompositionCalls() {
+        return steps.stream().mapToInt(Step::getCalls).sum() + processingCalls;
+    }
+
+    /** @return true if decomposition makes further calls, depending on lists not yet fetched */
+    public boolean isOpen() {
+        return steps.stream().anyMatch(Step::isOpen);
+    }
+
+    /** @return number of recipients, if known */
+    public OptionalInt getRecipients() {
+        return recipients;
+    }
+
+    /** @return number of recipients not in the nation cache, each of which is looked up before sending */
+    public int getLookups() {
+        return lookups;
+    }
+
+    /** @return known time spent on API calls decomposing recipients */
+    public Duration getDecompositionTime() {
+        return atRate(getDecompositionCalls());
+    }
+
+    /** @return time to send to all recipients, including lookups; zero if recipients are not known */
+    public Duration getSendingTime() {
+        Duration telegrams = interval.multipliedBy(recipients.orElse(0));
+        Duration checks = atRate(lookups);
+        return telegrams.compareTo(checks) >= 0 ? telegrams : checks;
+    }
+
+    /** @return total time for decomposition and sending */
+    public Duration getTotalTime() {
+        return getDecompositionTime().plus(getSendingTime());
+    }
+
+    private Duration atRate(int calls) {
+        return Duration.ofMillis(Math.round(calls / rate * 1000));
+    }
+
+    @Override
+    public String toString() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Decomposition: %d API calls%s, taking %s", getDecompositionCalls(),
+                isOpen() ? ", plus one per region in " + steps.stream()
+                        .filter(Step::isOpen)
+                        .map(s -> s.getToken().toString())
+                        .collect(Collectors.joining(", "))
+                        : "",
+                CommuniqueUtilities.time(getDecompositionTime().getSeconds())));
+        if (recipients.isPresent())
+            lines.add(String.format("Sending: %d recipients, %d to look up first, taking %s",
+                    recipients.getAsInt(), lookups, CommuniqueUtilities.time(getSendingTime().getSeconds())));
+        else lines.add("Sending: recipients not known until decomposed");
+        return String.join("\n", lines);
+    }
+
+    /** Cost of decomposing one recipient token. */
+    public static class Step {
+        private final CommuniqueRecipient token;
+        private final int calls;
+        private final boolean open;
+
+        private Step(CommuniqueRecipient token, int calls, boolean open) {
+            this.token = token;
+            this.calls = calls;
+            this.open = open;
+        }
+
+        /** @return token costed */
+        public CommuniqueRecipient getToken() {
+            return token;
+        }
+
+        /** @return known number of API calls made decomposing token */
+        public int getCalls() {
+            return calls;
+        }
+
+        /** @return true if token makes further calls, depending on a list not yet fetched */
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d%s calls", token, calls, open ? "+" : "");
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.NSNameSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Plans and executes a list of recipient tokens, giving the same recipients, in the same order, as applying each
+ * token's {@link CommuniqueFilterType} in turn, but fetching less. Tokens become operators on the recipient set:
+ * {@link Kind#UNION} for tokens adding recipients, {@link Kind#INTERSECT} for {@code +} tokens, {@link Kind#MINUS} for
+ * {@code -} tokens, and {@link Kind#REGEX} for regular expression filters. The plan then
+ * <ul>
+ *     <li>applies runs of {@code +nation:} or {@code -nation:} tokens as one operator on a set of names, without
+ *     decomposing them;</li>
+ *     <li>skips filters while there are no recipients to filter, without decomposing them;</li>
+ *     <li>fetches intersections first, last first, so that if one is empty, or is a run of nations which can never
+ *     match together, nothing before it is fetched at all; only intersections before any stateful token are so
+ *     fetched, so stateful tokens are neither reordered nor skipped; and</li>
+ *     <li>filters a union directly followed by an intersection as it is added, hashing the names of whichever side is
+ *     smaller, rather than adding the whole union and then filtering it.</li>
+ * </ul>
+ * <p>
+ * Tokens whose decomposition calls the API are independent of one another, so when there is more than one, they are
+ * decomposed concurrently before execution, on up to {@link #PREFETCH_THREADS} threads. Requests still pass through the
+ * shared rate limiter in {@link com.git.ifly6.nsapi.NSConnection NSConnection}; filters are still applied in token
+ * order. Stateful tokens, whose monitors depend on when they are asked, are decomposed in order as before.
+ * </p>
+ * <p>
+ * {@link #explain()} describes the plan and, once executed, what it did. A plan is executed once.
+ * </p>
+ * @since version 13
+ */
+public class CommuniqueQueryPlan {
+
+    /** Operators on the recipient set. */
+    public enum Kind {
+        /** Adds recipients from decomposing token. */
+        UNION,
+        /** Keeps recipients with names among those from decomposing token. */
+        INTERSECT,
+        /** Removes recipients with names among those from decomposing token. */
+        MINUS,
+        /** Keeps or removes recipients with names matching regular expression. */
+        REGEX
+    }
+
+    /** Maximum number of tokens decomposed at once. */
+    public static final int PREFETCH_THREADS = 4;
+
+    private static final ExecutorService PREFETCH = prefetchExecutor();
+
+    private final int tokens;
+    private final List<Operator> operators;
+    private boolean executed;
+
+    private CommuniqueQueryPlan(List<CommuniqueRecipient> tokens, boolean startsEmpty,
+                                CommuniqueDecompositionMemo memo) {
+        this.tokens = tokens.size();
+        this.operators = operators(tokens instanceof RandomAccess ? tokens : new ArrayList<>(tokens), memo);
+        prune(startsEmpty);
+    }
+
+    /**
+     * Plans tokens, applied to an empty recipient set.
+     * @param tokens to plan
+     * @return plan
+     */
+    public static CommuniqueQueryPlan of(List<CommuniqueRecipient> tokens) {
+        return new CommuniqueQueryPlan(tokens, true, new CommuniqueDecompositionMemo());
+    }
+
+    /**
+     * Plans tokens.
+     * @param tokens      to plan
+     * @param startsEmpty true if the recipient set to which they are applied is empty
+     * @return plan
+     */
+    static CommuniqueQueryPlan of(List<CommuniqueRecipient> tokens, boolean startsEmpty) {
+        return new CommuniqueQueryPlan(tokens, startsEmpty, new CommuniqueDecompositionMemo());
+    }
+
+    /**
+     * Plans tokens, taking decompositions from and adding them to memo.
+     * @param tokens      to plan
+     * @param startsEmpty true if the recipient set to which they are applied is empty
+     * @param memo        of decompositions in this parse
+     * @return plan
+     */
+    static CommuniqueQueryPlan of(List<CommuniqueRecipient> tokens, boolean startsEmpty,
+                                  CommuniqueDecompositionMemo memo) {
+        return new CommuniqueQueryPlan(tokens, startsEmpty, memo);
+    }
+
+    private static ExecutorService prefetchExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "communique-prefetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** Groups tokens into operators, in order; runs of nation filters become one operator. */
+    private static List<Operator> operators(List<CommuniqueRecipient> tokens, CommuniqueDecompositionMemo memo) {
+        List<Operator> operators = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); ) {
+            CommuniqueRecipient token = tokens.get(i);
+            int end = i + 1;
+            if (isNationFilter(token))
+                while (end < tokens.size() && isNationFilter(tokens.get(end))
+                        && tokens.get(end).getFilterType() == token.getFilterType())
+                    end++;
+            operators.add(new Operator(i + 1, new ArrayList<>(tokens.subList(i, end)), memo));
+            i = end;
+        }
+        return Collections.unmodifiableList(operators);
+    }
+
+    /** @return true if token includes or excludes a single nation */
+    private static boolean isNationFilter(CommuniqueRecipient token) {
+        return token.getRecipientType() == CommuniqueRecipientType.NATION
+                && (token.getFilterType() == CommuniqueFilterType.INCLUDE
+                || token.getFilterType() == CommuniqueFilterType.EXCLUDE);
+    }
+
+    /** Skips operators which cannot change the result, as far as is known before fetching anything. */
+    private void prune(boolean startsEmpty) {
+        boolean empty = startsEmpty;
+        for (int i = 0; i < operators.size(); i++) {
+            Operator op = operators.get(i);
+            if (op.kind == Kind.UNION) {
+                empty = false;
+                continue;
+            }
+            if (empty) op.skip("no recipients to filter");
+            else if (op.kind == Kind.INTERSECT && op.names != null && op.names.isEmpty()) {
+                kill(i, String.format("emptied by step %d", op.step));
+                op.skip("nations named never match together; no recipients");
+                op.clears = true;
+                empty = true;
+            }
+        }
+    }
+
+    /** Skips every operator before index, as the recipient set is empty after it. */
+    private void kill(int index, String reason) {
+        for (int i = 0; i < index; i++)
+            if (!operators.get(i).isSkipped()) operators.get(i).skip(reason);
+        release();
+    }
+
+    /** Cancels prefetches of skipped operators, unless shared with an operator still to run. */
+    private void release() {
+        for (Operator op : operators) {
+            if (op.prefetched == null || !op.isSkipped()) continue;
+            boolean shared = operators.stream().anyMatch(o -> o.prefetched == op.prefetched && !o.isSkipped());
+            if (!shared) op.prefetched.cancel(false);
+        }
+    }
+
+    /** Starts decomposing every operator which calls the API and may be needed, if there is more than one. */
+    private void prefetch() {
+        List<Operator> remote = operators.stream()
+                .filter(op -> !op.isSkipped() && op.names == null && op.kind != Kind.REGEX)
+                .filter(op -> {
+                    CommuniqueRecipientType type = op.tokens.get(0).getRecipientType();
+                    return type != CommuniqueRecipientType.NATION && !type.stateful();
+                })
+                .collect(Collectors.toList());
+        if (remote.size() < 2) return;
+        for (Operator op : remote) op.prefetched = op.decompose(PREFETCH);
+    }
+
+    /** @return operators, in token order */
+    public List<Operator> getOperators() {
+        return operators;
+    }
+
+    /**
+     * Executes plan.
+     * @param recipients to which tokens are applied, which is modified
+     * @return recipients after all tokens are applied
+     * @throws IllegalStateException if plan was already executed
+     */
+    public Set<CommuniqueRecipient> execute(Set<CommuniqueRecipient> recipients) {
+        if (executed) throw new IllegalStateException("Query plan already executed");
+        executed = true;
+        prefetch();
+
+        // fetch intersections first, last first; an empty one empties everything before it
+        int start = 0;
+        for (int i = firstStateful() - 1; i >= 0; i--) {
+            Operator op = operators.get(i);
+            if (!isFetchedFirst(op)) continue;
+            if (op.fetch().isEmpty()) {
+                kill(i, String.format("emptied by step %d", op.step));
+                op.note("fetched first; empty, so no recipients");
+                recipients.clear();
+                start = i + 1;
+                break;
+            }
+            op.note("fetched first");
+        }
+
+        for (int i = start; i < operators.size(); i++) {
+            Operator op = operators.get(i);
+            if (op.clears) recipients.clear();
+            if (op.isSkipped()) continue;
+            if (op.kind != Kind.UNION && recipients.isEmpty()) {
+                op.skip("no recipients left to filter");
+                release();
+                continue;
+            }
+
+            switch (op.kind) {
+                case UNION:
+                    Operator next = i + 1 < operators.size() ? operators.get(i + 1) : null;
+                    if (next != null && next.kind == Kind.INTERSECT && !next.isSkipped()) {
+                        unionIntersect(recipients, op, next);
+                        i++;
+                    } else recipients.addAll(op.fetch());
+                    break;
+                case INTERSECT:
+                    Set<String> included = op.names();
+                    recipients.removeIf(r -> !included.contains(r.getName()));
+                    break;
+                case MINUS:
+                    Set<String> excluded = op.names();
+                    recipients.removeIf(r -> excluded.contains(r.getName()));
+                    break;
+                case REGEX:
+                    CommuniqueRecipient token = op.tokens.get(0);
+                    recipients = token.getFilterType().apply(recipients, token);
+                    break;
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Adds union, then intersects, as one pass over the union. Equivalent to adding every recipient in union and then
+     * keeping only those in intersection: recipients already present are filtered, and of the union only those in the
+     * intersection are added, in order.
+     */
+    private static void unionIntersect(Set<CommuniqueRecipient> recipients, Operator union, Operator intersect) {
+        List<CommuniqueRecipient> added = union.fetch();
+        Set<String> keep;
+        if (recipients.isEmpty() && intersect.names == null && added.size() < intersect.fetched.size()) {
+            // hash union, the smaller side, and probe it with the intersection
+            Set<String> unionNames = names(added);
+            keep = new NSNameSet();
+            for (CommuniqueRecipient r : intersect.fetched)
+                if (unionNames.contains(r.getName())) keep.add(r.getName());
+            union.note(String.format("hashed (%d) and probed with step %d (%d)", added.size(), intersect.step,
+                    intersect.fetched.size()));
+        } else {
+            keep = intersect.names();
+            union.note(String.format("filtered by step %d (%d hashed) as added (%d)", intersect.step, keep.size(),
+                    added.size()));
+        }
+
+        recipients.removeIf(r -> !keep.contains(r.getName()));
+        for (CommuniqueRecipient r : added)
+            if (keep.contains(r.getName())) recipients.add(r);
+        intersect.note(String.format("applied with step %d", union.step));
+    }
+
+    /**
+     * @return index of first operator with a stateful token still to run; number of operators if none. Stateful
+     * tokens are decomposed in token order, so nothing from here on is fetched first.
+     */
+    private int firstStateful() {
+        for (int i = 0; i < operators.size(); i++)
+            if (!operators.get(i).isSkipped() && operators.get(i).tokens.get(0).getRecipientType().stateful())
+                return i;
+        return operators.size();
+    }
+
+    /** @return true if operator is an intersection to be fetched first, if before any stateful token */
+    private static boolean isFetchedFirst(Operator op) {
+        return op.kind == Kind.INTERSECT && !op.isSkipped() && op.names == null;
+    }
+
+    private static Set<String> names(List<CommuniqueRecipient> recipients) {
+        Set<String> names = new NSNameSet();
+        for (CommuniqueRecipient r : recipients) names.add(r.getName());
+        return names;
+    }
+
+    /** @return description of plan, one line per operator, with what it did if executed */
+    public String explain() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Query plan for %d tokens in %d operators%s:", tokens, operators.size(),
+                executed ? ", executed" : ""));
+        List<String> first = operators.subList(0, firstStateful()).stream()
+                .filter(CommuniqueQueryPlan::isFetchedFirst)
+                .map(op -> String.valueOf(op.step))
+                .collect(Collectors.toList());
+        if (!first.isEmpty()) lines.add("  fetching intersections first, last first: steps "
+                + String.join(", ", first));
+        for (Operator op : operators) lines.add("  " + op);
+        return String.join("\n", lines);
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    /** Operator applying one token, or a run of nation filters, to the recipient set. */
+    public static class Operator {
+        private final int step;
+        private final List<CommuniqueRecipient> tokens;
+        private final Kind kind;
+        private Set<String> names; // set at once for nation filters; otherwise, from fetched
+        private List<CommuniqueRecipient> fetched;
+        private CompletableFuture<List<CommuniqueRecipient>> prefetched;
+        private String skipped;
+        private boolean clears; // skipped, but leaves no recipients
+        private final List<String> notes = new ArrayList<>();
+        private final CommuniqueDecompositionMemo memo;
+
+        private Operator(int step, List<CommuniqueRecipient> tokens, CommuniqueDecompositionMemo memo) {
+            this.step = step;
+            this.tokens = tokens;
+            this.memo = memo;
+            this.kind = kind(tokens.get(0).getFilterType());
+            if (isNationFilter(tokens.get(0))) {
+                names = new NSNameSet();
+                for (CommuniqueRecipient token : tokens) names.add(token.getName());
+                // including each nation in turn leaves only a nation named by every token
+                if (kind == Kind.INTERSECT && names.size() > 1) names.clear();
+            }
+        }
+
+        private static Kind kind(CommuniqueFilterType filterType) {
+            switch (filterType) {
+                case INCLUDE:
+                    return Kind.INTERSECT;
+                case EXCLUDE:
+                    return Kind.MINUS;
+                case REQUIRE_REGEX:
+                case EXCLUDE_REGEX:
+                    return Kind.REGEX;
+                default:
+                    return Kind.UNION;
+            }
+        }
+
+        private List<CommuniqueRecipient> fetch() {
+            if (fetched == null) fetched = relabel(await(prefetched == null ? decompose(Runnable::run) : prefetched));
+            return fetched;
+        }
+
+        /** Takes decomposition from memo, noting if remembered, or starts it on executor. */
+        private CompletableFuture<List<CommuniqueRecipient>> decompose(Executor executor) {
+            CommuniqueRecipient token = tokens.get(0);
+            if (memo.contains(token)) note("remembered");
+            return memo.decompose(token, executor);
+        }
+
+        /**
+         * Gives recipients to be added the filter type of this token, as they may be remembered from a token with the
+         * same recipient type and name but a different filter type. Only names are used by other operators.
+         */
+        private List<CommuniqueRecipient> relabel(List<CommuniqueRecipient> recipients) {
+            CommuniqueFilterType filterType = tokens.get(0).getFilterType();
+            if (kind != Kind.UNION || recipients.isEmpty() || recipients.get(0).getFilterType() == filterType)
+                return recipients;
+            return recipients.stream()
+                    .map(r -> new CommuniqueRecipient(filterType, r.getRecipientType(), r.getName()))
+                    .collect(Collectors.toList());
+        }
+
+        private static List<CommuniqueRecipient> await(CompletableFuture<List<CommuniqueRecipient>> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw e;
+            }
+        }
+
+        private Set<String> names() {
+            if (names == null) names = CommuniqueQueryPlan.names(fetch());
+            return names;
+        }
+
+        private void skip(String reason) {
+            skipped = reason;
+        }
+
+        private void note(String note) {
+            notes.add(note);
+        }
+
+        /** @return step of first token, counting from one */
+        public int getStep() {
+            return step;
+        }
+
+        /** @return tokens applied; more than one only for a run of nation filters */
+        public List<CommuniqueRecipient> getTokens() {
+            return Collections.unmodifiableList(tokens);
+        }
+
+        /** @return operator kind */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** @return true if skipped without decomposing its token */
+        public boolean isSkipped() {
+            return skipped != null;
+        }
+
+        @Override
+        public String toString() {
+            String token = tokens.size() == 1
+                    ? tokens.get(0).toString()
+                    : String.format("%s ... %s (%d nations)", tokens.get(0), tokens.get(tokens.size() - 1),
+                    tokens.size());
+            StringBuilder sb = new StringBuilder(String.format("%d. %s %s", step, kind.name().toLowerCase(), token));
+            if (skipped != null) sb.append("; skipped, ").append(skipped);
+            else if (names != null && fetched == null) sb.append("; no fetch");
+            if (fetched != null) sb.append(String.format("; fetched %d", fetched.size()));
+            if (prefetched != null)
+                sb.append(skipped == null ? "; prefetched"
+                        : prefetched.isCancelled() ? "; prefetch cancelled" : "; prefetched, unused");
+            for (String note : notes) sb.append("; ").append(note);
+            return sb.toString();
+        }
+    }
+}
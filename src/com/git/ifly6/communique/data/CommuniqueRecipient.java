@@ -18,6 +18,7 @@
 package com.git.ifly6.communique.data;
 
 import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSNameDictionary;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 
 import java.util.ArrayList;
@@ -50,11 +51,16 @@ public class CommuniqueRecipient {
     public CommuniqueRecipient(CommuniqueFilterType filterType, CommuniqueRecipientType recipientType, String name) {
         this.filterType = filterType;
         this.recipientType = recipientType;
-        this.name = ApiUtils.ref(name);    // convert to reference name
 
         // some format checking for the name
         if (name.contains(":"))
             throw new IllegalArgumentException(String.format("nation name <%s> is invalid", name));
+
+        // convert to reference name; nation names are held once however many recipients share them, but other names,
+        // eg regular expressions and tags, must not take up nation ids
+        this.name = recipientType == CommuniqueRecipientType.NATION
+                ? NSNameDictionary.getInstance().intern(ApiUtils.ref(name))
+                : ApiUtils.ref(name);
     }
 
     /**
@@ -109,43 +115,14 @@ public class CommuniqueRecipient {
      * <code>imperium_anglorum</code>, it is assumed that this is a <code>FilterType.NORMAL</code> nation with that
      * name.
      * </p>
+     * <p>
+     * Prefixes are matched in one pass by {@link CommuniqueRecipientTokenizer}.
+     * </p>
      * @return a <code>CommuniqueRecipient</code> representing that string
      */
     public static CommuniqueRecipient parseRecipient(final String raw) {
         // 2020-12-24 do not put a toLowerCase here: it breaks case-sensitive regex raw!
-        String s = raw.trim();
-
-        CommuniqueFilterType fType = CommuniqueFilterType.NORMAL; // default
-        for (CommuniqueFilterType type : CommuniqueFilterType.values())
-            if (s.startsWith(type.toString())) {
-                fType = type;
-                s = s.substring(type.toString().length());
-                break;
-            }
-
-        CommuniqueRecipientType rType = CommuniqueRecipientType.NATION; // default
-        for (CommuniqueRecipientType type : CommuniqueRecipientType.values())
-            if (s.startsWith(type.toString())) {
-                rType = type;
-                s = s.substring(type.toString().length());
-                break;
-            }
-
-        // 2020-12-24 insert override for RecipientType.NONE -> NATION if FilterType.NORMAL
-        // this is to correctly parse something like `imperium_anglorum` without tags
-        if (fType == CommuniqueFilterType.NORMAL && rType == CommuniqueRecipientType.NONE)
-            rType = CommuniqueRecipientType.NATION;
-
-        if (s.contains(":")) { // ie is an prefix to be looking at!
-            String expectedPrefix = fType.toString() + rType.toString();
-            String actualPrefix = raw.substring(0, raw.indexOf(":"));
-            if (!expectedPrefix.equalsIgnoreCase(actualPrefix))
-                throw new IllegalArgumentException(String.format("Expected prefix %s, got prefix %s; parse failed!",
-                        expectedPrefix, actualPrefix));
-        }
-
-        // 2017-03-30 use lastIndexOf to deal with strange name changes, can cause error in name `+region:euro:pe`
-        return new CommuniqueRecipient(fType, rType, s.substring(s.lastIndexOf(":") + 1));
+        return CommuniqueRecipientTokenizer.parse(raw);
     }
 
     /**
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.NSNameDictionary;
+
+/**
+ * Tokenizes recipient strings for {@link CommuniqueRecipient#parseRecipient(String)} in one pass, without substrings.
+ * Filter and recipient type prefixes are matched in tries built once from {@link CommuniqueFilterType} and
+ * {@link CommuniqueRecipientType}, taking the longest match; as each enumeration declares longer prefixes before their
+ * own prefixes, eg {@code +regex} before {@code +}, that is the prefix the loop over their values took. Prefixes
+ * match regardless of case. A recipient type must be followed by a colon, so that a bare name beginning with one, eg
+ * {@code regionalia}, stays a nation. A nation name is interned in place by {@link NSNameDictionary}.
+ * @since version 13
+ */
+final class CommuniqueRecipientTokenizer {
+
+    private static final Node FILTERS = build(CommuniqueFilterType.values());
+    private static final Node TYPES = build(CommuniqueRecipientType.values());
+
+    private CommuniqueRecipientTokenizer() { }
+
+    /** Trie node over lower case ASCII characters. */
+    private static final class Node {
+        private final Node[] next = new Node[128];
+        private Object value;
+
+        private Node child(char c) {
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            return c < 128 ? next[c] : null;
+        }
+    }
+
+    private static Node build(Enum<?>[] values) {
+        Node root = new Node();
+        for (Enum<?> value : values) {
+            Node node = root;
+            for (char c : value.toString().toLowerCase().toCharArray()) {
+                if (node.next[c] == null) node.next[c] = new Node();
+                node = node.next[c];
+            }
+            if (node.value == null) node.value = value; // first declared wins
+        }
+        return root;
+    }
+
+    /**
+     * @param raw recipient string
+     * @return recipient
+     * @throws IllegalArgumentException if a colon follows something other than the filter and recipient type
+     */
+    static CommuniqueRecipient parse(String raw) {
+        int start = 0;
+        int end = raw.length();
+        while (start < end && raw.charAt(start) <= ' ') start++;
+        while (end > start && raw.charAt(end - 1) <= ' ') end--;
+
+        // longest filter prefix; root holds NORMAL, whose prefix is empty
+        CommuniqueFilterType fType = (CommuniqueFilterType) FILTERS.value;
+        int filterEnd = start;
+        Node node = FILTERS;
+        for (int i = start; i < end && (node = node.child(raw.charAt(i))) != null; i++)
+            if (node.value != null) {
+                fType = (CommuniqueFilterType) node.value;
+                filterEnd = i + 1;
+            }
+
+        // longest recipient type prefix followed by colon; root holds NONE
+        CommuniqueRecipientType rType = (CommuniqueRecipientType) TYPES.value;
+        int typeEnd = filterEnd;
+        node = TYPES;
+        for (int i = filterEnd; i < end && (node = node.child(raw.charAt(i))) != null; i++)
+            if (node.value != null && i + 1 < end && raw.charAt(i + 1) == ':') {
+                rType = (CommuniqueRecipientType) node.value;
+                typeEnd = i + 1;
+            }
+
+        // parse `imperium_anglorum` without tags as a nation
+        if (fType == CommuniqueFilterType.NORMAL && rType == CommuniqueRecipientType.NONE)
+            rType = CommuniqueRecipientType.NATION;
+
+        int colon = raw.indexOf(':', typeEnd);
+        if (colon >= 0 && colon < end) { // ie is a prefix to be looking at!
+            String f = fType.toString();
+            String r = rType.toString();
+            int firstColon = raw.indexOf(':', start);
+            if (firstColon - start != f.length() + r.length()
+                    || !raw.regionMatches(true, start, f, 0, f.length())
+                    || !raw.regionMatches(true, start + f.length(), r, 0, r.length()))
+                throw new IllegalArgumentException(String.format("Expected prefix %s, got prefix %s; parse failed!",
+                        f + r, raw.substring(start, firstColon)));
+        }
+
+        // 2017-03-30 use last colon to deal with strange name changes, can cause error in name `+region:euro:pe`
+        int nameStart = Math.max(typeEnd, raw.lastIndexOf(':', end - 1) + 1);
+        return new CommuniqueRecipient(fType, rType, rType == CommuniqueRecipientType.NATION
+                ? NSNameDictionary.getInstance().intern(raw, nameStart, end)
+                : raw.substring(nameStart, end));
+    }
+}
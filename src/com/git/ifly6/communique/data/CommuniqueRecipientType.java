@@ -20,7 +20,9 @@ package com.git.ifly6.communique.data;
 import com.git.ifly6.CommuniqueSplitter;
 import com.git.ifly6.nsapi.NSNation;
 import com.git.ifly6.nsapi.NSRegion;
+import com.git.ifly6.nsapi.NSRegionFanOut;
 import com.git.ifly6.nsapi.NSWorld;
+import com.git.ifly6.nsapi.builders.NSNationShard;
 import com.git.ifly6.nsapi.ctelegram.io.cache.CommDelegatesCache;
 import com.git.ifly6.nsapi.ctelegram.io.cache.CommNationCache;
 import com.git.ifly6.nsapi.ctelegram.monitors.CommMonitor;
@@ -67,7 +69,8 @@ public enum CommuniqueRecipientType {
     // This code block must be before the REGION code block otherwise it will get substring matched over :(
     /**
      * Declares that the recipient is a REGION TAG and that it needs decomposing into a list of regions which then is
-     * decomposed into the nations therein.
+     * decomposed into the nations therein. Regions are fetched by {@link NSRegionFanOut}, several at a time, with
+     * progress logged; interrupting the decomposing thread cancels it.
      * @since version 11 (2020-04-04)
      */
     REGION_TAG {
@@ -75,11 +78,12 @@ public enum CommuniqueRecipientType {
         public List<CommuniqueRecipient> decompose(CommuniqueRecipient cr) throws JTelegramException {
             try {
                 List<String> regions = NSWorld.getRegionTag(cr.getName());
-                return regions.stream()
-                        .map(s -> new CommuniqueRecipient(cr.getFilterType(), CommuniqueRecipientType.REGION, s))
-                        .map(CommuniqueRecipient::decompose)
-                        .flatMap(List::stream)
-                        .collect(Collectors.toList());
+                int step = Math.max(1, regions.size() / 10);
+                NSRegionFanOut fanOut = new NSRegionFanOut(regions).onProgress((region, done, total) -> {
+                    if (done % step == 0 || done == total)
+                        LOGGER.info(String.format("Loaded %d of %d regions tagged %s", done, total, cr.getName()));
+                });
+                return newRecipients(fanOut.await(), cr.getFilterType());
 
             } catch (IOException e) {
                 throw new JTelegramException("Could not get nations by tag!", e);
@@ -95,7 +99,7 @@ public enum CommuniqueRecipientType {
     REGION {
         @Override
         public List<CommuniqueRecipient> decompose(CommuniqueRecipient cr) throws JTelegramException {
-            NSRegion region = new NSRegion(cr.getName());
+            NSRegion region = new NSRegion(cr.getName()).populateData();
             return newRecipients(region.getRegionMembers(), cr.getFilterType());
         }
     },
@@ -149,8 +153,8 @@ public enum CommuniqueRecipientType {
     ENDORSERS_OF {
         @Override
         public List<CommuniqueRecipient> decompose(CommuniqueRecipient cr) {
-            NSNation nation = CommNationCache.getInstance()
-                    .lookupObject(cr.getName(), Duration.of(70, ChronoUnit.SECONDS));
+            NSNation nation = CommNationCache.getInstance().lookupShards(cr.getName(),
+                    Duration.of(70, ChronoUnit.SECONDS), NSNationShard.ENDORSEMENT_LIST);
             return newRecipients(nation.getEndoList(), cr.getFilterType());
         }
     },
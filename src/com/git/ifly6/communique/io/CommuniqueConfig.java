@@ -30,6 +30,7 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -73,6 +74,13 @@ public class CommuniqueConfig implements Serializable {
      */
     private ArrayList<String> cRecipients; // must be mutable, use ArrayList
 
+    /**
+     * Parsed form of {@link #cRecipients}, with the list it was parsed from. Neither is saved. Mutators clear it, and
+     * it is reparsed if the list is replaced, eg by deserialisation or {@link #clean()}.
+     */
+    private transient List<CommuniqueRecipient> parsedRecipients;
+    private transient List<String> parsedFrom;
+
     // These should be deprecated, but are kept for backward compatibility
     @Deprecated
     public String[] recipients; // consider removing
@@ -133,25 +141,30 @@ public class CommuniqueConfig implements Serializable {
     }
 
     /**
-     * Returns converted <code>cRecipients</code> to <code>List&lt;CommuniqueRecipient&gt;</code>
-     * @return <code>cRecipients</code> converted to <code>List&lt;CommuniqueRecipient&gt;</code>
+     * Returns converted <code>cRecipients</code> to <code>List&lt;CommuniqueRecipient&gt;</code>. They are parsed once
+     * and kept until changed, so repeated calls do not reparse them.
+     * @return <code>cRecipients</code> converted to unmodifiable <code>List&lt;CommuniqueRecipient&gt;</code>
      */
-    public List<CommuniqueRecipient> getcRecipients() {
+    public synchronized List<CommuniqueRecipient> getcRecipients() {
         if (cRecipients == null) return null; // deal with null case
+        if (parsedRecipients != null && parsedFrom == cRecipients) return parsedRecipients;
 
         // use imperative for speed
         List<CommuniqueRecipient> list = new ArrayList<>(cRecipients.size());
         for (String s : cRecipients)
             list.add(CommuniqueRecipient.parseRecipient(s));
-        return list;
+        parsedRecipients = Collections.unmodifiableList(list);
+        parsedFrom = cRecipients;
+        return parsedRecipients;
     }
 
     /**
-     * Returns raw <code>cRecipients</code>, which is <code>List&lt;String&gt;</code>
-     * @return <code>cRecipients</code>
+     * Returns raw <code>cRecipients</code>, which is <code>List&lt;String&gt;</code>. Change them through
+     * {@link #setcRecipients(List)} or {@link #addcRecipient(CommuniqueRecipient)}.
+     * @return unmodifiable <code>cRecipients</code>
      */
-    public List<String> getcRecipientsString() {
-        return cRecipients;
+    public synchronized List<String> getcRecipientsString() {
+        return cRecipients == null ? null : Collections.unmodifiableList(cRecipients);
     }
 
     /**
@@ -159,17 +172,20 @@ public class CommuniqueConfig implements Serializable {
      * {@link String} on the fly.
      * @param crs {@link CommuniqueRecipient}s to set
      */
-    public void setcRecipients(List<CommuniqueRecipient> crs) {
+    public synchronized void setcRecipients(List<CommuniqueRecipient> crs) {
         // NOTE: No setcRecipients(List<String> crs) because need for verification
         // use imperative for speed
         ArrayList<String> list = new ArrayList<>(crs.size());
         for (CommuniqueRecipient cr : crs)
             list.add(cr.toString());
         cRecipients = list;
+        parsedRecipients = null;
     }
 
-    public void addcRecipient(CommuniqueRecipient cr) {
+    public synchronized void addcRecipient(CommuniqueRecipient cr) {
+        if (cRecipients == null) cRecipients = new ArrayList<>(); // null in new configurations
         cRecipients.add(cr.toString());
+        parsedRecipients = null;
     }
 
     /**
@@ -214,7 +230,7 @@ public class CommuniqueConfig implements Serializable {
      * the {@code sentList}. It also updates the {@code CommuniqueConfig} version <i>field</i>, not the one in the
      * header, to the version of the program on which it was saved.
      */
-    void clean() {
+    synchronized void clean() {
         version = this.defaultVersion(); // updates version
 
         if (Objects.nonNull(cRecipients) && !cRecipients.isEmpty()) // apparently cRecipients is nullable
@@ -117,7 +117,7 @@ class CommuniqueReader {
                         }
 
                     // correct flag:recruit -> tag:new, repeat = True, repeatInterval = 3 minutes
-                    List<String> rawRecipients = config.getcRecipientsString();
+                    List<String> rawRecipients = new ArrayList<>(config.getcRecipientsString());
                     if (rawRecipients.contains("flag:recruit")) {
                         rawRecipients.replaceAll(s -> s.equals("flag:recruit") ? "tag:new" : s);
                         config.setcRecipients(CommuniqueRecipient.parseRecipients(rawRecipients));
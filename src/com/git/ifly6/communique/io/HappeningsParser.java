@@ -20,6 +20,7 @@ package com.git.ifly6.communique.io;
 import com.git.ifly6.communique.data.CommuniqueRecipient;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 
 import java.io.IOException;
@@ -36,12 +37,9 @@ import java.util.stream.Collectors;
 @Deprecated
 public class HappeningsParser {
 
-    private static final String HAPPENINGS_URL = "https://www.nationstates.net/cgi-bin/api.cgi?q=happenings;"
-            + "filter=law+change+dispatch+rmb+embassy+admin+vote+resolution+member";
-
     public static List<CommuniqueRecipient> getActiveNations() throws JTelegramException {
         try {
-            NSConnection connection = new NSConnection(HAPPENINGS_URL).connect();
+            NSConnection connection = new NSConnection(NSEndpoint.HAPPENINGS.url()).connect();
 
             String data = connection.getResponse();
 
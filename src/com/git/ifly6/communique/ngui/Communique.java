@@ -21,7 +21,9 @@ import com.git.ifly6.CommuniqueApplication;
 import com.git.ifly6.CommuniqueUtilities;
 import com.git.ifly6.communique.data.Communique7Monitor;
 import com.git.ifly6.communique.data.Communique7Parser;
+import com.git.ifly6.communique.data.CommuniquePlan;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
+import com.git.ifly6.communique.io.CommuniqueConfig;
 import com.git.ifly6.communique.ngui.components.CommuniqueEditor;
 import com.git.ifly6.communique.ngui.components.CommuniqueEditorManager;
 import com.git.ifly6.communique.ngui.components.CommuniqueFactory;
@@ -32,6 +34,7 @@ import com.git.ifly6.communique.ngui.components.CommuniqueTimerBar;
 import com.git.ifly6.communique.ngui.components.dialogs.CommuniqueSendDialog;
 import com.git.ifly6.communique.ngui.components.dialogs.CommuniqueTextDialog;
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSOfflineReport;
 import com.git.ifly6.nsapi.ctelegram.CommSender;
 import com.git.ifly6.nsapi.ctelegram.CommSenderInterface;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
@@ -119,8 +122,8 @@ public class Communique extends AbstractCommunique implements JTelegramLogger, C
         // initialise components and subparts
         initialise();
 
-        // Make sure user is connected to the Internet
-        try {
+        // Make sure user is connected to the Internet, unless working offline
+        if (!NSConnection.isOffline()) try {
             new NSConnection("https://www.nationstates.net/").connect();
         } catch (IOException e) {
             this.showErrorDialog(CommuniqueConstants.INTERNET_ERROR);
@@ -272,11 +275,14 @@ public class Communique extends AbstractCommunique implements JTelegramLogger, C
         // Call and do the parsing
         LOGGER.info("Initialising sender");
         try {
-            monitor = new Communique7Monitor(focusedEditor.getConfig());
+            CommuniqueConfig config = focusedEditor.getConfig();
+            LOGGER.info(String.format("Planned send:%n%s", CommuniquePlan.of(config)));
+            monitor = new Communique7Monitor(config);
             sender = monitor.constructSender(this);
 
             List<String> initialRecipients = monitor.preview();
             LOGGER.info(String.format("Found %d initial recipients", initialRecipients.size()));
+            if (NSConnection.isOffline()) LOGGER.info(NSOfflineReport.getInstance().getSummary());
 
             // Change GUI elements
             EventQueue.invokeLater(() -> {
@@ -285,11 +291,17 @@ public class Communique extends AbstractCommunique implements JTelegramLogger, C
             });
 
             // Ask for confirmation
-            CommuniqueSendDialog sendDialog = new CommuniqueSendDialog(frame, initialRecipients, currentWaitTime());
+            CommuniqueSendDialog sendDialog = new CommuniqueSendDialog(frame, initialRecipients,
+                    CommuniquePlan.of(config, initialRecipients));
             LOGGER.info("CommuniqueSendDialog " + (sendDialog.getValue() == 0
                     ? "cancelled"
                     : "accepted with " + sendDialog.getValue()));
-            if (sendDialog.getValue() == CommuniqueSendDialog.SEND) send();
+            if (sendDialog.getValue() == CommuniqueSendDialog.SEND) {
+                if (NSConnection.isOffline())
+                    this.showErrorDialog("Working offline; telegrams cannot be sent. Restart without "
+                            + NSConnection.OFFLINE_PROPERTY + " to send.");
+                else send();
+            }
 
         } catch (PatternSyntaxException pse) {
             // note 2020-01-27: better that regex errors are shown in monospaced font
@@ -301,6 +313,10 @@ public class Communique extends AbstractCommunique implements JTelegramLogger, C
             LOGGER.log(Level.SEVERE, "Exception in parsing recipients. Displaying to user", pse);
             this.showErrorDialog(label);
 
+        } catch (NSConnection.NSOfflineException oe) {
+            LOGGER.log(Level.WARNING, "Recipients not cached for offline use. Displaying to user", oe);
+            this.showErrorDialog(oe.getMessage());
+
         } catch (JTelegramException | IllegalArgumentException jte) {
             LOGGER.log(Level.SEVERE, "Exception in parsing recipients. Displaying to user", jte);
             this.showErrorDialog(jte.getMessage());
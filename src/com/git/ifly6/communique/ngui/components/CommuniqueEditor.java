@@ -95,6 +95,8 @@ public class CommuniqueEditor extends AbstractCommunique {
     private CommuniqueDurationField tfRepeatInterval;
 
     private CommuniqueConfig config; // initialise a new configuration on nothing
+    private List<CommuniqueRecipient> parsedRecipients; // from area, at parsedRevision
+    private long parsedRevision = -1;
 
     CommuniqueEditor(Path path) {
         this.path = path;
@@ -372,14 +374,24 @@ public class CommuniqueEditor extends AbstractCommunique {
                 CommuniqueSwingUtilities.getSelected(chooserAction),
                 checkboxRepeat.isSelected(),
                 tfRepeatInterval.getDuration());
-        config.setcRecipients(area.getLines().stream()
-                .filter(ApiUtils::isNotEmpty)
-                .filter(s -> !s.startsWith("#"))
-                .map(CommuniqueRecipient::parseRecipient)
-                .collect(Collectors.toList()));
+        config.setcRecipients(getRecipients());
         return config;
     }
 
+    /** @return recipients in text area, parsed again only if it changed since last parsed */
+    private List<CommuniqueRecipient> getRecipients() {
+        long revision = area.getRevision();
+        if (parsedRecipients == null || parsedRevision != revision) {
+            parsedRecipients = area.getLines().stream()
+                    .filter(ApiUtils::isNotEmpty)
+                    .filter(s -> !s.startsWith("#"))
+                    .map(CommuniqueRecipient::parseRecipient)
+                    .collect(Collectors.toList());
+            parsedRevision = revision; // only once parsed; a parse failure is reported again next time
+        }
+        return parsedRecipients;
+    }
+
     public Path save() {
         Path tempSave = path.resolveSibling(path.getFileName().toString() + ".tmp");
         try {
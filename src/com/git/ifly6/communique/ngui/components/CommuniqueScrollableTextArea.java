@@ -22,6 +22,8 @@ import com.git.ifly6.communique.data.CommuniqueRecipient;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.EventQueue;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -29,10 +31,36 @@ import java.util.stream.Collectors;
 public class CommuniqueScrollableTextArea extends JScrollPane {
 
     private JTextArea area;
+    private long revision;
 
     public CommuniqueScrollableTextArea(JTextArea area) {
         super(area);
         this.area = area;
+        area.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                revision++;
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                revision++;
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                revision++;
+            }
+        });
+    }
+
+    /**
+     * Counts edits to the text, so that callers can tell whether it changed without comparing it.
+     * @return number of edits to the text; only ever increases
+     * @since version 13
+     */
+    public long getRevision() {
+        return revision;
     }
 
     public void scrollBottom() {
@@ -17,6 +17,7 @@
 package com.git.ifly6.communique.ngui.components.dialogs;
 
 import com.git.ifly6.CommuniqueUtilities;
+import com.git.ifly6.communique.data.CommuniquePlan;
 import com.git.ifly6.communique.ngui.components.CommuniqueSwingUtilities;
 
 import javax.swing.BorderFactory;
@@ -34,13 +35,12 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.time.Duration;
 import java.util.List;
 import java.util.logging.Logger;
 
 /**
  * <code>CommuniqueSendDialog</code> shows the user the results of the parsing of the recipients and an estimate of how
- * much time it will take to send. It then returns a Send or Cancel option from the user.
+ * much time it will take to send, from a {@link CommuniquePlan}. It then returns a Send or Cancel option from the user.
  */
 public class CommuniqueSendDialog extends JDialog {
 
@@ -52,7 +52,7 @@ public class CommuniqueSendDialog extends JDialog {
 
     private int value = 0;
 
-    public CommuniqueSendDialog(JFrame parent, List<String> parsedRecipients, Duration delay) {
+    public CommuniqueSendDialog(JFrame parent, List<String> parsedRecipients, CommuniquePlan plan) {
         super(parent, true);
         CommuniqueSwingUtilities.setupDimensions(this,
                 new Dimension(500, 500),
@@ -89,7 +89,8 @@ public class CommuniqueSendDialog extends JDialog {
         gbl_buttonPane.rowWeights = new double[] { 0.0, Double.MIN_VALUE };
         buttonPane.setLayout(gbl_buttonPane);
         JLabel lblThisWillTake = new JLabel(String.format("Estimated sending time: %s",
-                estimateTime(parsedRecipients.size(), delay.toMillis())));
+                CommuniqueUtilities.time(plan.getSendingTime().getSeconds())));
+        lblThisWillTake.setToolTipText(String.format("<html>%s</html>", plan.toString().replace("\n", "<br />")));
         lblThisWillTake.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 0));
         GridBagConstraints gbc_lblThisWillTake = new GridBagConstraints();
         gbc_lblThisWillTake.fill = GridBagConstraints.HORIZONTAL;
@@ -137,9 +138,4 @@ public class CommuniqueSendDialog extends JDialog {
 
     public int getValue() { return value; }
 
-    private String estimateTime(int count, long delayMillis) {
-        int seconds = Math.round(count * (int) (delayMillis / 1000));
-        return CommuniqueUtilities.time(seconds);
-    }
-
 }
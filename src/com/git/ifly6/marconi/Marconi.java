@@ -21,10 +21,13 @@ import com.git.ifly6.CommuniqueApplication;
 import com.git.ifly6.CommuniqueUtilities;
 import com.git.ifly6.communique.data.Communique7Monitor;
 import com.git.ifly6.communique.data.Communique7Parser;
+import com.git.ifly6.communique.data.CommuniquePlan;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
 import com.git.ifly6.communique.io.CommuniqueConfig;
 import com.git.ifly6.communique.io.CommuniqueLoader;
 import com.git.ifly6.communique.ngui.Communique;
+import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSOfflineReport;
 import com.git.ifly6.nsapi.ctelegram.CommSender;
 import com.git.ifly6.nsapi.ctelegram.CommSenderInterface;
 import org.apache.commons.cli.CommandLine;
@@ -61,6 +64,8 @@ public class Marconi implements CommSenderInterface {
         options.addOption("h", "help", false, "Displays this message");
         options.addOption("v", "version", false, "Prints version");
         options.addOption("l", "loglevel", true, "Sets logging level");
+        options.addOption("o", "offline", false,
+                "Previews recipients from cached data without contacting the API; sends nothing");
         COMMAND_LINE_OPTIONS = options;
     }
 
@@ -130,6 +135,8 @@ public class Marconi implements CommSenderInterface {
                 System.out.printf("Set logging level to %s.%n", level);
             }
 
+            if (commandLine.hasOption("o")) NSConnection.setOffline(true);
+
             Marconi m = new Marconi(Paths.get(commandLine.getArgs()[0]));
             m.send();
         } catch (ParseException e) {
@@ -143,8 +150,8 @@ public class Marconi implements CommSenderInterface {
      * telegrams. Also creates a file lock to prevent multiple instances of Marconi from running at the same time.
      */
     private void send() {
-        // set up monitor
-        // preview recipients
+        // plan, set up monitor, and preview recipients
+        System.out.println(CommuniquePlan.of(config));
         Communique7Monitor communique7Monitor = new Communique7Monitor(config);
         List<String> expandedRecipients = communique7Monitor.preview();
 
@@ -156,9 +163,13 @@ public class Marconi implements CommSenderInterface {
         System.out.printf(config.repeats
                         ? "Initially %d telegrams will be sent.%n"
                         : "In total %d telegrams will be sent.%n",
-                CommuniqueUtilities.time(Math.round(expandedRecipients.size()
-                        * (config.getTelegramType().getWaitTime() / (double) 1000))),
                 expandedRecipients.size());
+        System.out.println(CommuniquePlan.of(config, expandedRecipients));
+        if (NSConnection.isOffline()) {
+            System.out.println(NSOfflineReport.getInstance().getSummary());
+            System.out.println("Working offline; no telegrams sent.");
+            System.exit(0);
+        }
 
         // allow cancel
         System.out.println("You have 3 (three) seconds to cancel.");
@@ -41,12 +41,21 @@ public class ApiUtils {
 
 
     /**
-     * Changes some name into a reference name.
+     * Changes some name into a reference name. Names already in reference form are returned as they are, and other
+     * ASCII names are converted in one pass by {@link NSNameScanner}, without a regular expression.
      * @param input to turn into a reference name
      * @return reference name form of the input name
      */
     public static String ref(String input) {
         if (input == null) throw new NullPointerException("Cannot convert null string to reference format");
+        int length = input.length();
+        int i = 0;
+        while (i < length && NSNameScanner.isRefChar(input.charAt(i))) i++;
+        if (i == length) return input;
+
+        boolean ascii = true;
+        for (; i < length && ascii; i++) ascii = input.charAt(i) < 0x80;
+        if (ascii) return NSNameScanner.ref(input.toCharArray(), 0, length);
         return WHITESPACE.matcher(input.trim().toLowerCase()).replaceAll("_");
         // 2024-03-29 MUST be replaceAll and NOT replace
         // 2024-03-30 change to pattern
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.OptionalLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rate limiter which adjusts its rate from the rate limit headers sent by the NationStates API:
+ * <ul>
+ *     <li>{@code RateLimit-Policy}, eg {@code 50;w=30}, giving the requests allowed per window</li>
+ *     <li>{@code RateLimit-Remaining}, giving the requests remaining in the current window</li>
+ *     <li>{@code RateLimit-Reset}, giving the seconds until the current window resets</li>
+ *     <li>{@code Retry-After} or {@code X-Retry-After}, giving the seconds to wait after exceeding the limit</li>
+ * </ul>
+ * <p>When there is headroom, the remaining requests are spread over the rest of the window, up to the policy's full
+ * rate. When the remaining requests fall to {@link #SAFETY_MARGIN}, no further permits are issued until the window
+ * resets. This means the limiter slows down before the API would send a 429. If a retry header is sent anyway, no
+ * permits are issued until it expires.</p>
+ * <p>Until headers are observed, permits are issued at the initial rate.</p>
+ * @since version 13
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class NSAdaptiveRateLimiter implements NSRateLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(NSAdaptiveRateLimiter.class.getName());
+    private static final Pattern POLICY = Pattern.compile("^\\s*(\\d+)\\s*;\\s*w\\s*=\\s*(\\d+)");
+
+    /** Number of requests in each window that are never spent, to allow for requests made elsewhere. */
+    public static final int SAFETY_MARGIN = 2;
+
+    private final RateLimiter limiter;
+    private final double minimumRate;
+    private volatile double ceilingRate;
+    private volatile Instant pausedUntil = Instant.MIN;
+
+    /**
+     * Creates limiter.
+     * @param initialRate permits per second used before any headers are observed; also the ceiling rate until a
+     *                    {@code RateLimit-Policy} header is observed
+     */
+    public NSAdaptiveRateLimiter(double initialRate) {
+        this.limiter = RateLimiter.create(initialRate);
+        this.minimumRate = initialRate / 10;
+        this.ceilingRate = initialRate;
+    }
+
+    @Override
+    public double acquire() {
+        double waited = 0;
+        Duration pause = Duration.between(Instant.now(), pausedUntil);
+        if (!pause.isNegative() && !pause.isZero()) {
+            LOGGER.fine(String.format("Rate limiter paused for %d ms", pause.toMillis()));
+            try {
+                Thread.sleep(pause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            waited = pause.toMillis() / 1000D;
+        }
+        return waited + limiter.acquire();
+    }
+
+    @Override
+    public synchronized void observe(int statusCode, HttpHeaders headers) {
+        OptionalLong retryAfter = header(headers, "X-Retry-After");
+        if (retryAfter.isEmpty()) retryAfter = header(headers, "Retry-After");
+        if (retryAfter.isPresent()) {
+            pauseFor(retryAfter.getAsLong());
+            LOGGER.warning(String.format("API requested retry after %d seconds", retryAfter.getAsLong()));
+            return;
+        }
+
+        headers.firstValue("RateLimit-Policy").ifPresent(p -> {
+            Matcher m = POLICY.matcher(p);
+            if (m.find())
+                ceilingRate = Double.parseDouble(m.group(1)) / Math.max(1, Double.parseDouble(m.group(2)));
+        });
+
+        OptionalLong remaining = header(headers, "RateLimit-Remaining");
+        OptionalLong reset = header(headers, "RateLimit-Reset");
+        if (remaining.isEmpty() || reset.isEmpty()) return;
+
+        long spendable = remaining.getAsLong() - SAFETY_MARGIN;
+        if (spendable <= 0) {
+            pauseFor(reset.getAsLong());
+            LOGGER.fine(String.format("%d requests remaining; waiting %d seconds for window reset",
+                    remaining.getAsLong(), reset.getAsLong()));
+            return;
+        }
+
+        double rate = spendable / (double) Math.max(1, reset.getAsLong());
+        rate = Math.max(minimumRate, Math.min(ceilingRate, rate));
+        if (rate != limiter.getRate()) {
+            limiter.setRate(rate);
+            LOGGER.finest(String.format("Adjusted rate limit to %.3f permits per second", rate));
+        }
+    }
+
+    /** Stops issuing permits for some number of seconds. */
+    private void pauseFor(long seconds) {
+        Instant until = Instant.now().plusSeconds(Math.max(0, seconds));
+        if (until.isAfter(pausedUntil)) pausedUntil = until;
+    }
+
+    /** @return instant until which no permits will be issued */
+    public Instant getPausedUntil() {
+        return pausedUntil;
+    }
+
+    @Override
+    public double getRate() {
+        return limiter.getRate();
+    }
+
+    /** @return maximum permits per second, as declared by the last observed {@code RateLimit-Policy} */
+    public double getCeilingRate() {
+        return ceilingRate;
+    }
+
+    /** Parses numeric header; empty if absent or malformed. */
+    private static OptionalLong header(HttpHeaders headers, String name) {
+        try {
+            return headers.firstValue(name)
+                    .map(String::trim)
+                    .map(s -> OptionalLong.of(Long.parseLong(s)))
+                    .orElse(OptionalLong.empty());
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+}
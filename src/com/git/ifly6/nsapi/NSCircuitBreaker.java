@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.time.Duration;
+import java.util.logging.Logger;
+
+/**
+ * Fails requests fast while an endpoint is down, rather than spending rate limit permits on requests doomed to fail.
+ * After {@code threshold} consecutive failures, the breaker opens and refuses requests for {@code cooldown}. It then
+ * lets a single trial request through; if that succeeds, the breaker closes, otherwise it opens again.
+ * @see NSRetryPolicy
+ * @since version 13
+ */
+public class NSCircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(NSCircuitBreaker.class.getName());
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final String name;
+    private final int threshold;
+    private final Duration cooldown;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    /**
+     * @param name      of endpoint guarded, for logging
+     * @param threshold consecutive failures which open the breaker
+     * @param cooldown  for which the breaker stays open
+     */
+    public NSCircuitBreaker(String name, int threshold, Duration cooldown) {
+        if (threshold < 1) throw new IllegalArgumentException("Threshold must be positive");
+        this.name = name;
+        this.threshold = threshold;
+        this.cooldown = cooldown;
+    }
+
+    /**
+     * Checks whether a request may be made. When open and cooled down, admits one trial request.
+     * @return true if request may be made
+     */
+    public synchronized boolean allow() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < cooldown.toMillis()) return false;
+                state = State.HALF_OPEN; // admit this request as the trial
+                LOGGER.info(String.format("Circuit for <%s> half open; sending trial request", name));
+                return true;
+            default:
+                return false; // trial already in flight
+        }
+    }
+
+    /** Records that a request reached a working endpoint. */
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) LOGGER.info(String.format("Circuit for <%s> closed", name));
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /** Records that a request failed because the endpoint is unreachable or erroring. */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            LOGGER.warning(String.format("Circuit for <%s> opened after %d failures; failing fast for %d s",
+                    name, failures, cooldown.getSeconds()));
+        }
+    }
+
+    /**
+     * Records that a request admitted by {@link #allow()} was withdrawn before it was sent. If it was the trial
+     * request, the trial is handed back: the breaker opens again, still cooled down, so the next request is admitted
+     * as the trial instead.
+     */
+    public synchronized void onCancelled() {
+        if (state == State.HALF_OPEN) state = State.OPEN;
+    }
+
+    /** @return state of breaker */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Thrown, without a request being made, when the circuit breaker for an endpoint is open.
+     * @since version 13
+     */
+    public static class NSCircuitOpenException extends NSIOException {
+        private static final long serialVersionUID = 1L;
+
+        public NSCircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -18,43 +18,123 @@
 package com.git.ifly6.nsapi;
 
 import com.git.ifly6.CommuniqueUtilities;
-import com.google.common.util.concurrent.RateLimiter;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class regulates how the program connects to the NationStates API.
  * <p>
  * It only operates for one program at a time. If you run multiple instances, it will go over the API rate limit and
- * will result in your computer getting locked out from the API for 15 minutes. The program uses a
- * <code>synchronized</code> block to force that only one connection exists at one time.
+ * will result in your computer getting locked out from the API for 15 minutes. All requests pass through a single
+ * dispatch queue which hands out rate limit permits by {@link NSPriority} and then in order of submission.
+ * </p>
+ * <p>
+ * Requests can be made synchronously with {@link #connect()} and {@link #getResponse()} or asynchronously with
+ * {@link #connectAsync()} and {@link #getResponseAsync()}. The asynchronous methods do not block the calling thread,
+ * so many requests can be queued at once; network latency for each then overlaps with the rate limit wait for the
+ * next.
+ * </p>
+ * <p>
+ * Large responses should instead be streamed with {@link #parse(NSStreamParser)}, usually with a
+ * {@link NSXMLSelector}, which only materialises the parts of the response asked for. Compressed transfer is
+ * negotiated with the API and decompressed as the response streams in; see {@link NSContentEncoding}.
+ * </p>
+ * <p>
+ * Transient failures are retried with backoff, and endpoints which keep failing are cut off by a circuit breaker for a
+ * while; see {@link #setRetryPolicy(NSRetryPolicy)}.
+ * </p>
+ * <p>
+ * Requests are made to {@link #getApiPrefix()}, which is {@link #API_PREFIX} unless overridden with the system property
+ * {@value #API_PREFIX_PROPERTY} or {@link #setApiPrefix(String)}; for example, to run against a local stand-in for the
+ * API.
+ * </p>
+ * <p>
+ * By default, permits are issued at a fixed rate by {@link NSSharedRateLimiter}, whose budget is shared with every
+ * other Communique and Marconi process on this host; or, if its file cannot be opened, by {@link NSStaticRateLimiter}
+ * for this process alone. This can be changed with {@link #setRateLimiter(NSRateLimiter)}, for example to
+ * {@link NSAdaptiveRateLimiter}, which follows the rate limit headers sent by the API.
+ * </p>
+ * <p>
+ * Concurrent requests for the same URL, after {@link #normalise(String) normalisation}, are coalesced. Only one is
+ * sent, at the priority of the first, and its response is shared between all connections to that URL.
+ * </p>
+ * <p>
+ * Responses from some endpoints are kept in a {@link NSResponseCache} and revalidated with the API rather than
+ * downloaded again. See {@link #setResponseCache(NSResponseCache)}.
+ * </p>
+ * <p>
+ * In {@link #setOffline(boolean) offline mode}, no request reaches the network. Responses stored in the response cache
+ * are served whatever their age, with their age recorded in {@link NSOfflineReport}; any other request fails with
+ * {@link NSOfflineException}. Offline mode can be set at startup with the system property {@value #OFFLINE_PROPERTY}.
  * </p>
  */
-@SuppressWarnings("UnstableApiUsage")
 public class NSConnection {
 
     public static final String API_PREFIX = "https://www.nationstates.net/cgi-bin/api.cgi?";
     public static final String QUERY_PREFIX = "&q=";
+    /** System property from which the initial {@link #getApiPrefix()} is read, if set. */
+    public static final String API_PREFIX_PROPERTY = "communique.api.prefix";
+    /** System property which, if {@code true}, starts in {@link #setOffline(boolean) offline mode}. */
+    public static final String OFFLINE_PROPERTY = "communique.api.offline";
 
     private static final Logger LOGGER = Logger.getLogger(NSConnection.class.getName());
     private static final double PERMITS_PER_SECOND = 40 / (double) 30; // 50 requests per 30 seconds is max
     public final static long WAIT_TIME = 1000 * Math.round(Math.pow(PERMITS_PER_SECOND, -1)); // 750 ms
 
-    private static final RateLimiter limiter = RateLimiter.create(PERMITS_PER_SECOND);
-    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private static final NSDispatcher DISPATCHER = new NSDispatcher(defaultLimiter());
+    private static final NSSingleFlight<String> IN_FLIGHT = new NSSingleFlight<>();
+    private static final Executor READERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "nsapi-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ThreadMXBean THREAD_MX = ManagementFactory.getThreadMXBean();
+    private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*\"?([^\\s;\"]+)", Pattern.CASE_INSENSITIVE);
+
+    private static volatile String apiPrefix = System.getProperty(API_PREFIX_PROPERTY, API_PREFIX);
+    private static volatile NSResponseCache responseCache = NSResponseCache.getInstance();
+    private static volatile NSRetryPolicy retryPolicy = NSRetryPolicy.DEFAULT;
+    private static volatile boolean offline = Boolean.getBoolean(OFFLINE_PROPERTY);
+    private static final Map<String, NSCircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
 
-    private HttpResponse<String> response;
+    private volatile String response;
+    private CompletableFuture<NSConnection> pending;
     private URL url;
+    private NSPriority priority = NSPriority.current();
 
     /**
      * Creates an unconnected {@code NSConnection} to query the specified URL.
@@ -70,7 +150,114 @@ public class NSConnection {
     }
 
     /**
-     * Connects instantiated {@code NSConnection}.
+     * Sets priority with which this connection waits for a rate limit permit. Defaults to the priority current on the
+     * thread which created it; see {@link NSPriority#call(java.util.function.Supplier)}. Must be set before connecting.
+     * @param priority to use
+     * @return this
+     */
+    public NSConnection setPriority(NSPriority priority) {
+        this.priority = Objects.requireNonNull(priority);
+        return this;
+    }
+
+    /** @return priority with which this connection waits for a rate limit permit */
+    public NSPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the API prefix used to build all further API URLs.
+     * @param prefix in the same form as {@link #API_PREFIX}, ending with {@code ?}
+     */
+    public static void setApiPrefix(String prefix) {
+        if (!Objects.requireNonNull(prefix).endsWith("?"))
+            throw new IllegalArgumentException(String.format("API prefix <%s> must end with '?'", prefix));
+        apiPrefix = prefix;
+    }
+
+    /** @return API prefix, to which query parameters are appended to build API URLs */
+    public static String getApiPrefix() {
+        return apiPrefix;
+    }
+
+    /**
+     * Sets the rate limiter used for all further API requests.
+     * @param limiter to use
+     */
+    public static void setRateLimiter(NSRateLimiter limiter) {
+        DISPATCHER.setLimiter(Objects.requireNonNull(limiter));
+    }
+
+    /** @return limiter shared with other processes; if that cannot be opened, limiter for this process only */
+    private static NSRateLimiter defaultLimiter() {
+        try {
+            return NSSharedRateLimiter.create(PERMITS_PER_SECOND);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Cannot open shared rate limit; limiting this process alone", e);
+            return new NSStaticRateLimiter(PERMITS_PER_SECOND);
+        }
+    }
+
+    /** @return rate limiter used for API requests */
+    public static NSRateLimiter getRateLimiter() {
+        return DISPATCHER.getLimiter();
+    }
+
+    /**
+     * Sets the cache used for all further API responses.
+     * @param cache to use
+     */
+    public static void setResponseCache(NSResponseCache cache) {
+        responseCache = Objects.requireNonNull(cache);
+    }
+
+    /** @return cache used for API responses */
+    public static NSResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Sets whether further requests are answered only from stored responses, without contacting the API. Caches of
+     * parsed data, such as the nation cache, likewise answer from records of any age.
+     * @param offline true to stop contacting the API
+     */
+    public static void setOffline(boolean offline) {
+        NSConnection.offline = offline;
+        LOGGER.info(offline ? "Working offline from cached data" : "Working online");
+    }
+
+    /** @return true if requests are answered only from stored responses */
+    public static boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Sets the policy for retrying failed requests and configuring circuit breakers. Existing circuit breakers are
+     * discarded.
+     * @param policy to use
+     */
+    public static void setRetryPolicy(NSRetryPolicy policy) {
+        retryPolicy = Objects.requireNonNull(policy);
+        BREAKERS.clear();
+    }
+
+    /** @return policy for retrying failed requests */
+    public static NSRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @param endpoint as tagged by {@link NSMetrics#endpoint(URI)}, eg {@code nation} for any nation lookup whatever
+     *                 its shards, {@code wa:members}, or an action such as {@code sendtg}
+     * @return state of circuit breaker for endpoint
+     */
+    public static NSCircuitBreaker.State getCircuitState(String endpoint) {
+        NSCircuitBreaker breaker = BREAKERS.get(endpoint);
+        return breaker == null ? NSCircuitBreaker.State.CLOSED : breaker.getState();
+    }
+
+    /**
+     * Connects instantiated {@code NSConnection}. Blocks until the request is dispatched and the response received.
      * @return this
      * @throws FileNotFoundException if nation does not exist
      * @throws IOException           if connection otherwise fails
@@ -78,20 +265,320 @@ public class NSConnection {
      * @throws NSException           if other error
      */
     public NSConnection connect() throws IOException {
-        // Implement the rate limit
-        double secondsWaited = limiter.acquire();
-        LOGGER.finest(String.format("NSConnection rate limit -> waited %.3f seconds", secondsWaited));
+        return await(connectAsync());
+    }
 
-        // todo rewrite with HttpClient
-        HttpRequest request;
+    /**
+     * Queues instantiated {@code NSConnection} for connection without blocking. The request is sent once the dispatcher
+     * grants it a rate limit permit. Calling this method more than once returns the same future.
+     * @return future completing with this when connected; or exceptionally with the same exceptions as
+     * {@link #connect()}
+     */
+    public synchronized CompletableFuture<NSConnection> connectAsync() {
+        if (pending != null) return pending;
+        URI uri = toURI();
+        // coalesce only within a lane; a critical caller must not wait behind a background request
+        CompletableFuture<String> shared = IN_FLIGHT.execute(priority + " " + normalise(url.toString()),
+                () -> read(uri, open(uri), NSConnection::readString));
+        pending = cancelling(shared.thenApply(body -> {
+            response = body;
+            return this;
+        }), shared);
+        return pending;
+    }
+
+    /**
+     * Streams response through parser without holding it in memory. Blocks until parsed. The response is not kept;
+     * unlike {@link #connect()}, this does not make {@link #getResponse()} available.
+     * @param parser to apply to response
+     * @param <T>    type of result
+     * @return result of parser
+     * @throws FileNotFoundException if nation does not exist
+     * @throws IOException           if connection otherwise fails
+     * @throws NSIOException         if rate limit exceeded
+     * @throws NSException           if response is malformed
+     */
+    public <T> T parse(NSStreamParser<T> parser) throws IOException {
+        return await(parseAsync(parser));
+    }
+
+    /**
+     * Streams response through parser without blocking. Parsing is done on a reader thread as the response arrives.
+     * Unlike {@link #connectAsync()}, concurrent identical requests are not coalesced here; callers sharing parsed
+     * results should coalesce them themselves.
+     * @param parser to apply to response
+     * @param <T>    type of result
+     * @return future completing with result of parser; or exceptionally as {@link #parse(NSStreamParser)}
+     */
+    public <T> CompletableFuture<T> parseAsync(NSStreamParser<T> parser) {
+        Function<Body, T> parse = body -> {
+            try {
+                return parser.parse(NSXMLSelector.createReader(body.stream, body.charset));
+            } catch (XMLStreamException e) {
+                if (e.getNestedException() instanceof IOException)
+                    throw new CompletionException(e.getNestedException());
+                throw new NSException(String.format("Malformed response from URL %s", url), e);
+            }
+        };
+
+        String existing = response;
+        if (existing != null) return read(toURI(), CompletableFuture.completedFuture(new Body(
+                new ByteArrayInputStream(existing.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)), parse);
+        URI uri = toURI();
+        return read(uri, open(uri), parse);
+    }
+
+    /**
+     * Opens response body at URI, from the response cache if possible and otherwise by queueing a request with the
+     * dispatcher. Bodies of cached endpoints are stored as they are read.
+     * @param uri to fetch
+     * @return future completing with open response body, which must be closed
+     */
+    private CompletableFuture<Body> open(URI uri) {
+        if (offline) return openOffline(uri);
+        NSResponseCache cache = responseCache;
+        Optional<NSResponseCache.Entry> cached = cache.lookup(uri);
+        if (cached.isPresent() && cache.isFresh(cached.get())) {
+            try {
+                return CompletableFuture.completedFuture(
+                        new Body(cache.open(cached.get(), false), cache.charset(cached.get()).orElse(null)));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Unable to read cached response for %s", url), e);
+                cached = Optional.empty();
+            }
+        }
+
+        HttpRequest.Builder builder = NSTransport.getInstance().newRequest(uri)
+                .header(
+                        "User-Agent",
+                        "NS API request; maintained by Imperium Anglorum (cyrilparsons.london@gmail.com); "
+                                + "see IP")
+                .GET();
+        cached.ifPresent(entry -> cache.addValidators(entry, builder));
+        HttpRequest request = builder.build();
+
+        Optional<NSResponseCache.Entry> validated = cached;
+        CompletableFuture<HttpResponse<InputStream>> sent = send(uri, request, 1);
+        return cancelling(sent.thenApply(r -> {
+            if (r.statusCode() == 304 && validated.isPresent()) {
+                closeQuietly(r.body());
+                try {
+                    return new Body(cache.open(validated.get(), true), cache.charset(validated.get()).orElse(null));
+                } catch (IOException e) {
+                    throw new NSIOException(String.format("Cached response for URL %s unreadable after 304", url), e);
+                }
+            }
+
+            check(r);
+            Charset charset = charset(r.headers());
+            InputStream decoded = NSContentEncoding.decode(r.headers(), r.body());
+            return new Body(cache.tee(uri, r.headers(), charset, decoded), charset);
+        }), sent);
+    }
+
+    /**
+     * Opens stored response at URI whatever its age, without queueing a request, and records its age.
+     * @param uri to fetch
+     * @return future completing with open response body; or exceptionally with {@link NSOfflineException} if there is
+     * no stored response
+     */
+    private CompletableFuture<Body> openOffline(URI uri) {
+        NSResponseCache cache = responseCache;
+        Optional<NSResponseCache.Entry> cached = cache.lookup(uri);
+        if (cached.isEmpty()) return CompletableFuture.failedFuture(new NSOfflineException(
+                String.format("Working offline and no response stored for URL %s", url)));
+        try {
+            Body body = new Body(cache.open(cached.get(), false), cache.charset(cached.get()).orElse(null));
+            NSOfflineReport.getInstance().record(NSMetrics.endpoint(uri), cache.fetched(cached.get()));
+            return CompletableFuture.completedFuture(body);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new NSOfflineException(
+                    String.format("Working offline and stored response for URL %s unreadable", url), e));
+        }
+    }
+
+    /**
+     * Sends request through the dispatcher, retrying transient failures as the {@link NSRetryPolicy} allows. Nothing is
+     * sent, and no permit spent, while the endpoint's circuit breaker is open. Cancelling the returned future before
+     * the request is dispatched withdraws it from the dispatcher, and cancelling it between attempts stops retrying.
+     * @param uri     of request
+     * @param request to send
+     * @param attempt number of this attempt, from one
+     * @return future completing with last response; or exceptionally with last failure
+     */
+    private CompletableFuture<HttpResponse<InputStream>> send(URI uri, HttpRequest request, int attempt) {
+        NSRetryPolicy policy = retryPolicy;
+        String endpoint = NSMetrics.endpoint(uri); // one breaker per endpoint, whatever shards are asked for
+        NSCircuitBreaker breaker = BREAKERS.computeIfAbsent(endpoint, policy::newCircuitBreaker);
+        if (!breaker.allow()) return CompletableFuture.failedFuture(new NSCircuitBreaker.NSCircuitOpenException(
+                String.format("API endpoint <%s> failing; not sending request to URL %s", endpoint, url)));
+
+        long queued = System.nanoTime();
+        AtomicBoolean dispatched = new AtomicBoolean();
+        AtomicReference<CompletableFuture<HttpResponse<InputStream>>> returned = new AtomicReference<>();
+        CompletableFuture<HttpResponse<InputStream>> job = DISPATCHER.submit(priority, () -> {
+            dispatched.set(true);
+            NSMetrics.getInstance().record(NSMetrics.endpoint(uri), NSMetrics.Phase.LIMITER_WAIT,
+                    System.nanoTime() - queued);
+            NSRateLimiter limiter = DISPATCHER.getLimiter(); // the limiter which issued the permit
+            return NSTransport.getInstance().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                    .whenComplete((r, e) -> {
+                        if (r != null) limiter.observe(r.statusCode(), r.headers());
+                    });
+        }, (r, e) -> { // cancelled after it was sent; release the connection, but still tell the breaker how it went
+            if (r != null) closeQuietly(r.body());
+            if (isDown(r, e)) breaker.onFailure();
+            else breaker.onSuccess();
+        });
+        returned.set(cancelling(job.handle((r, e) -> {
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof CancellationException) {
+                // withdrawn before dispatch says nothing of the endpoint; if sent, the outcome is reported on arrival
+                if (!dispatched.get()) breaker.onCancelled();
+                return CompletableFuture.<HttpResponse<InputStream>>failedFuture(cause);
+            }
+
+            boolean down = isDown(r, cause);
+            if (down) breaker.onFailure();
+            else breaker.onSuccess();
+
+            boolean retry = down || (r != null && r.statusCode() == 429);
+            if (!retry || attempt >= policy.getMaxAttempts())
+                return r != null
+                        ? CompletableFuture.completedFuture(r)
+                        : CompletableFuture.<HttpResponse<InputStream>>failedFuture(cause);
+
+            if (r != null) closeQuietly(r.body());
+            Duration delay = policy.delay(attempt, r == null ? null : NSRetryPolicy.retryAfter(r.headers()));
+            LOGGER.warning(String.format("Attempt %d of %d for URL %s failed with %s; retrying in %d ms",
+                    attempt, policy.getMaxAttempts(), url,
+                    r != null ? "status " + r.statusCode() : cause.getClass().getSimpleName(),
+                    delay.toMillis()));
+            Executor delayed = CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+            return CompletableFuture.runAsync(() -> { }, delayed)
+                    .thenCompose(v -> returned.get().isCancelled()
+                            ? CompletableFuture.<HttpResponse<InputStream>>failedFuture(new CancellationException())
+                            : send(uri, request, attempt + 1));
+        }).thenCompose(Function.identity()), job));
+        return returned.get();
+    }
+
+    /**
+     * @param r     response; null if none
+     * @param cause of failure; null if none
+     * @return true if the outcome shows the endpoint to be unreachable or erroring
+     */
+    private static boolean isDown(HttpResponse<?> r, Throwable cause) {
+        // not eg a missing nation, or a replayed request never recorded; the same request would only fail again
+        return NSRetryPolicy.isTransient(cause) || (r != null && r.statusCode() >= 500);
+    }
+
+    /**
+     * Cancels source when dependent is cancelled. Cancelling a dependent stage does not cancel the stage it depends
+     * on; without this, a request whose caller has given up would still be sent when it reached the dispatcher.
+     * @param dependent returned to caller
+     * @param source    on which it depends
+     * @param <T>       type of result
+     * @return dependent
+     */
+    private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((t, e) -> {
+            if (dependent.isCancelled()) source.cancel(false);
+        });
+        return dependent;
+    }
+
+    /**
+     * Reads opened body on a reader thread, closing it afterwards, and records {@link NSMetrics.Phase#PARSE}. If the
+     * returned future is cancelled before the body is read, the body is closed unread.
+     * @param uri    of request
+     * @param opened body
+     * @param reader to apply
+     * @param <T>    type of result
+     * @return future completing with result of reader
+     */
+    private static <T> CompletableFuture<T> read(URI uri, CompletableFuture<Body> opened, Function<Body, T> reader) {
+        CompletableFuture<T> result = opened.thenApplyAsync(body -> {
+            long start = cpuTime();
+            try {
+                return reader.apply(body);
+            } finally {
+                closeQuietly(body.stream);
+                NSMetrics.getInstance().record(NSMetrics.endpoint(uri), NSMetrics.Phase.PARSE, cpuTime() - start);
+            }
+        }, READERS);
+        result.whenComplete((t, e) -> {
+            if (result.isCancelled()) {
+                opened.cancel(false);
+                opened.thenAccept(body -> closeQuietly(body.stream));
+            }
+        });
+        return result;
+    }
+
+    /** @return processor time of current thread in nanoseconds, if supported; else wall clock time */
+    private static long cpuTime() {
+        return THREAD_MX.isCurrentThreadCpuTimeSupported() && THREAD_MX.isThreadCpuTimeEnabled()
+                ? THREAD_MX.getCurrentThreadCpuTime()
+                : System.nanoTime();
+    }
+
+    /** Reads whole body as string, in its charset or UTF-8 if none given. */
+    private static String readString(Body body) {
+        try {
+            return new String(body.stream.readAllBytes(),
+                    body.charset == null ? StandardCharsets.UTF_8 : body.charset);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Checks response status. If not acceptable, the body is closed unread.
+     * @param r response to check
+     * @throws NSResponseException if rate limit exceeded or response otherwise not 200
+     */
+    private void check(HttpResponse<InputStream> r) {
+        if (r.statusCode() == 200) return;
+        closeQuietly(r.body());
+
+        Duration retryAfter = NSRetryPolicy.retryAfter(r.headers());
+        if (r.statusCode() == 429)
+            throw new NSResponseException(String.format("API rate limit exceeded! Retry after %s",
+                    CommuniqueUtilities.time(retryAfter == null ? -1 : retryAfter.getSeconds())),
+                    r.statusCode(), retryAfter);
+
+        if (r.statusCode() == 404)
+            throw new NSResponseException(String.format("No result for URL %s", url.toString()),
+                    r.statusCode(), retryAfter);
+
+        throw new NSResponseException(String.format("Received non-200 response code %d from API at URL %s",
+                r.statusCode(), url.toString()
+        ), r.statusCode(), retryAfter);
+    }
+
+    /** @return charset declared in {@code Content-Type}; null if none or unsupported */
+    private static Charset charset(HttpHeaders headers) {
+        Matcher m = CHARSET.matcher(headers.firstValue("Content-Type").orElse(""));
+        if (!m.find()) return null;
+        try {
+            return Charset.forName(m.group(1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private URI toURI() {
         try {
-            request = HttpRequest.newBuilder(url.toURI())
-                    .header(
-                            "User-Agent",
-                            "NS API request; maintained by Imperium Anglorum (cyrilparsons.london@gmail.com); "
-                                    + "see IP")
-                    .GET()
-                    .build();
+            return url.toURI();
         } catch (URISyntaxException e) {
             LOGGER.log(Level.SEVERE,
                     String.format(
@@ -100,32 +587,17 @@ public class NSConnection {
                     e);
             throw new RuntimeException("Unable to convert URL to URI", e);
         }
+    }
 
-        try {
-            response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    /** Open response body and its charset, if known. */
+    private static class Body {
+        private final InputStream stream;
+        private final Charset charset;
 
-        } catch (InterruptedException e) {
-            LOGGER.log(Level.SEVERE, "Interrupted when sending NS API request", e);
-            throw new RuntimeException("Interrupted when sending NS API request", e);
+        private Body(InputStream stream, Charset charset) {
+            this.stream = stream;
+            this.charset = charset;
         }
-
-        if (response.statusCode() == 429)
-            throw new NSIOException(String.format("API rate limit exceeded! Retry after %s",
-                    CommuniqueUtilities.time(Long.parseLong(
-                                    response.headers().firstValue("X-Retry-After").orElse("-1")
-                            )
-                    )
-            ));
-
-        if (response.statusCode() == 404)
-            throw new NSIOException(String.format("No result for URL %s", url.toString()));
-
-        if (response.statusCode() != 200)
-            throw new NSIOException(String.format("Received non-200 response code %d from API at URL %s",
-                    response.statusCode(), url.toString()
-            ));
-
-        return this;
     }
 
     /**
@@ -136,6 +608,76 @@ public class NSConnection {
      */
     public String getResponse() throws IOException {
         if (response == null) { connect(); }
-        return response.body();
+        return response;
+    }
+
+    /**
+     * Delivers response asynchronously. If not yet connected, invokes {@link #connectAsync()} automatically.
+     * @return future completing with the response
+     */
+    public CompletableFuture<String> getResponseAsync() {
+        if (response != null) return CompletableFuture.completedFuture(response);
+        CompletableFuture<NSConnection> connected = connectAsync();
+        return cancelling(connected.thenApply(c -> c.response), connected);
+    }
+
+    /**
+     * Normalises URL so that requests which the API treats identically compare equal. The NationStates API is case
+     * insensitive and treats spaces as underscores; trailing separators are ignored.
+     * @param urlString to normalise
+     * @return normalised URL
+     */
+    public static String normalise(String urlString) {
+        String s = urlString.trim().toLowerCase()
+                .replace("%20", "_")
+                .replace(' ', '_');
+        while (s.endsWith("+") || s.endsWith("&") || s.endsWith(";"))
+            s = s.substring(0, s.length() - 1);
+        return s;
+    }
+
+    /**
+     * Waits for a future from one of the asynchronous methods, unwrapping its exception so that synchronous callers see
+     * the same exceptions they would from {@link #connect()}.
+     * @param future to wait for
+     * @param <T>    type of result
+     * @return result of the future
+     * @throws IOException if connection failed
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.SEVERE, "Interrupted when sending NS API request", e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when sending NS API request", e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null)
+                cause = cause.getCause();
+
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new NSIOException("Failed to complete NS API request", (Exception) cause);
+        }
+    }
+
+    /**
+     * Thrown, without a request being made, when a request cannot be answered while {@link #isOffline() offline}.
+     * @since version 13
+     */
+    public static class NSOfflineException extends NSIOException {
+        private static final long serialVersionUID = 1L;
+
+        public NSOfflineException(String message) {
+            super(message);
+        }
+
+        public NSOfflineException(String message, Exception e) {
+            super(message, e);
+        }
     }
-}
\ No newline at end of file
+}
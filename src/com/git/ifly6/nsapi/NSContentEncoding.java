@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpHeaders;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates compressed transfer with the API. Requests advertise {@link #ACCEPT_ENCODING}; response bodies are
+ * decompressed as they stream in by {@link #decode(HttpHeaders, InputStream)}.
+ * @since version 13
+ */
+public class NSContentEncoding {
+
+    /** Value of {@code Accept-Encoding} header to send with requests. */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private NSContentEncoding() { }
+
+    /**
+     * Wraps body to decompress it according to its {@code Content-Encoding}. Nothing is read until the returned stream
+     * is first read, so this is safe to call on the HTTP client's threads. {@code deflate} is accepted both with and
+     * without the zlib wrapper, as servers differ.
+     * @param headers of response
+     * @param body    of response
+     * @return stream of decoded body
+     */
+    public static InputStream decode(HttpHeaders headers, InputStream body) {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase();
+        switch (encoding) {
+            case "identity":
+            case "":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new LazyInputStream(body) {
+                    @Override
+                    InputStream open(InputStream raw) throws IOException {
+                        return new GZIPInputStream(raw, 8192);
+                    }
+                };
+            case "deflate":
+                return new LazyInputStream(body) {
+                    @Override
+                    InputStream open(InputStream raw) throws IOException {
+                        PushbackInputStream pushback = new PushbackInputStream(raw, 2);
+                        byte[] header = pushback.readNBytes(2);
+                        pushback.unread(header);
+                        return new InflaterInputStream(pushback, new Inflater(!isZlib(header)), 8192);
+                    }
+                };
+            default:
+                return new LazyInputStream(body) {
+                    @Override
+                    InputStream open(InputStream raw) throws IOException {
+                        throw new IOException(String.format("Unsupported content encoding <%s>", encoding));
+                    }
+                };
+        }
+    }
+
+    /** @return true if bytes are a zlib header (RFC 1950), rather than the start of raw deflate data */
+    private static boolean isZlib(byte[] header) {
+        if (header.length < 2) return false;
+        int cmf = header[0] & 0xFF;
+        int flg = header[1] & 0xFF;
+        return (cmf & 0x0F) == 8 && (cmf * 256 + flg) % 31 == 0;
+    }
+
+    /** Defers wrapping the raw stream until first read, since decompressors read headers when constructed. */
+    private abstract static class LazyInputStream extends FilterInputStream {
+        private final InputStream raw;
+        private boolean opened;
+
+        private LazyInputStream(InputStream raw) {
+            super(raw);
+            this.raw = raw;
+        }
+
+        abstract InputStream open(InputStream raw) throws IOException;
+
+        private InputStream stream() throws IOException {
+            if (!opened) {
+                in = open(raw);
+                opened = true;
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return stream().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return stream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return stream().available();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands out rate limit permits to queued API requests. The single dispatch thread only blocks on the rate limiter;
+ * once a permit is acquired, the request is started asynchronously and the thread moves on to the next request. This
+ * means that network latency for one request overlaps with waiting for the next, without needing a thread per
+ * request.
+ * <p>
+ * Requests wait in one lane per {@link NSPriority}. A permit is acquired before the request to receive it is chosen,
+ * so a request arriving in a higher lane while the dispatcher waits for a permit is served first. Within a lane,
+ * requests are served in order of submission.
+ * </p>
+ * @since version 13
+ */
+class NSDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(NSDispatcher.class.getName());
+
+    private final Map<NSPriority, Deque<Job<?>>> lanes = new EnumMap<>(NSPriority.class);
+    private final Map<NSPriority, Duration> maxWaits = new EnumMap<>(NSPriority.class);
+    private volatile NSRateLimiter limiter;
+
+    /**
+     * Creates dispatcher and starts its daemon dispatch thread.
+     * @param limiter from which to acquire permits
+     */
+    NSDispatcher(NSRateLimiter limiter) {
+        this.limiter = limiter;
+        for (NSPriority p : NSPriority.values()) {
+            lanes.put(p, new ArrayDeque<>());
+            maxWaits.put(p, p.getMaxWait());
+        }
+
+        Thread thread = new Thread(this::run, "nsapi-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues request for dispatch. The request is only started after a permit is acquired. If the returned future is
+     * cancelled before dispatch, no permit is spent on it.
+     * @param priority lane in which to queue
+     * @param request  supplying the asynchronous request when started
+     * @param <T>      type of result
+     * @return future completing with the result of the request
+     */
+    <T> CompletableFuture<T> submit(NSPriority priority, Supplier<CompletableFuture<T>> request) {
+        return submit(priority, request, (t, e) -> { });
+    }
+
+    /**
+     * Queues request for dispatch, as {@link #submit(NSPriority, Supplier)}. If the returned future is cancelled after
+     * the request was started, its outcome, which would otherwise be dropped, is passed to {@code orphaned} when it
+     * arrives; eg to release a response body nobody will read.
+     * @param priority lane in which to queue
+     * @param request  supplying the asynchronous request when started
+     * @param orphaned accepting result, or failure, of a request started but cancelled
+     * @param <T>      type of result
+     * @return future completing with the result of the request
+     */
+    <T> CompletableFuture<T> submit(NSPriority priority, Supplier<CompletableFuture<T>> request,
+                                    BiConsumer<? super T, ? super Throwable> orphaned) {
+        Job<T> job = new Job<>(priority, request, orphaned);
+        synchronized (lanes) {
+            lanes.get(priority).add(job);
+            lanes.notifyAll();
+        }
+        return job.result;
+    }
+
+    /** @param limiter from which to acquire permits for all further requests */
+    void setLimiter(NSRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /** @return limiter from which permits are acquired */
+    NSRateLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Overrides {@link NSPriority#getMaxWait()} for lane.
+     * @param priority of lane
+     * @param maxWait  after which its requests are protected from starvation
+     */
+    void setMaxWait(NSPriority priority, Duration maxWait) {
+        synchronized (lanes) {
+            maxWaits.put(priority, maxWait);
+        }
+    }
+
+    /** @return number of requests waiting for a permit */
+    int queued() {
+        synchronized (lanes) {
+            return lanes.values().stream().mapToInt(Deque::size).sum();
+        }
+    }
+
+    /**
+     * @param priority of lane
+     * @return number of requests waiting for a permit in lane
+     */
+    int queued(NSPriority priority) {
+        synchronized (lanes) {
+            return lanes.get(priority).size();
+        }
+    }
+
+    private void run() {
+        boolean holdingPermit = false;
+        while (true) {
+            Job<?> job;
+            try {
+                synchronized (lanes) {
+                    while (isEmpty()) lanes.wait();
+                }
+
+                if (!holdingPermit) {
+                    double secondsWaited = limiter.acquire();
+                    LOGGER.finest(String.format("NSConnection rate limit -> waited %.3f seconds", secondsWaited));
+                    holdingPermit = true;
+                }
+
+                synchronized (lanes) {
+                    job = next();
+                }
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.SEVERE, "NS API dispatcher interrupted; no further requests will be sent", e);
+                return;
+            }
+
+            if (job == null) continue; // all cancelled while waiting; keep permit for the next request
+            holdingPermit = false;
+            LOGGER.finest(String.format("Dispatching %s request after %d ms in queue",
+                    job.priority, (System.nanoTime() - job.enqueued) / 1_000_000));
+            job.start();
+        }
+    }
+
+    /** @return true if no request is waiting, discarding those cancelled while waiting */
+    private boolean isEmpty() {
+        for (Deque<Job<?>> lane : lanes.values()) {
+            while (!lane.isEmpty() && lane.peek().result.isDone()) lane.poll(); // cancelled, do not waste a permit
+            if (!lane.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Chooses next request: {@link NSPriority#SEND_CRITICAL} first; then the longest-starved request past its lane's
+     * maximum wait; then the highest lane.
+     * @return next request; null if none
+     */
+    private Job<?> next() {
+        if (isEmpty()) return null;
+        if (!lanes.get(NSPriority.SEND_CRITICAL).isEmpty()) return lanes.get(NSPriority.SEND_CRITICAL).poll();
+
+        long now = System.nanoTime();
+        Deque<Job<?>> starved = null;
+        long longestOverdue = 0;
+        for (NSPriority p : NSPriority.values()) {
+            Job<?> head = lanes.get(p).peek();
+            if (head == null || maxWaits.get(p).isZero()) continue;
+            long overdue = now - head.enqueued - maxWaits.get(p).toNanos();
+            if (overdue > longestOverdue) {
+                longestOverdue = overdue;
+                starved = lanes.get(p);
+            }
+        }
+        if (starved != null) return starved.poll();
+
+        for (NSPriority p : NSPriority.values())
+            if (!lanes.get(p).isEmpty()) return lanes.get(p).poll();
+        return null;
+    }
+
+    /** Pairs a request with the future returned to its caller. */
+    private static class Job<T> {
+        private final NSPriority priority;
+        private final long enqueued = System.nanoTime();
+        private final Supplier<CompletableFuture<T>> request;
+        private final BiConsumer<? super T, ? super Throwable> orphaned;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Job(NSPriority priority, Supplier<CompletableFuture<T>> request,
+                    BiConsumer<? super T, ? super Throwable> orphaned) {
+            this.priority = priority;
+            this.request = request;
+            this.orphaned = orphaned;
+        }
+
+        private void start() {
+            try {
+                request.get().whenComplete((t, e) -> {
+                    boolean delivered = e != null ? result.completeExceptionally(e) : result.complete(t);
+                    if (!delivered) orphaned.accept(t, e); // cancelled while in flight
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Registry of NationStates API endpoints. Each endpoint owns a query template whose placeholders, {@code {}}, are
+ * filled by the arguments to {@link #url(String...)}. Templates are split into their static segments once, when the
+ * class is loaded, so building a URL is a single sized {@link StringBuilder} and no parsing. Arguments are escaped only
+ * where they would change the meaning of the query; the commas and hyphens in region tag lists, for example, pass
+ * through unchanged. URLs are built against {@link NSConnection#getApiPrefix()} at the time of the call.
+ * <p>
+ * Responses should be read with {@link NSXMLSelector}s built from {@link NSXMLSelector.Path} constants compiled
+ * alongside the parser for each endpoint.
+ * </p>
+ * @since version 13
+ */
+public enum NSEndpoint {
+
+    /** Nation shards; append shards to the URL, joined by {@code +}. */
+    NATION("nation={}&q="),
+    /** Region shards; append shards to the URL, joined by {@code +}. */
+    REGION("region={}&q="),
+    NATIONS("q=nations"),
+    NEW_NATIONS("q=newnations"),
+    NEW_NATION_DETAILS("q=newnationdetails"),
+    /** Regions with every tag in a comma-separated list; tags prefixed {@code -} are excluded. */
+    REGIONS_BY_TAG("q=regionsbytag;tags={}"),
+    WA_MEMBERS("wa=1&q=members"),
+    WA_DELEGATES("wa=1&q=delegates"),
+    /** Resolution at vote in council. */
+    WA_RESOLUTION("wa={}&q=resolution"),
+    WA_RESOLUTION_VOTERS("wa={}&q=resolution+voters"),
+    WA_RESOLUTION_DELEGATE_VOTES("wa={}&q=resolution+delvotes"),
+    WA_PROPOSALS("wa={}&q=proposals"),
+    /** Happenings which can show a nation is active. */
+    HAPPENINGS("q=happenings;filter=law+change+dispatch+rmb+embassy+admin+vote+resolution+member"),
+    /** Sends telegram; arguments are client key, secret key, telegram ID, and recipient. */
+    SEND_TELEGRAM("a=sendTG&client={}&key={}&tgid={}&to={}");
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String template;
+    private final String[] segments; // static text around placeholders; one more than arguments
+    private final int staticLength;
+
+    NSEndpoint(String template) {
+        this.template = template;
+        this.segments = template.split("\\{}", -1);
+        int length = 0;
+        for (String segment : segments) length += segment.length();
+        this.staticLength = length;
+    }
+
+    /** @return query template, with {@code {}} for each argument */
+    public String getTemplate() {
+        return template;
+    }
+
+    /** @return number of arguments taken by {@link #url(String...)} */
+    public int getArity() {
+        return segments.length - 1;
+    }
+
+    /**
+     * Builds URL for endpoint.
+     * @param arguments for each placeholder, in order
+     * @return URL against current API prefix
+     * @throws IllegalArgumentException if number of arguments does not match {@link #getArity()}
+     */
+    public String url(String... arguments) {
+        if (arguments.length != getArity())
+            throw new IllegalArgumentException(String.format("Endpoint %s takes %d arguments, not %d",
+                    this, getArity(), arguments.length));
+
+        String prefix = NSConnection.getApiPrefix();
+        int length = prefix.length() + staticLength;
+        for (String argument : arguments) length += argument.length();
+
+        StringBuilder sb = new StringBuilder(length + 16).append(prefix).append(segments[0]);
+        for (int i = 0; i < arguments.length; i++) {
+            encode(sb, arguments[i]);
+            sb.append(segments[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds URI for endpoint.
+     * @param arguments for each placeholder, in order
+     * @return URI against current API prefix
+     * @see #url(String...)
+     */
+    public URI uri(String... arguments) {
+        return URI.create(url(arguments));
+    }
+
+    /**
+     * Appends argument, percent-encoding characters which are not safe in a query value. Arguments needing no escapes,
+     * which is nearly all of them, are appended without copying.
+     * @param sb       to append to
+     * @param argument to encode
+     */
+    static void encode(StringBuilder sb, String argument) {
+        int i = 0;
+        while (i < argument.length() && isSafe(argument.charAt(i))) i++;
+        if (i == argument.length()) {
+            sb.append(argument);
+            return;
+        }
+
+        sb.append(argument, 0, i);
+        byte[] bytes = argument.substring(i).getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            if (b >= 0 && isSafe((char) b)) sb.append((char) b);
+            else sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+    }
+
+    /** @return true if character can appear unescaped in a query value */
+    private static boolean isSafe(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-' || c == '.' || c == '~' || c == ',' || c == ':' || c == '@' || c == '!'
+                || c == '*' || c == '(' || c == ')' || c == '\'' || c == '$' || c == '/';
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations with power of two microsecond buckets. Recording is a few atomic increments, so it
+ * can be done on every request. Percentiles are therefore approximate: they are reported as the upper bound of the
+ * bucket they fall in, but never more than the maximum recorded.
+ * @since version 13
+ */
+public class NSHistogram {
+
+    private static final int BUCKETS = 42; // up to 2^41 microseconds, about 25 days
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** @param nanos duration to record; negative durations are recorded as zero */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** @return number of durations recorded */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return sum of durations recorded */
+    public Duration getTotal() {
+        return Duration.ofNanos(totalNanos.sum());
+    }
+
+    /** @return mean duration; zero if none recorded */
+    public Duration getMean() {
+        long n = count.sum();
+        return n == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / n);
+    }
+
+    /** @return longest duration recorded */
+    public Duration getMax() {
+        return Duration.ofNanos(maxNanos.get());
+    }
+
+    /**
+     * @param quantile between zero and one, eg {@code 0.95}
+     * @return approximate duration at quantile; zero if none recorded
+     */
+    public Duration getPercentile(double quantile) {
+        if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return Duration.ZERO;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long upperMicros = i == 0 ? 0 : 1L << i;
+                return Duration.ofNanos(Math.min(upperMicros * 1000, maxNanos.get()));
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%d p95=%d max=%d ms", getCount(), getPercentile(0.5).toMillis(),
+                getPercentile(0.95).toMillis(), getMax().toMillis());
+    }
+}
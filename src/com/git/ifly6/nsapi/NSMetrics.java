@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Breaks down where time goes in API requests, per endpoint. Each request records up to four {@link Phase}s into
+ * {@link NSHistogram}s: waiting for a rate limit permit, waiting for the response headers, transferring the body, and
+ * parsing it. Requests are tagged with their endpoint by {@link #endpoint(URI)}: {@code nation}, {@code region}, the
+ * world shard (eg {@code nations}, {@code happenings}), the World Assembly shard (eg {@code wa:members}), or the action
+ * (eg {@code sendtg}).
+ * <p>
+ * A summary of every endpoint with new requests is logged at {@code INFO} every {@link #DEFAULT_SUMMARY_INTERVAL};
+ * see {@link #setSummaryInterval(Duration)}.
+ * </p>
+ * @since version 13
+ */
+public class NSMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(NSMetrics.class.getName());
+    public static final Duration DEFAULT_SUMMARY_INTERVAL = Duration.ofMinutes(5);
+
+    private static NSMetrics instance;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "nsapi-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> summary;
+    private long lastLogged;
+
+    /** Phases of an API request. */
+    public enum Phase {
+        /** Waiting in the dispatcher for a rate limit permit. */
+        LIMITER_WAIT,
+        /** From sending the request to receiving response headers. */
+        FIRST_BYTE,
+        /**
+         * From response headers to the end of the body. Bodies are streamed into the parser, so this includes any time
+         * the parser falls behind the network.
+         */
+        TRANSFER,
+        /** Processor time spent decompressing and parsing the body, on the thread doing so. */
+        PARSE
+    }
+
+    private NSMetrics() {
+        setSummaryInterval(DEFAULT_SUMMARY_INTERVAL);
+    }
+
+    /** @return metrics for all API requests */
+    public static synchronized NSMetrics getInstance() {
+        if (instance == null) instance = new NSMetrics();
+        return instance;
+    }
+
+    /**
+     * @param endpoint tag from {@link #endpoint(URI)}
+     * @param phase    of request
+     * @param nanos    taken
+     */
+    public void record(String endpoint, Phase phase, long nanos) {
+        endpoints.computeIfAbsent(endpoint, k -> new Endpoint()).phases.get(phase).record(nanos);
+    }
+
+    /** @param endpoint tag of request which failed without a response */
+    public void recordFailure(String endpoint) {
+        endpoints.computeIfAbsent(endpoint, k -> new Endpoint()).failures.increment();
+    }
+
+    /**
+     * @param endpoint tag
+     * @param phase    of request
+     * @return histogram of phase for endpoint, if any request has been made to it
+     */
+    public Optional<NSHistogram> get(String endpoint, Phase phase) {
+        return Optional.ofNullable(endpoints.get(endpoint)).map(e -> e.phases.get(phase));
+    }
+
+    /**
+     * @param endpoint tag
+     * @return number of requests to endpoint failing without a response
+     */
+    public long getFailures(String endpoint) {
+        Endpoint e = endpoints.get(endpoint);
+        return e == null ? 0 : e.failures.sum();
+    }
+
+    /** @return tags of every endpoint requested, sorted */
+    public Set<String> getEndpoints() {
+        return Collections.unmodifiableSet(new TreeSet<>(endpoints.keySet()));
+    }
+
+    /** Clears all metrics. */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Sets how often a summary is logged.
+     * @param interval between summaries; zero to stop logging them
+     */
+    public synchronized void setSummaryInterval(Duration interval) {
+        if (summary != null) summary.cancel(false);
+        summary = interval.isZero() ? null : scheduler.scheduleAtFixedRate(this::logSummary,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /** Logs summary if there have been requests since the last. */
+    private synchronized void logSummary() {
+        long total = endpoints.values().stream().mapToLong(e -> e.phases.get(Phase.FIRST_BYTE).getCount()).sum();
+        if (total == lastLogged) return;
+        lastLogged = total;
+        LOGGER.info(getSummary());
+    }
+
+    /** @return one line summary of median and 95th percentile milliseconds per phase, for every endpoint */
+    public String getSummary() {
+        return "API latency p50/p95 ms: " + getEndpoints().stream().map(tag -> {
+            Endpoint e = endpoints.get(tag);
+            StringBuilder sb = new StringBuilder(tag).append(String.format(" [n=%d",
+                    e.phases.get(Phase.FIRST_BYTE).getCount()));
+            if (e.failures.sum() > 0) sb.append(String.format(", failed=%d", e.failures.sum()));
+            for (Phase phase : Phase.values()) {
+                NSHistogram h = e.phases.get(phase);
+                if (h.getCount() == 0) continue;
+                sb.append(String.format(", %s %d/%d", phase.name().toLowerCase(),
+                        h.getPercentile(0.5).toMillis(), h.getPercentile(0.95).toMillis()));
+            }
+            return sb.append(']').toString();
+        }).collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Tags request with its endpoint.
+     * @param uri of request
+     * @return {@code nation}; {@code region}; action, eg {@code sendtg}; {@code wa:} and first World Assembly shard,
+     * eg {@code wa:members}; first world shard, eg {@code nations}; or empty string if none of these
+     */
+    public static String endpoint(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null) return "";
+        String q = "";
+        boolean wa = false;
+        for (String parameter : query.split("[&;]")) {
+            String lower = parameter.toLowerCase();
+            if (lower.startsWith("a=")) return lower.substring(2).trim();
+            if (lower.startsWith("nation=")) return "nation";
+            if (lower.startsWith("region=")) return "region";
+            if (lower.startsWith("wa=")) wa = true;
+            if (lower.startsWith("q=")) q = lower.substring(2).replace('+', ' ').trim().split(" ")[0];
+        }
+        return wa ? "wa:" + q : q;
+    }
+
+    /** Histograms for one endpoint. */
+    private static class Endpoint {
+        private final Map<Phase, NSHistogram> phases = new EnumMap<>(Phase.class);
+        private final LongAdder failures = new LongAdder();
+
+        private Endpoint() {
+            for (Phase phase : Phase.values()) phases.put(phase, new NSHistogram());
+        }
+    }
+}
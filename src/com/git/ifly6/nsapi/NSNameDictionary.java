@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary of reference names, giving each a dense {@code int} identifier from zero, in the order names are first
+ * seen. Recipients, caches, monitors, and parsed lists all take their names from here, so each name is held once as a
+ * string however many layers refer to it; and a set of names can be held as a set of identifiers, as in
+ * {@link NSNameSet}, at a bit per name in the dictionary rather than an entry object and string per name.
+ * <p>
+ * Names are never removed, so identifiers are stable for the life of the process. Nations founded while it runs are
+ * added as they are seen, a few thousand a day. Identifiers are not persisted and must not be saved.
+ * </p>
+ * <p>
+ * The dictionary is thread-safe. Adding takes its lock; looking up names and identifiers already added usually does
+ * not.
+ * </p>
+ * @since version 13
+ */
+public final class NSNameDictionary {
+
+    private static NSNameDictionary instance;
+
+    /** Names by identifier. Strings are immutable, so can be read from here without the lock. */
+    private volatile String[] names = new String[1 << 12];
+    /** Open addressed hash table of identifier plus one; zero for empty. Its length is a power of two. */
+    private volatile int[] table = new int[1 << 13];
+    private volatile int size;
+
+    private NSNameDictionary() { }
+
+    /** @return dictionary shared by all layers */
+    public static synchronized NSNameDictionary getInstance() {
+        if (instance == null) instance = new NSNameDictionary();
+        return instance;
+    }
+
+    /**
+     * Gets identifier of name, adding it if absent.
+     * @param name in reference form
+     * @return identifier
+     */
+    public int id(String name) {
+        int id = find(name);
+        return id >= 0 ? id : add(name);
+    }
+
+    /**
+     * @param name in reference form
+     * @return identifier of name; {@code -1} if not in dictionary
+     */
+    public int find(String name) {
+        int id = probe(table, names, name);
+        if (id >= 0) return id;
+        synchronized (this) {
+            return probe(table, names, name);
+        }
+    }
+
+    /**
+     * @param id identifier
+     * @return name with that identifier
+     * @throws IndexOutOfBoundsException if no name has that identifier
+     */
+    public String name(int id) {
+        String[] n = names;
+        String name = id >= 0 && id < n.length ? n[id] : null;
+        if (name != null) return name;
+        synchronized (this) {
+            if (id < 0 || id >= size) throw new IndexOutOfBoundsException(String.format("No name with id %d", id));
+            return names[id];
+        }
+    }
+
+    /**
+     * @param name in reference form
+     * @return equal name held by dictionary, adding it if absent
+     */
+    public String intern(String name) {
+        return name(id(name));
+    }
+
+    /**
+     * Converts name to reference form, as {@link NSNameScanner#ref(char[], int, int)}, and interns it. Names already in
+     * reference form are looked up from the characters, so no string is made for a name already in the dictionary.
+     * @param chars holding name
+     * @param start of name, inclusive
+     * @param end   of name, exclusive
+     * @return name in reference form held by dictionary; empty, and not interned, if blank
+     */
+    public String intern(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') start++;
+        while (end > start && chars[end - 1] <= ' ') end--;
+        if (start == end) return "";
+        for (int i = start; i < end; i++)
+            if (!NSNameScanner.isRefChar(chars[i])) return intern(NSNameScanner.ref(chars, start, end));
+
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + chars[i];
+        String[] n = names;
+        int id = probe(table, n, hash, chars, start, end);
+        if (id < 0) synchronized (this) {
+            id = probe(table, names, hash, chars, start, end);
+            if (id < 0) id = add(new String(chars, start, end - start));
+        }
+        return name(id);
+    }
+
+    /**
+     * Converts part of string to reference form and interns it, as {@link #intern(char[], int, int)}, so no substring
+     * is made for a name already in the dictionary.
+     * @param s     holding name
+     * @param start of name, inclusive
+     * @param end   of name, exclusive
+     * @return name in reference form held by dictionary; empty, and not interned, if blank
+     */
+    public String intern(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        if (start == end) return "";
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!NSNameScanner.isRefChar(c)) return intern(ApiUtils.ref(s.substring(start, end)));
+            hash = 31 * hash + c;
+        }
+
+        int id = probe(table, names, hash, s, start, end);
+        if (id < 0) synchronized (this) {
+            id = probe(table, names, hash, s, start, end);
+            if (id < 0) id = add(s.substring(start, end));
+        }
+        return name(id);
+    }
+
+    /** @return number of names in dictionary, which is one more than the greatest identifier */
+    public int size() {
+        return size;
+    }
+
+    private synchronized int add(String name) {
+        int id = probe(table, names, name);
+        if (id >= 0) return id; // added by another thread
+
+        id = size;
+        String[] n = names;
+        if (id == n.length) n = Arrays.copyOf(n, n.length * 2);
+        n[id] = name;
+        names = n;
+
+        int[] t = table;
+        if ((id + 1) * 2 > t.length) t = rehash(t.length * 2, n, id);
+        t[slot(t, name.hashCode())] = id + 1;
+        table = t;
+        size = id + 1;
+        return id;
+    }
+
+    private static int[] rehash(int length, String[] names, int count) {
+        int[] t = new int[length];
+        for (int id = 0; id < count; id++) t[slot(t, names[id].hashCode())] = id + 1;
+        return t;
+    }
+
+    /** @return first empty slot for hash */
+    private static int slot(int[] t, int hash) {
+        int mask = t.length - 1;
+        int i = spread(hash) & mask;
+        while (t[i] != 0) i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Probes table for name. Without the lock, the table and names read may be from before a concurrent addition, so
+     * identifiers not yet in the names read are skipped.
+     */
+    private static int probe(int[] t, String[] n, String name) {
+        int mask = t.length - 1;
+        for (int i = spread(name.hashCode()) & mask; t[i] != 0; i = (i + 1) & mask) {
+            int id = t[i] - 1;
+            if (id < n.length && name.equals(n[id])) return id;
+        }
+        return -1;
+    }
+
+    private static int probe(int[] t, String[] n, int hash, char[] chars, int start, int end) {
+        int mask = t.length - 1;
+        for (int i = spread(hash) & mask; t[i] != 0; i = (i + 1) & mask) {
+            int id = t[i] - 1;
+            String name = id < n.length ? n[id] : null;
+            if (name != null && name.length() == end - start && matches(name, chars, start)) return id;
+        }
+        return -1;
+    }
+
+    private static int probe(int[] t, String[] n, int hash, String s, int start, int end) {
+        int mask = t.length - 1;
+        for (int i = spread(hash) & mask; t[i] != 0; i = (i + 1) & mask) {
+            int id = t[i] - 1;
+            String name = id < n.length ? n[id] : null;
+            if (name != null && name.length() == end - start && name.regionMatches(0, s, start, end - start))
+                return id;
+        }
+        return -1;
+    }
+
+    private static boolean matches(String name, char[] chars, int start) {
+        for (int i = 0; i < name.length(); i++) if (name.charAt(i) != chars[start + i]) return false;
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Splits delimited lists of names, converting each to reference form as {@link ApiUtils#ref(String)} does, in one
+ * pass over their characters. No array of raw names is built and no regular expression is run. A name already in
+ * reference form, as most names from the API are, is copied once into its string; other ASCII names are normalised as
+ * they are copied; only names with other characters fall back to {@link ApiUtils#ref(String)}. Scanned names are
+ * interned in {@link NSNameDictionary}, so a name seen before is not copied at all.
+ * <p>
+ * Lists of at least {@link #PARALLEL_THRESHOLD} characters can be scanned in chunks on the common fork join pool with
+ * {@link #scanParallel(char[], int, int, char)}. Chunks are split at delimiters, and names are returned in order.
+ * </p>
+ * @since version 13
+ */
+public final class NSNameScanner {
+
+    /** Length in characters from which {@link #scanParallel(char[], int, int, char)} splits lists into chunks. */
+    public static final int PARALLEL_THRESHOLD = 1 << 19;
+    private static final int MIN_CHUNK = 1 << 16;
+
+    private NSNameScanner() { }
+
+    /**
+     * Converts name to reference form.
+     * @param chars holding name
+     * @param start of name, inclusive
+     * @param end   of name, exclusive
+     * @return name in reference form; empty if blank
+     */
+    public static String ref(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') start++;
+        while (end > start && chars[end - 1] <= ' ') end--;
+
+        int i = start;
+        while (i < end && isRefChar(chars[i])) i++;
+        if (i == end) return new String(chars, start, end - start);
+
+        char[] normalised = new char[end - start];
+        System.arraycopy(chars, start, normalised, 0, i - start);
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= 0x80) return ApiUtils.ref(new String(chars, start, end - start));
+            normalised[i - start] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : isWhitespace(c) ? '_' : c;
+        }
+        return new String(normalised);
+    }
+
+    /**
+     * @param c character
+     * @return true if character is unchanged in reference form, and does not need trimming
+     */
+    static boolean isRefChar(char c) {
+        return c > ' ' && c < 0x80 && (c < 'A' || c > 'Z');
+    }
+
+    /** @return true if character matches {@code \s}, which reference form replaces with {@code _} */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Scans list, passing each non-blank name in reference form to sink.
+     * @param chars     holding list
+     * @param start     of list, inclusive
+     * @param end       of list, exclusive
+     * @param delimiter separating names
+     * @param sink      receiving names, in order
+     */
+    public static void scan(char[] chars, int start, int end, char delimiter, Consumer<String> sink) {
+        NSNameDictionary dictionary = NSNameDictionary.getInstance();
+        int from = start;
+        for (int i = start; i < end; i++)
+            if (chars[i] == delimiter) {
+                emit(dictionary.intern(chars, from, i), sink);
+                from = i + 1;
+            }
+        emit(dictionary.intern(chars, from, end), sink);
+    }
+
+    private static void emit(String name, Consumer<String> sink) {
+        if (!name.isEmpty()) sink.accept(name);
+    }
+
+    /**
+     * Scans list of non-blank names in reference form.
+     * @param list      to scan
+     * @param delimiter separating names
+     * @return names, in order
+     */
+    public static List<String> scan(String list, char delimiter) {
+        List<String> names = new ArrayList<>();
+        scan(list.toCharArray(), 0, list.length(), delimiter, names::add);
+        return names;
+    }
+
+    /**
+     * Scans list of non-blank names in reference form, in parallel chunks if it is at least
+     * {@link #PARALLEL_THRESHOLD} characters long.
+     * @param chars     holding list, which must not change while it is scanned
+     * @param start     of list, inclusive
+     * @param end       of list, exclusive
+     * @param delimiter separating names
+     * @return names, in order
+     */
+    public static List<String> scanParallel(char[] chars, int start, int end, char delimiter) {
+        int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, (end - start) / MIN_CHUNK);
+        if (end - start < PARALLEL_THRESHOLD || chunks < 2) {
+            List<String> names = new ArrayList<>();
+            scan(chars, start, end, delimiter, names::add);
+            return names;
+        }
+
+        // place each boundary just after a delimiter, so no name spans two chunks
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = end;
+        for (int k = 1; k < chunks; k++) {
+            int b = Math.max(bounds[k - 1], start + (int) ((long) (end - start) * k / chunks));
+            while (b < end && b > start && chars[b - 1] != delimiter) b++;
+            bounds[k] = b;
+        }
+
+        List<List<String>> parts = IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> {
+                    List<String> names = new ArrayList<>();
+                    scan(chars, bounds[k], bounds[k + 1], delimiter, names::add);
+                    return names;
+                })
+                .collect(Collectors.toList());
+        List<String> names = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        for (List<String> part : parts) names.addAll(part);
+        return names;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Set of reference names held as a bit set of their {@link NSNameDictionary} identifiers. Each set takes one bit per
+ * name in the dictionary up to its greatest member, about 40 KB for a set of the whole world, against tens of bytes
+ * per name for a {@link java.util.HashSet}. Membership tests on a name need no hashing of the set's own, and sets can
+ * be combined by identifier with {@link #retainAll(Collection)} and {@link #removeAll(Collection)}.
+ * <p>
+ * Names iterate in identifier order, which is the order the dictionary first saw them, not the order they were added
+ * to the set. Like {@link java.util.HashSet}, the set is not thread-safe.
+ * </p>
+ * @since version 13
+ */
+public class NSNameSet extends AbstractSet<String> {
+
+    private final NSNameDictionary dictionary = NSNameDictionary.getInstance();
+    private final BitSet ids = new BitSet();
+    private int size;
+
+    /** Creates empty set. */
+    public NSNameSet() {
+    }
+
+    /** @param names in reference form to add */
+    public NSNameSet(Collection<String> names) {
+        addAll(names);
+    }
+
+    /**
+     * @param id of name to add
+     * @return true if not already present
+     */
+    public boolean add(int id) {
+        if (ids.get(id)) return false;
+        ids.set(id);
+        size++;
+        return true;
+    }
+
+    /**
+     * @param id of name
+     * @return true if present
+     */
+    public boolean contains(int id) {
+        return id >= 0 && ids.get(id);
+    }
+
+    /**
+     * @param id of name to remove
+     * @return true if it was present
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) return false;
+        ids.clear(id);
+        size--;
+        return true;
+    }
+
+    /** @return identifiers of names in set, ascending */
+    public IntStream ids() {
+        return ids.stream();
+    }
+
+    @Override
+    public boolean add(String name) {
+        return add(dictionary.id(name));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && contains(dictionary.find((String) o));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof String && remove(dictionary.find((String) o));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> c) {
+        if (!(c instanceof NSNameSet)) return super.addAll(c);
+        int before = size;
+        ids.or(((NSNameSet) c).ids);
+        size = ids.cardinality();
+        return size != before;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if (!(c instanceof NSNameSet)) return super.retainAll(c);
+        int before = size;
+        ids.and(((NSNameSet) c).ids);
+        size = ids.cardinality();
+        return size != before;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (!(c instanceof NSNameSet)) return super.removeAll(c);
+        int before = size;
+        ids.andNot(((NSNameSet) c).ids);
+        size = ids.cardinality();
+        return size != before;
+    }
+
+    @Override
+    public void clear() {
+        ids.clear();
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next = ids.nextSetBit(0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) throw new NoSuchElementException();
+                last = next;
+                next = ids.nextSetBit(next + 1);
+                return dictionary.name(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) throw new IllegalStateException();
+                NSNameSet.this.remove(last);
+                last = -1;
+            }
+        };
+    }
+}
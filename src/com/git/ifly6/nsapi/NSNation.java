@@ -19,17 +19,19 @@ package com.git.ifly6.nsapi;
 
 import com.git.ifly6.nsapi.builders.NSNationQueryBuilder;
 import com.git.ifly6.nsapi.builders.NSNationShard;
-import com.jcabi.xml.XML;
-import com.jcabi.xml.XMLDocument;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * This class is an object to hold information on a NS nation. It also provides methods to retrieve relevant information
@@ -40,11 +42,35 @@ import java.util.Objects;
  * implementation was attempted before. However, due to the network delays and the API's slow speed, you will be locked
  * out if you attempt mass information gathering of every single census score.
  * </p>
+ * <p>
+ * Data can be loaded in part, by passing the {@link NSNationShard}s needed to {@link #populateData(NSNationShard...)}.
+ * Each shard loaded is merged into this object, so a nation can be completed a shard at a time. When each shard was
+ * last loaded is given by {@link #timestamp(NSNationShard)}.
+ * </p>
  */
 public class NSNation implements NSTimeStamped {
 
     public static final HashMap<String, List<String>> CATEGORIES_MAP = new HashMap<>();
 
+    /**
+     * Shards loaded by {@link #populateData()}. {@link NSNationShard#CENSUS} stands for the influence score, census
+     * scale 65, which is the only census score loaded.
+     * @since version 13
+     */
+    public static final Set<NSNationShard> ALL_SHARDS = Collections.unmodifiableSet(EnumSet.of(
+            NSNationShard.PROPER_NAME, NSNationShard.ENDORSEMENT_LIST, NSNationShard.REGION, NSNationShard.CATEGORY,
+            NSNationShard.CAN_RECRUIT, NSNationShard.CAN_CAMPAIGN, NSNationShard.CENSUS));
+    private static final int INFLUENCE = 65;
+
+    private static final NSXMLSelector.Path ENDORSEMENTS = NSXMLSelector.Path.compile("/NATION/ENDORSEMENTS");
+    private static final NSXMLSelector.Path INFLUENCE_SCORE =
+            NSXMLSelector.Path.compile("/NATION/CENSUS/SCALE[@id=" + INFLUENCE + "]/SCORE");
+    private static final NSXMLSelector.Path NAME = NSXMLSelector.Path.compile("/NATION/NAME");
+    private static final NSXMLSelector.Path REGION = NSXMLSelector.Path.compile("/NATION/REGION");
+    private static final NSXMLSelector.Path CATEGORY = NSXMLSelector.Path.compile("/NATION/CATEGORY");
+    private static final NSXMLSelector.Path CAN_RECRUIT = NSXMLSelector.Path.compile("/NATION/TGCANRECRUIT");
+    private static final NSXMLSelector.Path CAN_CAMPAIGN = NSXMLSelector.Path.compile("/NATION/TGCANCAMPAIGN");
+
     static {
         CATEGORIES_MAP.put("balanced",
                 List.of("Anarchy", "Capitalizt", "New York Times Democracy", "Benevolent Dictatorship",
@@ -66,6 +92,7 @@ public class NSNation implements NSTimeStamped {
     private String nationName;
     private boolean isPopulated;
     private Instant timestamp;
+    private Map<String, Instant> shardTimestamps = new HashMap<>(); // by shard name, which survives the cache file
 
     // State of nation
     private String properName;
@@ -85,7 +112,7 @@ public class NSNation implements NSTimeStamped {
      * @param name of the nation (auto-refs)
      */
     public NSNation(String name) {
-        nationName = ApiUtils.ref(name);
+        nationName = NSNameDictionary.getInstance().intern(ApiUtils.ref(name));
     }
 
     /**
@@ -94,56 +121,75 @@ public class NSNation implements NSTimeStamped {
      * loaded. Calling populate data after it already is populated will update influence count.</p>
      * @return self, with populated data
      * @throws NSNoSuchNationException if nation does not exist
+     * @see #ALL_SHARDS
      */
     public NSNation populateData() {
+        return populateData(ALL_SHARDS.toArray(new NSNationShard[0]));
+    }
+
+    /**
+     * Queries and fetches only the shards given, merging them into data already loaded. Getters for other shards
+     * return what was loaded before, if anything.
+     * @param shards to load; {@link NSNationShard#CENSUS} loads the influence score
+     * @return self, with shards populated
+     * @throws NSNoSuchNationException if nation does not exist
+     * @since version 13
+     */
+    public synchronized NSNation populateData(NSNationShard... shards) {
+        Set<NSNationShard> wanted = shards.length == 0
+                ? EnumSet.noneOf(NSNationShard.class)
+                : EnumSet.copyOf(Arrays.asList(shards));
+        wanted.retainAll(ALL_SHARDS);
         try {
-            NSNationQueryBuilder queryBuilder = new NSNationQueryBuilder(nationName)
-                    .addQuery(NSNationShard.PROPER_NAME)
-                    .addQuery(NSNationShard.ENDORSEMENT_LIST)
-                    .addQuery(NSNationShard.REGION)
-                    .addQuery(NSNationShard.CATEGORY)
-                    .addQuery(NSNationShard.CAN_RECRUIT)
-                    .addQuery(NSNationShard.CAN_CAMPAIGN)
-                    .addQuery(NSNationShard.CENSUS, 65);
-
-            // Do the query
-            NSConnection apiConnect = new NSConnection(queryBuilder.toString());
-            XML xml = new XMLDocument(apiConnect.getResponse());
+            NSNationQueryBuilder queryBuilder = new NSNationQueryBuilder(nationName);
+            for (NSNationShard shard : wanted)
+                if (shard == NSNationShard.CENSUS) queryBuilder.addQuery(shard, INFLUENCE);
+                else queryBuilder.addQuery(shard);
 
-            // Get endorsement count and load endorsement data
-            try {
-                // Split endorsements string
-                String endorsements = xml.xpath("/NATION/ENDORSEMENTS/text()").get(0);
-                endorsingNations = ApiUtils.ref(Arrays.asList(endorsements.split(",")));
+            // Do the query, streaming only the fields needed
+            NSConnection apiConnect = new NSConnection(queryBuilder.toString());
+            List<String> endorsements = new ArrayList<>(); // if no endorsements, stays empty
+            apiConnect.parse(reader -> {
+                NSXMLSelector selector = new NSXMLSelector();
+                if (wanted.contains(NSNationShard.ENDORSEMENT_LIST))
+                    selector.refs(ENDORSEMENTS, ',', endorsements::add);
+                if (wanted.contains(NSNationShard.CENSUS))
+                    selector.text(INFLUENCE_SCORE, i -> infuCount = Double.parseDouble(i));
+                if (wanted.contains(NSNationShard.PROPER_NAME)) selector.text(NAME, n -> properName = n);
+                if (wanted.contains(NSNationShard.REGION)) selector.text(REGION, r -> region = r);
+                if (wanted.contains(NSNationShard.CATEGORY)) selector.text(CATEGORY, c -> category = c);
+                if (wanted.contains(NSNationShard.CAN_RECRUIT))
+                    selector.text(CAN_RECRUIT, r -> canRecruit = r.equals("1"));
+                if (wanted.contains(NSNationShard.CAN_CAMPAIGN))
+                    selector.text(CAN_CAMPAIGN, c -> canCampaign = c.equals("1"));
+                selector.parse(reader);
+                return this;
+            });
+
+            if (wanted.contains(NSNationShard.ENDORSEMENT_LIST)) {
+                endorsingNations = endorsements;
                 endoCount = endorsingNations.size();
-
-            } catch (RuntimeException e) {
-                // If that endorsements string does not exist, load default data for 0
-                endorsingNations = Collections.emptyList();
-                endoCount = 0;
             }
 
-            // Get influence count
-            infuCount = Double.parseDouble(xml.xpath("/NATION/CENSUS/SCALE[@id=65]/SCORE/text()").get(0));
-            properName = xml.xpath("/NATION/NAME/text()").get(0);
-
-            // Get region and other data
-            region = xml.xpath("/NATION/REGION/text()").get(0);
-            category = xml.xpath("/NATION/CATEGORY/text()").get(0);
-
-            // Get recruitment and campaign flags
-            canRecruit = xml.xpath("/NATION/TGCANRECRUIT/text()").get(0).equals("1");
-            canCampaign = xml.xpath("/NATION/TGCANCAMPAIGN/text()").get(0).equals("1");
-
             // Get the populated date
+            if (shardTimestamps == null) { // loaded from before shards were tracked
+                shardTimestamps = new HashMap<>();
+                if (isPopulated) for (NSNationShard shard : ALL_SHARDS) shardTimestamps.put(shard.name(), timestamp);
+            }
             timestamp = Instant.now();
+            for (NSNationShard shard : wanted) shardTimestamps.put(shard.name(), timestamp);
             isPopulated = true;
 
         } catch (FileNotFoundException e) {
             throw new NSNoSuchNationException("Nation " + nationName + " does not exist.", e);
 
+        } catch (NSResponseException e) {
+            if (e.getStatusCode() == 404)
+                throw new NSNoSuchNationException("Nation " + nationName + " does not exist.", e);
+            throw e;
+
         } catch (IOException e) {
-            throw new NSIOException("Cannot connect to Internet to query " + nationName);
+            throw new NSIOException("Cannot connect to Internet to query " + nationName, e);
         }
 
         return this;
@@ -166,6 +212,18 @@ public class NSNation implements NSTimeStamped {
         return timestamp;
     }
 
+    /**
+     * Returns when a shard was last loaded. Nations loaded before shards were tracked had every shard in
+     * {@link #ALL_SHARDS} loaded at {@link #timestamp()}.
+     * @param shard to check
+     * @return when shard was last loaded; null if never
+     * @since version 13
+     */
+    public synchronized Instant timestamp(NSNationShard shard) {
+        if (shardTimestamps == null) return isPopulated && ALL_SHARDS.contains(shard) ? timestamp : null;
+        return shardTimestamps.get(shard.name());
+    }
+
     /**
      * Gets the endorsement count.
      * @return the nation's number of endorsements
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import com.git.ifly6.CommuniqueUtilities;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Records how stale the data answered while {@link NSConnection#isOffline() offline} is, so that recipient lists and
+ * checks computed offline can be reported with their age. Each source, an endpoint such as {@code nations} or a cache
+ * such as {@code CommNationCache}, is recorded with the oldest data it served.
+ * @since version 13
+ */
+public class NSOfflineReport {
+
+    private static NSOfflineReport instance;
+
+    private final Map<String, Instant> sources = new ConcurrentHashMap<>();
+
+    private NSOfflineReport() { }
+
+    /** @return report shared by all offline lookups */
+    public static synchronized NSOfflineReport getInstance() {
+        if (instance == null) instance = new NSOfflineReport();
+        return instance;
+    }
+
+    /**
+     * Records data served offline. Only the oldest data from each source is kept.
+     * @param source of data
+     * @param asOf   time data was fetched from the API
+     */
+    public void record(String source, Instant asOf) {
+        sources.merge(source, asOf, (a, b) -> a.isBefore(b) ? a : b);
+    }
+
+    /** @return oldest data served from each source, sorted by source */
+    public Map<String, Instant> getSources() {
+        return Collections.unmodifiableMap(new TreeMap<>(sources));
+    }
+
+    /** @return time oldest data served was fetched, if any was served */
+    public Optional<Instant> getOldest() {
+        return sources.values().stream().min(Instant::compareTo);
+    }
+
+    /** Forgets all data served. */
+    public void reset() {
+        sources.clear();
+    }
+
+    /** @return one line summary of the age of the oldest data from each source */
+    public String getSummary() {
+        if (sources.isEmpty()) return "Offline: no cached data used";
+        Instant now = Instant.now();
+        return "Offline data used: " + getSources().entrySet().stream()
+                .map(e -> String.format("%s %s old", e.getKey(),
+                        CommuniqueUtilities.time(Duration.between(e.getValue(), now).getSeconds())))
+                .collect(Collectors.joining("; "));
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
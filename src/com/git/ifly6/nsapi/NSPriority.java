@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Priority lanes for API requests waiting for a rate limit permit. When a permit becomes available, it goes to the
+ * oldest request in the highest lane. To protect against starvation, a request in a lower lane which has waited longer
+ * than its lane's {@link #getMaxWait()} is served ahead of {@link #INTERACTIVE} requests; only
+ * {@link #SEND_CRITICAL} requests are always served first.
+ * <p>
+ * Requests take the priority of the thread which creates their {@link NSConnection}, set with
+ * {@link #call(Supplier)} or {@link #run(Runnable)}, unless set with {@link NSConnection#setPriority(NSPriority)}.
+ * The default is {@link #INTERACTIVE}.
+ * </p>
+ * @since version 13
+ */
+public enum NSPriority {
+
+    /** Lookups on the telegram path, which must complete before the next telegram slot. */
+    SEND_CRITICAL(Duration.ZERO),
+
+    /** Requests a user is waiting on. */
+    INTERACTIVE(Duration.ofSeconds(15)),
+
+    /** Periodic refreshes by monitors, which can wait. */
+    BACKGROUND_POLL(Duration.ofSeconds(60));
+
+    private static final ThreadLocal<NSPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    private final Duration maxWait;
+
+    NSPriority(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /** @return wait after which requests in this lane are protected from starvation */
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /** @return priority for requests created on this thread */
+    public static NSPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Calls action with this as the priority of requests it creates on this thread.
+     * @param action to call
+     * @param <T>    type of result
+     * @return result of action
+     */
+    public <T> T call(Supplier<T> action) {
+        NSPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Runs action with this as the priority of requests it creates on this thread.
+     * @param action to run
+     */
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.net.http.HttpHeaders;
+
+/**
+ * Limits the rate at which requests are made to the NationStates API. {@link NSConnection} asks its limiter for a
+ * permit before dispatching every request and shows it the status and headers of every response. Set the limiter with
+ * {@link NSConnection#setRateLimiter(NSRateLimiter)}.
+ * @see NSStaticRateLimiter
+ * @see NSAdaptiveRateLimiter
+ * @since version 13
+ */
+public interface NSRateLimiter {
+
+    /**
+     * Acquires a permit to make a request, blocking until one is available.
+     * @return seconds spent waiting
+     */
+    double acquire();
+
+    /**
+     * Observes response to a request made with a permit from this limiter. Implementations may use this to adjust their
+     * rates. Default implementation does nothing.
+     * @param statusCode of the response
+     * @param headers    of the response
+     */
+    default void observe(int statusCode, HttpHeaders headers) { }
+
+    /** @return current permits per second */
+    double getRate();
+
+}
@@ -19,9 +19,9 @@ package com.git.ifly6.nsapi;
 
 import com.git.ifly6.nsapi.builders.NSRegionQueryBuilder;
 import com.git.ifly6.nsapi.builders.NSRegionShard;
-import com.jcabi.xml.XML;
-import com.jcabi.xml.XMLDocument;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.time.Instant;
@@ -30,15 +30,20 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class NSRegion implements NSTimeStamped {
 
     private static final Logger LOGGER = Logger.getLogger(NSRegion.class.getName());
 
+    private static final NSXMLSelector.Path NAME = NSXMLSelector.Path.compile("/REGION/NAME");
+    private static final NSXMLSelector.Path FOUNDER = NSXMLSelector.Path.compile("/REGION/FOUNDER");
+    private static final NSXMLSelector.Path DELEGATE = NSXMLSelector.Path.compile("/REGION/DELEGATE");
+    private static final NSXMLSelector.Path NATIONS = NSXMLSelector.Path.compile("/REGION/NATIONS");
+
     // So we don't need to fetch it again over different regions
     private static Set<String> worldWAMembers;
 
@@ -69,44 +74,53 @@ public class NSRegion implements NSTimeStamped {
      */
     public NSRegion populateData() {
         try {
-            // build the query
-            NSRegionQueryBuilder builder = new NSRegionQueryBuilder(this.regionName)
-                    .addQuery(NSRegionShard.PROPER_NAME)
-                    .addQuery(NSRegionShard.FOUNDER)
-                    .addQuery(NSRegionShard.DELEGATE)
-                    .addQuery(NSRegionShard.NATIONS_LIST);
-            NSConnection apiConnect = new NSConnection(builder.toString());
-
-            // check existence
-            String response = apiConnect.connect().getResponse();
-
-            // populate relevant fields
-            XML xml = new XMLDocument(response);
-            regionOfficialName = xml.xpath("/REGION/NAME/text()").get(0);
-            founderName = ApiUtils.ref(xml.xpath("/REGION/FOUNDER/text()").get(0));
-            delegateName = ApiUtils.ref(xml.xpath("/REGION/DELEGATE/text()").get(0));
-
-            // get populace
-            String regionMemberString = "";
-            try {
-                regionMemberString = xml.xpath("/REGION/NATIONS/text()").get(0);
-            } catch (IndexOutOfBoundsException ignored) {
-                // catches com.jcabi.xml.ListWrapper$NodeNotFoundException
-                // pass, do nothing and keep default
-            }
-            regionMembers = Stream.of(regionMemberString.split(":"))
-                    .filter(ApiUtils::isNotEmpty)
-                    .map(ApiUtils::ref)
-                    .collect(Collectors.toList());
+            return NSConnection.await(populateDataAsync());
 
         } catch (FileNotFoundException e) {
             throw new NoSuchRegionException(
                     String.format("Region <%s> does not exist.", this.regionName), e); // no region -> 404
 
+        } catch (NSResponseException e) {
+            if (e.getStatusCode() == 404) throw new NoSuchRegionException(
+                    String.format("Region <%s> does not exist.", this.regionName), e);
+            throw e;
+
         } catch (IOException e) {
             throw new NSException("Check your Internet connection."); // otherwise, internet
         }
+    }
 
+    /**
+     * Populates data for all variables without blocking. Many regions can be queued this way at once; they are
+     * dispatched as rate limit permits become available.
+     * @return future completing with the region populated
+     */
+    public CompletableFuture<NSRegion> populateDataAsync() {
+        // build the query
+        NSRegionQueryBuilder builder = new NSRegionQueryBuilder(this.regionName)
+                .addQuery(NSRegionShard.PROPER_NAME)
+                .addQuery(NSRegionShard.FOUNDER)
+                .addQuery(NSRegionShard.DELEGATE)
+                .addQuery(NSRegionShard.NATIONS_LIST);
+        return new NSConnection(builder.toString()).parseAsync(this::populate);
+    }
+
+    /**
+     * Populates relevant fields from streamed API response.
+     * @param reader over response
+     * @return this
+     * @throws XMLStreamException if response malformed
+     */
+    private NSRegion populate(XMLStreamReader reader) throws XMLStreamException {
+        List<String> members = new ArrayList<>();
+        new NSXMLSelector()
+                .text(NAME, s -> regionOfficialName = s)
+                .text(FOUNDER, s -> founderName = ApiUtils.ref(s))
+                .text(DELEGATE, s -> delegateName = ApiUtils.ref(s))
+                .refs(NATIONS, ':', members::add)
+                .parse(reader);
+
+        regionMembers = members;
         timestamp = Instant.now();
         return this;
     }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Fetches members of many regions, such as all regions with a tag, without waiting for each region before asking for
+ * the next. Up to {@link #WINDOW} regions are requested at once; as each response is parsed, which is done as it
+ * streams in, the next region is requested. Requests pass through the rate limiter in {@link NSConnection} like any
+ * other, so the window only hides latency; it does not raise the request rate.
+ * <p>
+ * Members are merged in the order of the regions given, whatever order responses arrive in. Regions which no longer
+ * exist, as happens when a region dies after being listed under a tag, are skipped with a warning.
+ * </p>
+ * <p>
+ * Progress is reported to a {@link ProgressListener} as each region is loaded. Fetching can be cancelled with
+ * {@link #cancel()}, or by interrupting a thread blocked in {@link #await()}; regions not yet requested are then never
+ * requested.
+ * </p>
+ * @since version 13
+ */
+public class NSRegionFanOut {
+
+    private static final Logger LOGGER = Logger.getLogger(NSRegionFanOut.class.getName());
+
+    /** Maximum number of regions requested at once. */
+    public static final int WINDOW = 8;
+
+    private final List<String> regions;
+    private final AtomicReferenceArray<List<String>> members;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final Set<CompletableFuture<NSRegion>> inFlight = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<List<String>> result = new CompletableFuture<>();
+    private final NSPriority priority = NSPriority.current();
+    private volatile ProgressListener listener = (region, done, total) -> { };
+    private boolean started;
+
+    /**
+     * Creates fan-out over regions. Nothing is requested until {@link #start()}. Regions are requested with the
+     * {@link NSPriority} of this thread, though later ones are requested from whichever thread parsed the last.
+     * @param regions whose members to fetch
+     */
+    public NSRegionFanOut(List<String> regions) {
+        this.regions = new ArrayList<>(regions);
+        this.members = new AtomicReferenceArray<>(this.regions.size());
+    }
+
+    /**
+     * @param listener to call as each region is loaded, on the thread which parsed it
+     * @return this
+     */
+    public NSRegionFanOut onProgress(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Starts requesting regions. Calling this method more than once returns the same future.
+     * @return future completing with members of all regions, in order of regions; or exceptionally with the first
+     * failure other than a region not existing
+     */
+    public synchronized CompletableFuture<List<String>> start() {
+        if (started) return result;
+        started = true;
+        if (regions.isEmpty()) result.complete(Collections.emptyList());
+        for (int i = 0; i < WINDOW; i++) requestNext();
+        return result;
+    }
+
+    /**
+     * Starts, if not yet started, and waits for members of all regions. If interrupted while waiting, fetching is
+     * cancelled.
+     * @return members of all regions, in order of regions
+     * @throws IOException if a region could not be fetched
+     */
+    public List<String> await() throws IOException {
+        try {
+            return NSConnection.await(start());
+        } finally {
+            if (Thread.currentThread().isInterrupted()) cancel();
+        }
+    }
+
+    /**
+     * Cancels fetching. Regions not yet requested are not requested; those waiting for a rate limit permit are
+     * withdrawn without spending one; responses already being received are discarded.
+     */
+    public void cancel() {
+        if (result.cancel(false)) LOGGER.info(String.format("Cancelled fetching regions after %d of %d",
+                completed.get(), regions.size()));
+        inFlight.forEach(f -> f.cancel(false));
+    }
+
+    /** @return true if cancelled */
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    /** @return number of regions loaded or skipped */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /** @return number of regions */
+    public int getTotal() {
+        return regions.size();
+    }
+
+    private void requestNext() {
+        int i = next.getAndIncrement();
+        if (i >= regions.size() || result.isDone()) return;
+
+        NSRegion region = priority.call(() -> new NSRegion(regions.get(i)));
+        CompletableFuture<NSRegion> future = priority.call(region::populateDataAsync);
+        inFlight.add(future);
+        future.whenComplete((r, e) -> {
+            inFlight.remove(future);
+            if (result.isDone()) return;
+            if (e == null) loaded(i, region);
+            else failed(i, region, e);
+            requestNext();
+        });
+    }
+
+    private void loaded(int i, NSRegion region) {
+        members.set(i, region.getRegionMembers());
+        int done = completed.incrementAndGet();
+        listener.regionLoaded(region, done, regions.size());
+        if (done == regions.size()) result.complete(merge());
+    }
+
+    private void failed(int i, NSRegion region, Throwable e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+        if (cause instanceof FileNotFoundException
+                || cause instanceof NSResponseException && ((NSResponseException) cause).getStatusCode() == 404) {
+            LOGGER.warning(String.format("Region <%s> does not exist; skipping", regions.get(i)));
+            loaded(i, region); // with no members
+            return;
+        }
+        result.completeExceptionally(cause);
+        cancel();
+    }
+
+    private List<String> merge() {
+        List<String> merged = new ArrayList<>();
+        for (int i = 0; i < members.length(); i++) merged.addAll(members.get(i));
+        return merged;
+    }
+
+    /** Receives progress of {@link NSRegionFanOut}. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called as each region is loaded, or skipped as not existing.
+         * @param region loaded
+         * @param done   number of regions loaded so far, including this one
+         * @param total  number of regions
+         */
+        void regionLoaded(NSRegion region, int done, int total);
+    }
+}
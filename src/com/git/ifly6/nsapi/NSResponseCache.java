@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.git.ifly6.CommuniqueApplication;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Disk-backed cache of API responses. Only endpoints with a time to live, set by {@link #setTTL(String, Duration)}, are
+ * cached. Endpoints are identified by the value of their {@code q} parameter; eg {@code nations} for
+ * {@code q=nations}.
+ * <p>
+ * A cached response younger than its time to live is served without contacting the API at all. An older one is
+ * revalidated: the request is sent with {@code If-None-Match} and {@code If-Modified-Since}, from the {@code ETag} and
+ * {@code Last-Modified} of the stored response. If the API answers {@code 304 Not Modified}, the stored body is reused.
+ * A revalidation still costs a rate limit permit but does not transfer the body.
+ * </p>
+ * <p>
+ * By default, the large world lists {@code nations}, {@code members}, {@code delegates}, and {@code regionsbytag} are
+ * cached with a time to live of zero. They are therefore always revalidated and never served stale.
+ * </p>
+ * @since version 13
+ */
+public class NSResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(NSResponseCache.class.getName());
+    private static final Path LOCATION = CommuniqueApplication.APP_SUPPORT.resolve("api_cache");
+    private static final Gson GSON = new Gson();
+
+    private static NSResponseCache instance;
+
+    private final Path directory;
+    private final Map<String, Duration> ttls = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Creates cache storing responses in directory. Endpoints {@code nations}, {@code members}, {@code delegates},
+     * and {@code regionsbytag} are cached with a time to live of zero.
+     * @param directory in which to store responses
+     */
+    public NSResponseCache(Path directory) {
+        this.directory = directory;
+        for (String endpoint : new String[] {"nations", "members", "delegates", "regionsbytag"})
+            ttls.put(endpoint, Duration.ZERO);
+    }
+
+    /** @return cache stored in application support directory */
+    public static synchronized NSResponseCache getInstance() {
+        if (instance == null) instance = new NSResponseCache(LOCATION);
+        return instance;
+    }
+
+    /**
+     * Sets time to live for endpoint, enabling caching for it.
+     * @param endpoint value of {@code q} parameter
+     * @param ttl      for which responses are served without revalidation; zero to always revalidate
+     */
+    public void setTTL(String endpoint, Duration ttl) {
+        if (ttl.isNegative()) throw new IllegalArgumentException("Time to live cannot be negative");
+        ttls.put(endpoint.toLowerCase(), ttl);
+    }
+
+    /**
+     * Disables caching for endpoint.
+     * @param endpoint value of {@code q} parameter
+     */
+    public void removeTTL(String endpoint) {
+        ttls.remove(endpoint.toLowerCase());
+    }
+
+    /**
+     * @param endpoint value of {@code q} parameter
+     * @return time to live for endpoint, if cached
+     */
+    public Optional<Duration> getTTL(String endpoint) {
+        return Optional.ofNullable(ttls.get(endpoint.toLowerCase()));
+    }
+
+    /**
+     * Determines endpoint for URI from its {@code q} parameter.
+     * @param uri of API request
+     * @return value of {@code q} parameter; empty string if there is none
+     */
+    public static String endpoint(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null) return "";
+        for (String parameter : query.split("[&;]"))
+            if (parameter.toLowerCase().startsWith("q="))
+                return parameter.substring(2).replace('+', ' ').trim().toLowerCase();
+        return "";
+    }
+
+    /** @return whether responses for URI are cached */
+    boolean isCacheable(URI uri) {
+        return ttls.containsKey(endpoint(uri));
+    }
+
+    /**
+     * Looks up stored response for URI.
+     * @param uri of API request
+     * @return stored response, if the endpoint is cached and a response is stored
+     */
+    Optional<Entry> lookup(URI uri) {
+        if (!isCacheable(uri)) return Optional.empty();
+        String key = key(uri);
+        Entry entry = entries.computeIfAbsent(key, this::load);
+        if (entry == null || !Files.exists(bodyPath(key))) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    /**
+     * @param entry to check
+     * @return true if entry is within its time to live and may be served without revalidation
+     */
+    boolean isFresh(Entry entry) {
+        Duration ttl = ttls.get(endpoint(URI.create(entry.uri)));
+        return ttl != null && System.currentTimeMillis() - entry.fetched < ttl.toMillis();
+    }
+
+    /**
+     * Adds validators from stored response to request.
+     * @param entry   stored response
+     * @param builder for request
+     */
+    void addValidators(Entry entry, HttpRequest.Builder builder) {
+        if (entry.etag != null) builder.header("If-None-Match", entry.etag);
+        if (entry.lastModified != null) builder.header("If-Modified-Since", entry.lastModified);
+    }
+
+    /**
+     * Opens body of stored response, counting it as a hit.
+     * @param entry       stored response
+     * @param revalidated true if the API confirmed, with 304, that it is unchanged
+     * @return stream of stored body
+     * @throws IOException if body cannot be opened
+     */
+    InputStream open(Entry entry, boolean revalidated) throws IOException {
+        InputStream stream = Files.newInputStream(bodyPath(key(URI.create(entry.uri))));
+        if (revalidated) {
+            entry.fetched = System.currentTimeMillis();
+            writeEntry(entry);
+            revalidations.incrementAndGet();
+        } else hits.incrementAndGet();
+
+        bytesSaved.addAndGet(entry.length);
+        LOGGER.finer(String.format("Served <%s> from response cache%s", entry.uri, revalidated ? " after 304" : ""));
+        return stream;
+    }
+
+    /**
+     * @param entry stored response
+     * @return time stored response was fetched or last revalidated
+     */
+    Instant fetched(Entry entry) {
+        return Instant.ofEpochMilli(entry.fetched);
+    }
+
+    /**
+     * @param entry stored response
+     * @return charset of stored response, if known
+     */
+    Optional<Charset> charset(Entry entry) {
+        return Optional.ofNullable(entry.charset).map(Charset::forName);
+    }
+
+    /**
+     * Wraps response body so that it is stored as it is read. If the endpoint is not cached, the body is returned
+     * unchanged. The response is stored only if the body is read to the end; failure to store is logged and otherwise
+     * ignored, so the caller's reading is never affected.
+     * @param uri     of API request
+     * @param headers of response
+     * @param charset of response, if known
+     * @param body    of response
+     * @return stream to read instead of body
+     */
+    InputStream tee(URI uri, HttpHeaders headers, Charset charset, InputStream body) {
+        if (!isCacheable(uri)) return body;
+        Entry entry = new Entry();
+        entry.uri = uri.toString();
+        entry.etag = headers.firstValue("ETag").orElse(null);
+        entry.lastModified = headers.firstValue("Last-Modified").orElse(null);
+        entry.charset = charset == null ? null : charset.name();
+
+        try {
+            Files.createDirectories(directory);
+            return new TeeInputStream(body, entry, Files.createTempFile(directory, "tmp", null));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Unable to cache response for <%s>", uri), e);
+            return body;
+        }
+    }
+
+    /** Deletes all stored responses. Counters are not reset. */
+    public void clear() {
+        entries.clear();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path p : stream) Files.deleteIfExists(p);
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to clear response cache", e);
+        }
+    }
+
+    /** @return number of responses served without contacting the API */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** @return number of responses served after the API confirmed them unchanged */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /** @return number of lookups for cached endpoints with no stored response */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** @return total size of bodies served from cache instead of downloaded */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NSResponseCache{hits=%d, revalidations=%d, misses=%d, bytesSaved=%d}",
+                getHits(), getRevalidations(), getMisses(), getBytesSaved());
+    }
+
+    private Entry load(String key) {
+        try (BufferedReader reader = Files.newBufferedReader(entryPath(key), StandardCharsets.UTF_8)) {
+            return GSON.fromJson(reader, Entry.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | JsonParseException e) {
+            LOGGER.log(Level.WARNING, String.format("Unable to load cached response %s", key), e);
+            return null;
+        }
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        writeAtomically(entryPath(key(URI.create(entry.uri))), GSON.toJson(entry));
+    }
+
+    /** Writes to temporary file then moves it into place, so that readers never see partial files. */
+    private void writeAtomically(Path target, String content) throws IOException {
+        Path temp = Files.createTempFile(directory, "tmp", null);
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        move(temp, target);
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ".json");
+    }
+
+    private Path bodyPath(String key) {
+        return directory.resolve(key + ".body");
+    }
+
+    /** @return file name key for URI, from hash of its normalised form */
+    private static String key(URI uri) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(NSConnection.normalise(uri.toString()).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) sb.append(String.format("%02x", hash[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is always available", e);
+        }
+    }
+
+    /** Metadata of stored response. Body is stored alongside in its own file. */
+    static class Entry {
+        private String uri;
+        private String etag;
+        private String lastModified;
+        private String charset;
+        private long fetched;
+        private long length;
+    }
+
+    /** Copies bytes read to temporary file, which is committed as the stored body once the end is reached. */
+    private class TeeInputStream extends FilterInputStream {
+        private final Entry entry;
+        private final Path temp;
+        private OutputStream copy;
+        private long length;
+        private boolean ended;
+
+        private TeeInputStream(InputStream in, Entry entry, Path temp) throws IOException {
+            super(in);
+            this.entry = entry;
+            this.temp = temp;
+            this.copy = new BufferedOutputStream(Files.newOutputStream(temp));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) ended = true;
+            else write(new byte[] {(byte) b}, 0, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) ended = true;
+            else write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (copy == null) return;
+            try {
+                copy.write(b, off, len);
+                length += len;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Unable to cache response for <%s>", entry.uri), e);
+                abandon();
+            }
+        }
+
+        private void abandon() {
+            try {
+                if (copy != null) copy.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+            copy = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (copy != null && !ended) abandon();
+                if (copy != null) commit();
+            }
+        }
+
+        private void commit() {
+            String key = key(URI.create(entry.uri));
+            try {
+                copy.close();
+                copy = null;
+                entry.fetched = System.currentTimeMillis();
+                entry.length = length;
+                move(temp, bodyPath(key));
+                writeEntry(entry);
+                entries.put(key, entry);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Unable to cache response for <%s>", entry.uri), e);
+                abandon();
+            }
+        }
+    }
+}
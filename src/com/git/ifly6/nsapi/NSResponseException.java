@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Thrown when the API answers with an unacceptable status code.
+ * @since version 13
+ */
+public class NSResponseException extends NSIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    /**
+     * @param message    describing error
+     * @param statusCode of response
+     * @param retryAfter sent by the API; null if none
+     */
+    public NSResponseException(String message, int statusCode, Duration retryAfter) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /** @return status code of response */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /** @return time the API asked to wait before retrying, if any */
+    public Optional<Duration> getRetryAfter() {
+        return Optional.ofNullable(retryAfter);
+    }
+}
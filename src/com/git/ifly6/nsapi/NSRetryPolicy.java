@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when failed API requests are retried. Requests failing with {@code 429}, a {@code 5xx} status,
+ * or a connection error are retried up to {@link #getMaxAttempts()} attempts in total. Delays grow exponentially from
+ * {@code baseDelay} up to {@code maxDelay} with full jitter, so that clients do not retry in lockstep, but are never
+ * shorter than a {@code Retry-After} sent by the API.
+ * <p>
+ * The policy also configures the {@link NSCircuitBreaker} kept for each endpoint. Server errors and connection errors
+ * count as failures; a {@code 429} does not, as the API is evidently up.
+ * </p>
+ * @since version 13
+ */
+public class NSRetryPolicy {
+
+    /** Policy making one attempt with no retries; circuit breakers still apply. */
+    public static final NSRetryPolicy NONE = new NSRetryPolicy(1, Duration.ZERO, Duration.ZERO, 5,
+            Duration.ofSeconds(30));
+
+    /** Default policy: four attempts, backoff from one second to one minute, breaker at five failures for 30 s. */
+    public static final NSRetryPolicy DEFAULT = new NSRetryPolicy(4, Duration.ofSeconds(1), Duration.ofMinutes(1), 5,
+            Duration.ofSeconds(30));
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final int breakerThreshold;
+    private final Duration breakerCooldown;
+
+    /**
+     * @param maxAttempts      total attempts, including the first
+     * @param baseDelay        before first retry, before jitter
+     * @param maxDelay         cap on delays, before jitter
+     * @param breakerThreshold consecutive failures which open an endpoint's circuit breaker
+     * @param breakerCooldown  for which an open circuit breaker fails requests fast
+     */
+    public NSRetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, int breakerThreshold,
+                         Duration breakerCooldown) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("Must make at least one attempt");
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.breakerThreshold = breakerThreshold;
+        this.breakerCooldown = breakerCooldown;
+    }
+
+    /** @return total attempts, including the first */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Computes delay before next attempt.
+     * @param failedAttempts number of attempts made so far, all failed
+     * @param retryAfter     sent by the API with the last failure; null if none
+     * @return delay before next attempt
+     */
+    public Duration delay(int failedAttempts, Duration retryAfter) {
+        long cap = baseDelay.toMillis() << Math.min(failedAttempts - 1, 30);
+        if (cap <= 0 || cap > maxDelay.toMillis()) cap = maxDelay.toMillis();
+        long jittered = cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+        long floor = retryAfter == null ? 0 : retryAfter.toMillis();
+        return Duration.ofMillis(Math.max(jittered, floor));
+    }
+
+    /**
+     * @param endpoint to guard
+     * @return new circuit breaker configured by this policy
+     */
+    public NSCircuitBreaker newCircuitBreaker(String endpoint) {
+        return new NSCircuitBreaker(endpoint, breakerThreshold, breakerCooldown);
+    }
+
+    /**
+     * Reads {@code X-Retry-After} or, failing that, {@code Retry-After} in seconds.
+     * @param headers of response
+     * @return time to wait; null if none given
+     */
+    public static Duration retryAfter(HttpHeaders headers) {
+        String value = headers.firstValue("X-Retry-After")
+                .or(() -> headers.firstValue("Retry-After"))
+                .orElse(null);
+        try {
+            return value == null ? null : Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return null; // HTTP dates are not sent by the API
+        }
+    }
+
+    /**
+     * Determines whether a failure is transient, ie whether the same request may succeed later. Transient failures
+     * are rate limiting, server errors, connection errors, and open circuit breakers.
+     * @param t failure, examined with its causes
+     * @return true if transient
+     */
+    public static boolean isTransient(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof NSCircuitBreaker.NSCircuitOpenException) return true;
+            if (c instanceof NSResponseException) {
+                int status = ((NSResponseException) c).getStatusCode();
+                return status == 429 || status >= 500;
+            }
+            if (c instanceof IOException && !(c instanceof FileNotFoundException)) return true;
+        }
+        return false;
+    }
+}
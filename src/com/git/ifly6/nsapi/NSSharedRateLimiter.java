@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.git.ifly6.CommuniqueApplication;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter issuing permits at a fixed rate across every process on this host which shares its file. The GUI and
+ * any number of Marconi instances therefore spend one rate limit budget between them, rather than each spending the
+ * whole of it.
+ * <p>
+ * The file holds a single token bucket in the form of the instant at which the next permit is free. It is memory
+ * mapped, and each permit is taken by compare and set on the mapped value, so acquiring a permit takes no file lock
+ * and no system call. Instants are wall clock microseconds, the only clock processes share; if the clock is set
+ * backwards by more than {@link #MAX_AHEAD}, the bucket is reset rather than waiting it out.
+ * </p>
+ * <p>
+ * Each process takes permits at its own rate, so processes sharing a file should use the same rate.
+ * </p>
+ * @since version 13
+ */
+public class NSSharedRateLimiter implements NSRateLimiter {
+
+    /** File shared by default between processes on this host. */
+    public static final Path LOCATION = CommuniqueApplication.APP_SUPPORT.resolve("ratelimit.bin");
+    public static final long MAX_AHEAD = TimeUnit.MINUTES.toMicros(10);
+
+    private static final int MAGIC = 0x4e53524c; // NSRL
+    private static final int VERSION = 1;
+    private static final int SIZE = 16;
+    private static final int NEXT_FREE = 8; // aligned, as required for atomic access
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final double permitsPerSecond;
+    private final long intervalMicros;
+
+    /**
+     * Creates limiter sharing the token bucket in file, which is created if it does not exist.
+     * @param file             holding token bucket
+     * @param permitsPerSecond to issue
+     * @throws IOException if file cannot be mapped or is not a rate limit file
+     */
+    public NSSharedRateLimiter(Path file, double permitsPerSecond) throws IOException {
+        if (!(permitsPerSecond > 0)) throw new IllegalArgumentException("Rate must be positive");
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalMicros = Math.round(TimeUnit.SECONDS.toMicros(1) / permitsPerSecond);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE); // mapping outlives the channel
+            buffer.order(ByteOrder.nativeOrder());
+            if (buffer.getInt(0) != MAGIC) {
+                FileLock lock = channel.lock();
+                try {
+                    // another process may have initialised the file while we waited for the lock
+                    if (buffer.getInt(0) == 0) {
+                        buffer.putLong(NEXT_FREE, 0);
+                        buffer.putInt(4, VERSION);
+                        buffer.putInt(0, MAGIC);
+                        buffer.force();
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+        if (buffer.getInt(0) != MAGIC) throw new IOException(String.format("%s is not a rate limit file", file));
+        int version = buffer.getInt(4);
+        if (version != VERSION)
+            throw new IOException(String.format("Rate limit file %s has unsupported version %d", file, version));
+    }
+
+    /**
+     * Creates limiter sharing the default file at {@link #LOCATION}.
+     * @param permitsPerSecond to issue
+     * @return limiter
+     * @throws IOException if file cannot be mapped
+     */
+    public static NSSharedRateLimiter create(double permitsPerSecond) throws IOException {
+        return new NSSharedRateLimiter(LOCATION, permitsPerSecond);
+    }
+
+    @Override
+    public double acquire() {
+        long now, slot;
+        while (true) {
+            now = now();
+            long next = (long) LONGS.getVolatile(buffer, NEXT_FREE);
+            slot = Math.max(next, now);
+            if (slot - now > MAX_AHEAD) slot = now; // clock set backwards
+            if (LONGS.compareAndSet(buffer, NEXT_FREE, next, slot + intervalMicros)) break;
+        }
+
+        long wait = slot - now;
+        if (wait > 0) Uninterruptibles.sleepUninterruptibly(wait, TimeUnit.MICROSECONDS);
+        return wait / (double) TimeUnit.SECONDS.toMicros(1);
+    }
+
+    @Override
+    public double getRate() {
+        return permitsPerSecond;
+    }
+
+    /** @return wall clock microseconds since the epoch */
+    private static long now() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+}
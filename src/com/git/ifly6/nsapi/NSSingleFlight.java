@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces concurrent identical operations. While an operation for some key is in flight, further callers for the same
+ * key are attached to it rather than starting another. Once the operation completes, the key is forgotten; a later call
+ * starts afresh. This is not a cache. Keys should include anything, such as {@link NSPriority}, which callers sharing
+ * an operation must have in common.
+ * @param <T> type of result
+ * @since version 13
+ */
+public class NSSingleFlight<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(NSSingleFlight.class.getName());
+
+    private final Map<String, Flight<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Executes operation, unless an operation with the same key is already in flight, in which case its result is
+     * shared. Each caller gets its own dependent future, so cancelling it does not cancel the shared operation while
+     * another caller still waits on it; once every caller has cancelled, the shared operation is cancelled too.
+     * @param key       identifying operation
+     * @param operation to start if none in flight
+     * @return future completing with the result of the operation
+     */
+    public CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> operation) {
+        Flight<T> flight;
+        while (true) {
+            Flight<T> existing = inFlight.get(key);
+            // a completed future may linger until its removal callback runs; it is not in flight
+            if (existing != null && !existing.shared.isDone() && existing.join()) {
+                LOGGER.finer(String.format("Coalesced request for <%s> with one in flight", key));
+                flight = existing;
+                break;
+            }
+
+            Flight<T> created = new Flight<>(new CompletableFuture<>());
+            boolean claimed = existing == null
+                    ? inFlight.putIfAbsent(key, created) == null
+                    : inFlight.replace(key, existing, created);
+            if (claimed) {
+                start(key, created, operation); // outside the map, so the operation may itself use this
+                flight = created;
+                break;
+            }
+        }
+
+        CompletableFuture<T> copy = flight.shared.copy();
+        copy.whenComplete((t, e) -> {
+            if (copy.isCancelled() && flight.leave()) flight.shared.cancel(false);
+        });
+        return copy;
+    }
+
+    /** Starts operation for flight, completing its shared future with the result and cancelling with it. */
+    private void start(String key, Flight<T> flight, Supplier<CompletableFuture<T>> operation) {
+        flight.shared.whenComplete((t, e) -> inFlight.remove(key, flight));
+        CompletableFuture<T> started;
+        try {
+            started = operation.get();
+        } catch (RuntimeException e) {
+            flight.shared.completeExceptionally(e);
+            return;
+        }
+        started.whenComplete((t, e) -> {
+            if (e != null) flight.shared.completeExceptionally(e);
+            else flight.shared.complete(t);
+        });
+        flight.shared.whenComplete((t, e) -> {
+            if (flight.shared.isCancelled()) started.cancel(false);
+        });
+    }
+
+    /** @return number of operations in flight */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /** Operation in flight and the number of callers waiting on it. */
+    private static class Flight<T> {
+        private final CompletableFuture<T> shared;
+        private int waiters = 1;
+
+        private Flight(CompletableFuture<T> shared) {
+            this.shared = shared;
+        }
+
+        /** @return true if joined; false if every caller has already left */
+        private synchronized boolean join() {
+            if (waiters == 0) return false;
+            waiters++;
+            return true;
+        }
+
+        /** @return true if no caller is left waiting */
+        private synchronized boolean leave() {
+            return --waiters == 0;
+        }
+    }
+}
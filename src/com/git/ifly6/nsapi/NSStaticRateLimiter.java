@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Rate limiter issuing permits at a fixed rate, regardless of API responses.
+ * @since version 13
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class NSStaticRateLimiter implements NSRateLimiter {
+
+    private final RateLimiter limiter;
+
+    /**
+     * Creates limiter at fixed rate.
+     * @param permitsPerSecond to issue
+     */
+    public NSStaticRateLimiter(double permitsPerSecond) {
+        limiter = RateLimiter.create(permitsPerSecond);
+    }
+
+    @Override
+    public double acquire() {
+        return limiter.acquire();
+    }
+
+    @Override
+    public double getRate() {
+        return limiter.getRate();
+    }
+}
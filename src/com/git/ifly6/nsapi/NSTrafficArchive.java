@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import javax.net.ssl.SSLSession;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive of captured API traffic. A {@link Recorder} wraps a live {@link NSExchange} and appends every completed
+ * exchange to the archive: request method and URI, when it was sent, how long the response headers took, and the
+ * response status, headers, and body exactly as transferred (ie still compressed, if it was). A {@link Replayer} serves
+ * those responses back without contacting the API, so parse and send performance can be reproduced from a real
+ * campaign without spending rate limit budget.
+ * <p>
+ * The archive is one gzip stream of length-prefixed records, flushed after each record so that it remains readable if
+ * the application exits without closing it. The {@code client} and {@code key} parameters of telegram requests are
+ * redacted before writing; requests are matched on replay after the same redaction.
+ * </p>
+ * <p>
+ * Replay waits each response's recorded latency, divided by the replay speed. Requests are still paced by the
+ * {@link NSConnection} rate limiter, which should be relaxed with {@link NSConnection#setRateLimiter(NSRateLimiter)}
+ * to replay faster than the API allows.
+ * </p>
+ * @see NSTransport#setExchange(NSExchange)
+ * @since version 13
+ */
+public class NSTrafficArchive {
+
+    private static final Logger LOGGER = Logger.getLogger(NSTrafficArchive.class.getName());
+    private static final int MAGIC = 0x4e535441; // NSTA
+    private static final int VERSION = 1;
+    private static final Pattern SECRET = Pattern.compile("(?i)([?&;](?:client|key)=)[^&;]*");
+
+    private NSTrafficArchive() { }
+
+    /**
+     * Starts recording to archive, replacing any existing archive at that path.
+     * @param archive  to write
+     * @param delegate through which requests are actually sent
+     * @return recorder, which should be closed when done
+     * @throws IOException if archive cannot be created
+     */
+    public static Recorder record(Path archive, NSExchange delegate) throws IOException {
+        return new Recorder(archive, delegate);
+    }
+
+    /**
+     * Loads archive for replay.
+     * @param archive to read
+     * @param speed   by which to divide recorded latencies; {@link Double#POSITIVE_INFINITY} to not wait at all
+     * @return replayer
+     * @throws IOException if archive cannot be read
+     */
+    public static Replayer replay(Path archive, double speed) throws IOException {
+        return new Replayer(read(archive), speed);
+    }
+
+    /**
+     * @param archive to read
+     * @return every complete exchange in archive, in order recorded
+     * @throws IOException if archive cannot be read or is not a traffic archive
+     */
+    public static List<Exchange> read(Path archive) throws IOException {
+        List<Exchange> exchanges = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(archive))))) {
+            if (in.readInt() != MAGIC) throw new IOException(String.format("%s is not a traffic archive", archive));
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(String.format("Traffic archive %s has unsupported version %d", archive, version));
+
+            while (true) {
+                try {
+                    exchanges.add(Exchange.read(in));
+                } catch (EOFException e) {
+                    break; // end of archive; or truncated at last flush if not closed
+                }
+            }
+        }
+        return exchanges;
+    }
+
+    /** @return request URI with client and secret keys redacted */
+    static String redact(URI uri) {
+        return SECRET.matcher(uri.toString()).replaceAll("$1-");
+    }
+
+    /** One recorded request and its response. */
+    public static class Exchange {
+        private final String method;
+        private final String uri;
+        private final long sentMillis;
+        private final long latencyNanos;
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        private Exchange(String method, String uri, long sentMillis, long latencyNanos, int status,
+                         Map<String, List<String>> headers, byte[] body) {
+            this.method = method;
+            this.uri = uri;
+            this.sentMillis = sentMillis;
+            this.latencyNanos = latencyNanos;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /** @return request method */
+        public String getMethod() {
+            return method;
+        }
+
+        /** @return redacted request URI */
+        public String getURI() {
+            return uri;
+        }
+
+        /** @return milliseconds after recording started that request was sent */
+        public long getSentMillis() {
+            return sentMillis;
+        }
+
+        /** @return nanoseconds from sending request to receiving response headers */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        /** @return response status code */
+        public int getStatus() {
+            return status;
+        }
+
+        /** @return response headers */
+        public HttpHeaders getHeaders() {
+            return HttpHeaders.of(headers, (k, v) -> true);
+        }
+
+        /** @return length of response body as transferred */
+        public int getLength() {
+            return body.length;
+        }
+
+        /** @return key under which exchange is replayed */
+        private String key() {
+            return method + " " + NSConnection.normalise(uri);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(method);
+            out.writeUTF(uri);
+            out.writeLong(sentMillis);
+            out.writeLong(latencyNanos);
+            out.writeShort(status);
+            int count = headers.values().stream().mapToInt(List::size).sum();
+            out.writeShort(count);
+            for (Map.Entry<String, List<String>> header : headers.entrySet())
+                for (String value : header.getValue()) {
+                    out.writeUTF(header.getKey());
+                    out.writeUTF(value);
+                }
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        private static Exchange read(DataInputStream in) throws IOException {
+            String method = in.readUTF();
+            String uri = in.readUTF();
+            long sent = in.readLong();
+            long latency = in.readLong();
+            int status = in.readUnsignedShort();
+            int count = in.readUnsignedShort();
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++)
+                headers.computeIfAbsent(in.readUTF(), k -> new ArrayList<>()).add(in.readUTF());
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Exchange(method, uri, sent, latency, status, headers, body);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s -> %d, %d bytes in %d ms", method, uri, status, body.length,
+                    latencyNanos / 1_000_000);
+        }
+    }
+
+    /** Records exchanges passing through a delegate exchange. */
+    public static class Recorder implements NSExchange, Closeable {
+        private final Path archive;
+        private final NSExchange delegate;
+        private final DataOutputStream out;
+        private final long started = System.currentTimeMillis();
+        private int recorded;
+        private boolean closed;
+
+        private Recorder(Path archive, NSExchange delegate) throws IOException {
+            this.archive = archive;
+            this.delegate = delegate;
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(archive,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                    true)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                HttpResponse.BodyHandler<T> handler) {
+            long sent = System.currentTimeMillis() - started;
+            long start = System.nanoTime();
+            return delegate.sendAsync(request, info -> {
+                long latency = System.nanoTime() - start; // handler is applied once headers are received
+                return new TeeSubscriber<>(handler.apply(info), body -> save(new Exchange(request.method(),
+                        redact(request.uri()), sent, latency, info.statusCode(),
+                        new LinkedHashMap<>(info.headers().map()), body)));
+            });
+        }
+
+        private synchronized void save(Exchange exchange) {
+            if (closed) return;
+            try {
+                exchange.write(out);
+                out.flush();
+                recorded++;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Unable to record %s to %s", exchange, archive), e);
+            }
+        }
+
+        /** @return number of exchanges recorded */
+        public synchronized int getRecorded() {
+            return recorded;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            out.close();
+            LOGGER.info(String.format("Recorded %d API exchanges to %s", recorded, archive));
+        }
+    }
+
+    /**
+     * Passes body through to subscriber, capturing a copy. The copy is saved only if the body completes; responses
+     * abandoned part way are not recorded.
+     */
+    private static class TeeSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> subscriber;
+        private final ExchangeSink sink;
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private TeeSubscriber(HttpResponse.BodySubscriber<T> subscriber, ExchangeSink sink) {
+            this.subscriber = subscriber;
+            this.sink = sink;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            for (ByteBuffer buffer : item) {
+                ByteBuffer view = buffer.duplicate();
+                byte[] bytes = new byte[view.remaining()];
+                view.get(bytes);
+                copy.write(bytes, 0, bytes.length);
+            }
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            sink.accept(copy.toByteArray());
+            subscriber.onComplete();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExchangeSink {
+        void accept(byte[] body);
+    }
+
+    /**
+     * Serves recorded responses. Repeated requests for the same URI are answered in the order recorded; once those run
+     * out, the last is repeated. Requests never recorded fail with {@link FileNotFoundException}.
+     */
+    public static class Replayer implements NSExchange {
+        private final Map<String, Deque<Exchange>> exchanges = new HashMap<>();
+        private final double speed;
+
+        private Replayer(List<Exchange> recorded, double speed) {
+            if (!(speed > 0)) throw new IllegalArgumentException("Replay speed must be positive");
+            this.speed = speed;
+            for (Exchange e : recorded) exchanges.computeIfAbsent(e.key(), k -> new ArrayDeque<>()).add(e);
+        }
+
+        /** @return number of distinct requests which can be replayed */
+        public synchronized int size() {
+            return exchanges.size();
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                HttpResponse.BodyHandler<T> handler) {
+            String uri = redact(request.uri());
+            Exchange exchange;
+            synchronized (this) {
+                Deque<Exchange> queue = exchanges.get(request.method() + " " + NSConnection.normalise(uri));
+                exchange = queue == null ? null : queue.size() > 1 ? queue.poll() : queue.peek();
+            }
+            if (exchange == null) return CompletableFuture.failedFuture(
+                    new FileNotFoundException(String.format("No recorded response for %s", uri)));
+
+            long delay = Double.isInfinite(speed) ? 0 : (long) (exchange.latencyNanos / speed);
+            Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS);
+            return CompletableFuture.supplyAsync(() -> exchange, delayed)
+                    .thenCompose(e -> deliver(request, e, handler));
+        }
+
+        /** Feeds recorded body through subscriber from handler, as the client would. */
+        private static <T> CompletableFuture<HttpResponse<T>> deliver(HttpRequest request, Exchange exchange,
+                                                                      HttpResponse.BodyHandler<T> handler) {
+            HttpHeaders headers = exchange.getHeaders();
+            HttpResponse.BodySubscriber<T> subscriber = handler.apply(new HttpResponse.ResponseInfo() {
+                @Override
+                public int statusCode() {
+                    return exchange.status;
+                }
+
+                @Override
+                public HttpHeaders headers() {
+                    return headers;
+                }
+
+                @Override
+                public HttpClient.Version version() {
+                    return HttpClient.Version.HTTP_1_1;
+                }
+            });
+
+            AtomicBoolean delivered = new AtomicBoolean();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    if (n <= 0 || delivered.getAndSet(true)) return;
+                    if (exchange.body.length > 0)
+                        subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(exchange.body).asReadOnlyBuffer()));
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public void cancel() {
+                    delivered.set(true);
+                }
+            });
+            return subscriber.getBody().toCompletableFuture()
+                    .thenApply(body -> new ReplayedResponse<>(request, exchange.status, headers, body));
+        }
+    }
+
+    /** Response served from archive. */
+    private static class ReplayedResponse<T> implements HttpResponse<T> {
+        private final HttpRequest request;
+        private final int status;
+        private final HttpHeaders headers;
+        private final T body;
+
+        private ReplayedResponse(HttpRequest request, int status, HttpHeaders headers, T body) {
+            this.request = request;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return status;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return request;
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public T body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
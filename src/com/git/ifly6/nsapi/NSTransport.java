@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP transport shared by all requests to the NationStates API, both through {@link NSConnection} and through the
+ * telegram API. Sharing one {@link HttpClient} means sharing one connection pool, so a connection opened to fetch a
+ * recipient list is reused to send telegrams and the TLS handshake is not repeated for each small request.
+ * <p>
+ * The client prefers HTTP/2, falling back to HTTP/1.1 where the server does not offer it. Its threads are bounded and
+ * idle connections are kept alive for {@link #KEEP_ALIVE}, which is longer than the wait between most requests under
+ * the API rate limit. Requests made with {@link #newRequest(URI)} time out if no response arrives within
+ * {@link #REQUEST_TIMEOUT}.
+ * </p>
+ * <p>
+ * Requests are exchanged for responses by a pluggable {@link NSExchange}; by default, the client itself. Traffic can
+ * instead be recorded to or replayed from a {@link NSTrafficArchive}, either with {@link #setExchange(NSExchange)} or
+ * at startup with the system property {@value #RECORD_PROPERTY} or {@value #REPLAY_PROPERTY} set to the archive path.
+ * Replay speed is set with {@value #REPLAY_SPEED_PROPERTY}; by default, recorded latencies are reproduced exactly.
+ * </p>
+ * <p>
+ * Time to response headers and body transfer time are recorded for every request in {@link NSMetrics}. No request is
+ * sent while {@link NSConnection#isOffline() offline}.
+ * </p>
+ * @since version 13
+ */
+public class NSTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(NSTransport.class.getName());
+
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration KEEP_ALIVE = Duration.ofMinutes(5);
+    private static final int THREADS = 4;
+
+    public static final String RECORD_PROPERTY = "communique.api.record";
+    public static final String REPLAY_PROPERTY = "communique.api.replay";
+    public static final String REPLAY_SPEED_PROPERTY = "communique.api.replay.speed";
+
+    private static NSTransport instance;
+
+    private final HttpClient client;
+    private volatile NSExchange exchange;
+
+    private NSTransport() {
+        // read once when the first client is created; do not override a user's choice
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null)
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(KEEP_ALIVE.toSeconds()));
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "nsapi-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        exchange = client::sendAsync;
+        configureArchive();
+    }
+
+    /** Replaces live exchange with recording or replay, if requested by system property. */
+    private void configureArchive() {
+        String replay = System.getProperty(REPLAY_PROPERTY);
+        String record = System.getProperty(RECORD_PROPERTY);
+        try {
+            if (replay != null) {
+                double speed = Double.parseDouble(System.getProperty(REPLAY_SPEED_PROPERTY, "1"));
+                exchange = NSTrafficArchive.replay(Paths.get(replay), speed);
+                LOGGER.info(String.format("Replaying API traffic from %s at speed %s", replay, speed));
+
+            } else if (record != null) {
+                NSTrafficArchive.Recorder recorder = NSTrafficArchive.record(Paths.get(record), exchange);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        recorder.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, String.format("Unable to close traffic archive %s", record), e);
+                    }
+                }, "nsapi-recorder-close"));
+                exchange = recorder;
+                LOGGER.info(String.format("Recording API traffic to %s", record));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Unable to open traffic archive; using live API", e);
+        }
+    }
+
+    /** @return transport shared by all API requests */
+    public static synchronized NSTransport getInstance() {
+        if (instance == null) instance = new NSTransport();
+        return instance;
+    }
+
+    /**
+     * Sets exchange through which all further requests are sent.
+     * @param exchange to use, eg a {@link NSTrafficArchive.Recorder} wrapping {@link #live()}
+     */
+    public void setExchange(NSExchange exchange) {
+        this.exchange = Objects.requireNonNull(exchange);
+    }
+
+    /** @return exchange through which requests are sent */
+    public NSExchange getExchange() {
+        return exchange;
+    }
+
+    /** @return exchange sending requests to the live API through the shared client */
+    public NSExchange live() {
+        return client::sendAsync;
+    }
+
+    /**
+     * @param uri to request
+     * @return request builder with {@link #REQUEST_TIMEOUT} and {@link NSContentEncoding#ACCEPT_ENCODING} set
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept-Encoding", NSContentEncoding.ACCEPT_ENCODING);
+    }
+
+    /**
+     * Sends request asynchronously, recording {@link NSMetrics.Phase#FIRST_BYTE} and {@link NSMetrics.Phase#TRANSFER}.
+     * @param request to send
+     * @param handler for response body
+     * @param <T>     type of body
+     * @return future completing with response once headers are received
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler) {
+        NSMetrics metrics = NSMetrics.getInstance();
+        String endpoint = NSMetrics.endpoint(request.uri());
+        if (NSConnection.isOffline()) // URI not given, as it may hold telegram keys
+            return CompletableFuture.failedFuture(new NSConnection.NSOfflineException(
+                    String.format("Working offline; not sending <%s> request", endpoint)));
+        long start = System.nanoTime();
+        return exchange.sendAsync(request, info -> {
+            metrics.record(endpoint, NSMetrics.Phase.FIRST_BYTE, System.nanoTime() - start);
+            return new TimedSubscriber<>(handler.apply(info), endpoint);
+        }).whenComplete((r, e) -> {
+            if (e != null) metrics.recordFailure(endpoint);
+        });
+    }
+
+    /**
+     * Sends request, blocking until response headers are received.
+     * @param request to send
+     * @param handler for response body
+     * @param <T>     type of body
+     * @return response
+     * @throws IOException if request fails or times out
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        CompletableFuture<HttpResponse<T>> future = sendAsync(request, handler);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while requesting %s", request.uri()));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(String.format("Request to %s failed", request.uri()), cause);
+        }
+    }
+
+    /**
+     * Passes body through to subscriber, recording {@link NSMetrics.Phase#TRANSFER} when it completes.
+     * @param <T> type of body
+     */
+    private static class TimedSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> subscriber;
+        private final String endpoint;
+        private final long headers = System.nanoTime();
+
+        private TimedSubscriber(HttpResponse.BodySubscriber<T> subscriber, String endpoint) {
+            this.subscriber = subscriber;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            NSMetrics.getInstance().record(endpoint, NSMetrics.Phase.TRANSFER, System.nanoTime() - headers);
+            subscriber.onComplete();
+        }
+    }
+}
@@ -18,11 +18,12 @@
 package com.git.ifly6.nsapi;
 
 import com.git.ifly6.nsapi.telegram.JTelegramException;
-import com.jcabi.xml.XMLDocument;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /* There is only one World, so this is going to be static. */
 
@@ -32,6 +33,14 @@ import java.util.List;
  */
 public class NSWorld {
 
+    /** Coalesces concurrent fetches of the same list, so that it is requested and parsed once. */
+    private static final NSSingleFlight<List<String>> LISTS = new NSSingleFlight<>();
+    private static final NSXMLSelector.Path NATIONS = NSXMLSelector.Path.compile("/WORLD/NATIONS");
+    private static final NSXMLSelector.Path NEW_NATIONS = NSXMLSelector.Path.compile("/WORLD/NEWNATIONS");
+    private static final NSXMLSelector.Path REGIONS = NSXMLSelector.Path.compile("/WORLD/REGIONS");
+    private static final NSXMLSelector.Path WA_MEMBERS = NSXMLSelector.Path.compile("/WA/MEMBERS");
+    private static final NSXMLSelector.Path WA_DELEGATES = NSXMLSelector.Path.compile("/WA/DELEGATES");
+
     private NSWorld() {
     }
 
@@ -43,10 +52,8 @@ public class NSWorld {
     @Deprecated
     public static List<String> getNew() throws JTelegramException {
         try {
-            final NSConnection connection = new NSConnection(NSConnection.API_PREFIX + "q=newnations");
-            final String response = connection.connect().getResponse();
-            final String newNations = new XMLDocument(response).xpath("/WORLD/NEWNATIONS/text()").get(0);
-            return arrayRef(newNations.split(","));
+            final NSConnection connection = new NSConnection(NSEndpoint.NEW_NATIONS.url());
+            return connection.parse(listParser(NEW_NATIONS, true));
         } catch (IOException e) {
             throw new JTelegramException("Failed to get new nations", e);
         }
@@ -58,8 +65,15 @@ public class NSWorld {
      * @throws IOException from {@link java.net.URLConnection}
      */
     public static List<String> getAllNations() throws IOException {
-        String x = new NSConnection(NSConnection.API_PREFIX + "q=nations").getResponse();
-        return arrayRef(new XMLDocument(x).xpath("/WORLD/NATIONS/text()").get(0).split(","));
+        return NSConnection.await(getAllNationsAsync());
+    }
+
+    /**
+     * Asynchronous version of {@link #getAllNations()}.
+     * @return future completing with every NS nation in {@code ref} form
+     */
+    public static CompletableFuture<List<String>> getAllNationsAsync() {
+        return fetchList(NSEndpoint.NATIONS.url(), NATIONS);
     }
 
     /**
@@ -68,8 +82,15 @@ public class NSWorld {
      * @throws IOException from {@link java.net.URLConnection}
      */
     public static List<String> getWAMembers() throws IOException {
-        String x = new NSConnection(NSConnection.API_PREFIX + "wa=1&q=members").getResponse();
-        return arrayRef(new XMLDocument(x).xpath("/WA/MEMBERS/text()").get(0).split(","));
+        return NSConnection.await(getWAMembersAsync());
+    }
+
+    /**
+     * Asynchronous version of {@link #getWAMembers()}.
+     * @return future completing with the reference name of every World Assembly member
+     */
+    public static CompletableFuture<List<String>> getWAMembersAsync() {
+        return fetchList(NSEndpoint.WA_MEMBERS.url(), WA_MEMBERS);
     }
 
     /**
@@ -78,8 +99,15 @@ public class NSWorld {
      * @throws IOException from {@link java.net.URLConnection}
      */
     public static List<String> getDelegates() throws IOException {
-        String x = new NSConnection(NSConnection.API_PREFIX + "wa=1&q=delegates").getResponse();
-        return arrayRef(new XMLDocument(x).xpath("/WA/DELEGATES/text()").get(0).split(","));
+        return NSConnection.await(getDelegatesAsync());
+    }
+
+    /**
+     * Asynchronous version of {@link #getDelegates()}.
+     * @return future completing with the reference name of every delegate
+     */
+    public static CompletableFuture<List<String>> getDelegatesAsync() {
+        return fetchList(NSEndpoint.WA_DELEGATES.url(), WA_DELEGATES);
     }
 
     /**
@@ -90,24 +118,58 @@ public class NSWorld {
      *                     exist
      */
     public static List<String> getRegionTag(String regionTag) throws IOException, NSNoSuchTagException {
+        return NSConnection.await(getRegionTagAsync(regionTag));
+    }
+
+    /**
+     * Asynchronous version of {@link #getRegionTag(String)}.
+     * @param regionTag to query
+     * @return future completing with regions by names; or exceptionally with {@link NSNoSuchTagException}
+     */
+    public static CompletableFuture<List<String>> getRegionTagAsync(String regionTag) {
         // https://www.nationstates.net/cgi-bin/api.cgi?q=regionsbytag;tags=-medium,class,-minuscule
-        try {
-            String content = new NSConnection(
-                    NSConnection.API_PREFIX
-                            + "q=regionsbytag;tags="
-                            + regionTag.trim()
-            ).getResponse();
-            return arrayRef(new XMLDocument(content).xpath("/WORLD/REGIONS/text()").get(0).split(","));
-        } catch (IndexOutOfBoundsException e) {
-            throw new NSNoSuchTagException(String.format("tag <%s> does not exist", regionTag), e);
-        }
+        String url = NSEndpoint.REGIONS_BY_TAG.url(regionTag.trim());
+        return LISTS.execute(key(url), () -> new NSConnection(url)
+                .parseAsync(listParser(REGIONS, false))
+                .thenApply(regions -> {
+                    if (regions.isEmpty())
+                        throw new NSNoSuchTagException(String.format("tag <%s> does not exist", regionTag));
+                    return regions;
+                }));
+    }
+
+    /**
+     * Fetches comma-delimited list of nations at URL and path. Concurrent callers for the same URL share one request
+     * and one parsed list.
+     * @param url  to query
+     * @param path locating list
+     * @return future completing with list in {@code ref} form
+     */
+    private static CompletableFuture<List<String>> fetchList(String url, NSXMLSelector.Path path) {
+        return LISTS.execute(key(url), () -> new NSConnection(url).parseAsync(listParser(path, true)));
+    }
+
+    /** @return single-flight key for URL, requested at the priority of this thread */
+    private static String key(String url) {
+        return NSPriority.current() + " " + NSConnection.normalise(url);
     }
 
     /**
-     * Wraps {@link ApiUtils#ref} for {@code String[]}.
+     * Creates parser streaming comma-delimited list at path. Result is unmodifiable, as it may be shared between
+     * callers.
+     * @param path    locating list
+     * @param nations true if list is of nations, whose names are interned in {@link NSNameDictionary}
+     * @return parser yielding list in {@code ref} form
      */
-    private static List<String> arrayRef(String[] input) {
-        return ApiUtils.ref(Arrays.asList(input));
+    private static NSStreamParser<List<String>> listParser(NSXMLSelector.Path path, boolean nations) {
+        return reader -> {
+            List<String> list = new ArrayList<>();
+            NSXMLSelector selector = new NSXMLSelector();
+            if (nations) selector.refs(path, ',', list::add);
+            else selector.names(path, ',', list::add);
+            selector.parse(reader);
+            return Collections.unmodifiableList(list);
+        };
     }
 
     /**
@@ -115,6 +177,10 @@ public class NSWorld {
      * @since version 13
      */
     public static class NSNoSuchTagException extends NSException {
+        public NSNoSuchTagException(String message) {
+            super(message);
+        }
+
         public NSNoSuchTagException(String message, Throwable cause) {
             super(message, cause);
         }
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Selects elements from a streamed XML document by absolute path and hands their contents to callbacks. Only selected
+ * elements are ever materialised; everything else is skipped as it streams past.
+ * <p>
+ * Paths are absolute and name each element from the root, eg {@code /NATION/NAME}. A step can require an attribute
+ * value, as in {@code /NATION/CENSUS/SCALE[@id=65]/SCORE}. This covers the subset of XPath the API responses need.
+ * Paths used on every request should be compiled once with {@link Path#compile(String)} and kept in a constant.
+ * </p>
+ * <pre>{@code
+ * List<String> nations = new ArrayList<>();
+ * new NSXMLSelector()
+ *         .list("/WORLD/NATIONS", ',', s -> nations.add(ApiUtils.ref(s)))
+ *         .parse(reader);
+ * }</pre>
+ * @since version 13
+ */
+public class NSXMLSelector {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final List<Selection> selections = new ArrayList<>();
+
+    /**
+     * Selects text of each element at path.
+     * @param path    of element
+     * @param handler receiving its text
+     * @return this
+     */
+    public NSXMLSelector text(String path, Consumer<String> handler) {
+        return text(Path.compile(path), handler);
+    }
+
+    /**
+     * Selects text of each element at path.
+     * @param path    of element
+     * @param handler receiving its text
+     * @return this
+     */
+    public NSXMLSelector text(Path path, Consumer<String> handler) {
+        selections.add(new Selection(path, Kind.TEXT, handler, null, (char) 0));
+        return this;
+    }
+
+    /**
+     * Selects delimited text of each element at path, splitting it as it streams in. The whole text is never held at
+     * once. Tokens are trimmed and empty tokens dropped.
+     * @param path      of element
+     * @param delimiter separating tokens
+     * @param handler   receiving each token
+     * @return this
+     */
+    public NSXMLSelector list(String path, char delimiter, Consumer<String> handler) {
+        return list(Path.compile(path), delimiter, handler);
+    }
+
+    /**
+     * Selects delimited text of each element at path; see {@link #list(String, char, Consumer)}.
+     * @param path      of element
+     * @param delimiter separating tokens
+     * @param handler   receiving each token
+     * @return this
+     */
+    public NSXMLSelector list(Path path, char delimiter, Consumer<String> handler) {
+        selections.add(new Selection(path, Kind.LIST, handler, null, delimiter));
+        return this;
+    }
+
+    /**
+     * Selects delimited list of names in each element at path, passing each non-blank name to handler in reference
+     * form, as from {@link ApiUtils#ref(String)}. Names are split and normalised as they stream in by
+     * {@link NSNameScanner}; only a name spanning two chunks of text is buffered. Names are interned in
+     * {@link NSNameDictionary}.
+     * @param path      of element
+     * @param delimiter separating names
+     * @param handler   receiving each name
+     * @return this
+     */
+    public NSXMLSelector refs(String path, char delimiter, Consumer<String> handler) {
+        return refs(Path.compile(path), delimiter, handler);
+    }
+
+    /**
+     * Selects delimited list of names in each element at path; see {@link #refs(String, char, Consumer)}.
+     * @param path      of element
+     * @param delimiter separating names
+     * @param handler   receiving each name
+     * @return this
+     */
+    public NSXMLSelector refs(Path path, char delimiter, Consumer<String> handler) {
+        selections.add(new Selection(path, Kind.REFS, handler, null, delimiter));
+        return this;
+    }
+
+    /**
+     * Selects delimited list of names in each element at path, as {@link #refs(Path, char, Consumer)}, but does not
+     * intern them. Use for names other than those of nations, eg regions, so that they do not take nation ids in
+     * {@link NSNameDictionary}.
+     * @param path      of element
+     * @param delimiter separating names
+     * @param handler   receiving each name
+     * @return this
+     */
+    public NSXMLSelector names(Path path, char delimiter, Consumer<String> handler) {
+        selections.add(new Selection(path, Kind.NAMES, handler, null, delimiter));
+        return this;
+    }
+
+    /**
+     * Selects delimited list of names in each element at path, as {@link #refs(Path, char, Consumer)}, but holds the
+     * whole list and, once the element ends, scans it with {@link NSNameScanner#scanParallel(char[], int, int, char)}.
+     * Lists of hundreds of thousands of names are so split in parallel. Names are passed to handler in order, on the
+     * parsing thread.
+     * @param path      of element
+     * @param delimiter separating names
+     * @param handler   receiving each name
+     * @return this
+     */
+    public NSXMLSelector refsParallel(Path path, char delimiter, Consumer<String> handler) {
+        selections.add(new Selection(path, Kind.REFS_PARALLEL, handler, null, delimiter));
+        return this;
+    }
+
+    /**
+     * Selects attribute of each element at path. The handler is not called if the attribute is absent.
+     * @param path      of element
+     * @param attribute name
+     * @param handler   receiving its value
+     * @return this
+     */
+    public NSXMLSelector attribute(String path, String attribute, Consumer<String> handler) {
+        return attribute(Path.compile(path), attribute, handler);
+    }
+
+    /**
+     * Selects attribute of each element at path. The handler is not called if the attribute is absent.
+     * @param path      of element
+     * @param attribute name
+     * @param handler   receiving its value
+     * @return this
+     */
+    public NSXMLSelector attribute(Path path, String attribute, Consumer<String> handler) {
+        selections.add(new Selection(path, Kind.ATTRIBUTE, handler, attribute, (char) 0));
+        return this;
+    }
+
+    /**
+     * Selects end of each element at path. Useful to collect a record once all its children have been selected.
+     * @param path    of element
+     * @param handler to run
+     * @return this
+     */
+    public NSXMLSelector end(String path, Runnable handler) {
+        return end(Path.compile(path), handler);
+    }
+
+    /**
+     * Selects end of each element at path.
+     * @param path    of element
+     * @param handler to run
+     * @return this
+     */
+    public NSXMLSelector end(Path path, Runnable handler) {
+        selections.add(new Selection(path, Kind.END, s -> handler.run(), null, (char) 0));
+        return this;
+    }
+
+    /**
+     * Streams document, calling handlers for selected elements in document order.
+     * @param reader positioned at start of document
+     * @throws XMLStreamException if document is malformed
+     */
+    public void parse(XMLStreamReader reader) throws XMLStreamException {
+        // matched[d] holds selections whose first d + 1 steps match the open elements at depth d
+        List<List<Selection>> matched = new ArrayList<>();
+        int depth = -1;
+        int skipUntil = -1; // depth above which nothing can match, so the subtree is skipped
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (skipUntil >= 0) break;
+
+                    List<Selection> candidates = depth == 0 ? selections : matched.get(depth - 1);
+                    List<Selection> here = new ArrayList<>(2);
+                    for (Selection s : candidates)
+                        if (s.steps.length > depth && s.steps[depth].matches(reader)) {
+                            here.add(s);
+                            if (s.steps.length == depth + 1) s.start(reader);
+                        }
+
+                    if (here.isEmpty()) skipUntil = depth;
+                    if (matched.size() > depth) matched.set(depth, here);
+                    else matched.add(here);
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (skipUntil >= 0 || depth < 0) break;
+                    for (Selection s : matched.get(depth))
+                        if (s.steps.length == depth + 1)
+                            s.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    if (skipUntil >= 0) {
+                        if (skipUntil == depth) skipUntil = -1;
+                        depth--;
+                        break;
+                    }
+                    for (Selection s : matched.get(depth))
+                        if (s.steps.length == depth + 1) s.end();
+                    depth--;
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Streams document from input stream.
+     * @param stream  containing document
+     * @param charset of document; null to detect from the XML declaration
+     * @throws XMLStreamException if document is malformed
+     */
+    public void parse(InputStream stream, Charset charset) throws XMLStreamException {
+        parse(createReader(stream, charset));
+    }
+
+    /**
+     * Creates reader over stream. Document type declarations and external entities are not supported.
+     * @param stream  containing document
+     * @param charset of document; null to detect from the XML declaration
+     * @return reader
+     * @throws XMLStreamException if reader cannot be created
+     */
+    public static XMLStreamReader createReader(InputStream stream, Charset charset) throws XMLStreamException {
+        return charset == null
+                ? FACTORY.createXMLStreamReader(stream)
+                : FACTORY.createXMLStreamReader(stream, charset.name());
+    }
+
+    /**
+     * Creates reader over string.
+     * @param document to read
+     * @return reader
+     * @throws XMLStreamException if reader cannot be created
+     */
+    public static XMLStreamReader createReader(String document) throws XMLStreamException {
+        return FACTORY.createXMLStreamReader(new StringReader(document));
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private enum Kind {TEXT, LIST, REFS, NAMES, REFS_PARALLEL, ATTRIBUTE, END}
+
+    /** Absolute path, split into steps once so that it can be selected on any number of documents. */
+    public static final class Path {
+        private final String path;
+        private final Step[] steps;
+
+        private Path(String path) {
+            if (!path.startsWith("/")) throw new IllegalArgumentException("Path must be absolute");
+            String[] split = path.substring(1).split("/");
+            this.path = path;
+            this.steps = new Step[split.length];
+            for (int i = 0; i < split.length; i++) steps[i] = new Step(split[i]);
+        }
+
+        /**
+         * @param path absolute path, eg {@code /NATION/NAME}
+         * @return compiled path
+         * @throws IllegalArgumentException if path is not absolute or has an unsupported step
+         */
+        public static Path compile(String path) {
+            return new Path(path);
+        }
+
+        /**
+         * @param relative path, eg {@code NAME}
+         * @return compiled path to relative path below this one
+         */
+        public Path resolve(String relative) {
+            return new Path(path + "/" + relative);
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    /** One step of a path; element name and optional attribute predicate. */
+    private static class Step {
+        private final String name;
+        private final String attribute;
+        private final String value;
+
+        private Step(String step) {
+            int bracket = step.indexOf('[');
+            if (bracket < 0) {
+                name = step;
+                attribute = null;
+                value = null;
+                return;
+            }
+
+            // NAME[@attribute=value]
+            String predicate = step.substring(bracket + 1, step.length() - 1);
+            int equals = predicate.indexOf('=');
+            if (!step.endsWith("]") || !predicate.startsWith("@") || equals < 0)
+                throw new IllegalArgumentException(String.format("Unsupported path step <%s>", step));
+
+            name = step.substring(0, bracket);
+            attribute = predicate.substring(1, equals);
+            value = predicate.substring(equals + 1).replaceAll("^['\"]|['\"]$", "");
+        }
+
+        private boolean matches(XMLStreamReader reader) {
+            return name.equals(reader.getLocalName())
+                    && (attribute == null || Objects.equals(value, reader.getAttributeValue(null, attribute)));
+        }
+    }
+
+    /** Selection of path with its handler and, while selected element is open, its buffered text. */
+    private static class Selection {
+        private final Step[] steps;
+        private final Kind kind;
+        private final Consumer<String> handler;
+        private final String attribute;
+        private final char delimiter;
+        private final StringBuilder buffer = new StringBuilder();
+
+        private Selection(Path path, Kind kind, Consumer<String> handler, String attribute, char delimiter) {
+            this.steps = path.steps; // immutable, so shared between selections
+
+            this.kind = kind;
+            this.handler = Objects.requireNonNull(handler);
+            this.attribute = attribute;
+            this.delimiter = delimiter;
+        }
+
+        private void start(XMLStreamReader reader) {
+            buffer.setLength(0);
+            if (kind == Kind.ATTRIBUTE) {
+                String value = reader.getAttributeValue(null, attribute);
+                if (value != null) handler.accept(value);
+            }
+        }
+
+        private void characters(char[] chars, int start, int length) {
+            if (kind == Kind.TEXT || kind == Kind.REFS_PARALLEL) buffer.append(chars, start, length);
+            else if (kind == Kind.LIST)
+                for (int i = start; i < start + length; i++) {
+                    if (chars[i] == delimiter) flush();
+                    else buffer.append(chars[i]);
+                }
+            else if (kind == Kind.REFS || kind == Kind.NAMES) scanRefs(chars, start, start + length);
+        }
+
+        /** Emits names ending in chunk; carries any name not yet ended in buffer. */
+        private void scanRefs(char[] chars, int start, int end) {
+            int from = start;
+            for (int i = start; i < end; i++)
+                if (chars[i] == delimiter) {
+                    if (buffer.length() == 0) emitRef(ref(chars, from, i));
+                    else {
+                        buffer.append(chars, from, i - from);
+                        flushRef();
+                    }
+                    from = i + 1;
+                }
+            buffer.append(chars, from, end - from);
+        }
+
+        private void flushRef() {
+            char[] chars = new char[buffer.length()];
+            buffer.getChars(0, chars.length, chars, 0);
+            buffer.setLength(0);
+            emitRef(ref(chars, 0, chars.length));
+        }
+
+        /** @return name in reference form; interned unless selected by {@link #names(Path, char, Consumer)} */
+        private String ref(char[] chars, int start, int end) {
+            return kind == Kind.NAMES
+                    ? NSNameScanner.ref(chars, start, end)
+                    : NSNameDictionary.getInstance().intern(chars, start, end);
+        }
+
+        private void emitRef(String name) {
+            if (!name.isEmpty()) handler.accept(name);
+        }
+
+        private void end() {
+            if (kind == Kind.TEXT) {
+                handler.accept(buffer.toString());
+                buffer.setLength(0);
+            } else if (kind == Kind.LIST) flush();
+            else if (kind == Kind.REFS || kind == Kind.NAMES) flushRef();
+            else if (kind == Kind.REFS_PARALLEL) {
+                char[] chars = new char[buffer.length()];
+                buffer.getChars(0, chars.length, chars, 0);
+                buffer.setLength(0);
+                buffer.trimToSize(); // do not hold the whole list between documents
+                NSNameScanner.scanParallel(chars, 0, chars.length, delimiter).forEach(handler);
+            }
+            else if (kind == Kind.END) handler.accept(null);
+        }
+
+        /** Emits buffered token, if not blank. */
+        private void flush() {
+            String token = buffer.toString().trim();
+            buffer.setLength(0);
+            if (!token.isEmpty()) handler.accept(token);
+        }
+    }
+}
@@ -17,7 +17,7 @@
 
 package com.git.ifly6.nsapi.builders;
 
-import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
@@ -32,10 +32,7 @@ public class NSNationQueryBuilder {
     private StringBuilder builder = new StringBuilder();
 
     public NSNationQueryBuilder(String nationName) {
-        builder.append(NSConnection.API_PREFIX);
-        builder.append(NSNationShard.NATION);
-        builder.append(nationName);
-        builder.append(NSConnection.QUERY_PREFIX);
+        builder.append(NSEndpoint.NATION.url(nationName));
     }
 
     public NSNationQueryBuilder addQuery(NSNationShard query) {
@@ -17,7 +17,7 @@
 
 package com.git.ifly6.nsapi.builders;
 
-import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 
 public class NSRegionQueryBuilder {
 
@@ -28,10 +28,7 @@ public class NSRegionQueryBuilder {
      * @param regionRef is the reference name of the region
      */
     public NSRegionQueryBuilder(String regionRef) {
-        builder.append(NSConnection.API_PREFIX);
-        builder.append(NSRegionShard.REGION);
-        builder.append(regionRef);
-        builder.append(NSConnection.QUERY_PREFIX);
+        builder.append(NSEndpoint.REGION.url(regionRef));
     }
 
     /**
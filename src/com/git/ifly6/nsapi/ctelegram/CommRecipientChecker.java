@@ -18,6 +18,8 @@
 package com.git.ifly6.nsapi.ctelegram;
 
 import com.git.ifly6.nsapi.NSNation;
+import com.git.ifly6.nsapi.NSPriority;
+import com.git.ifly6.nsapi.builders.NSNationShard;
 import com.git.ifly6.nsapi.ctelegram.io.cache.CommNationCache;
 import com.git.ifly6.nsapi.telegram.JTelegramType;
 
@@ -27,19 +29,35 @@ import com.git.ifly6.nsapi.telegram.JTelegramType;
  */
 public class CommRecipientChecker {
 
+    /** Shards needed to check any telegram type; both are loaded together, as they cost one request either way. */
+    private static final NSNationShard[] SHARDS = {NSNationShard.CAN_RECRUIT, NSNationShard.CAN_CAMPAIGN};
+
     /**
      * Does the recipient accept our telegram? If we are recruiting and nation is not recruitable, return {@code false}.
      * If campaigning and nation is not campaign-able, return {@code false}. Otherwise, return true. Values are cached
-     * in {@link CommNationCache}.
+     * in {@link CommNationCache}, and only the telegram flags are loaded. Lookups are made at
+     * {@link NSPriority#SEND_CRITICAL} priority, as the sender waits on them before its next telegram. While offline,
+     * cached flags of any age are used.
      * @param r recipient to check
      * @param t {@link JTelegramType} to check
      * @return true if recipient accepts telegram
      * @throws NSNation.NSNoSuchNationException if recipient does not exist
      */
     public static boolean doesRecipientAccept(String r, JTelegramType t) {
-        NSNation n = CommNationCache.getInstance().lookupObject(r); // always load, helps to deal with CTE nations
+        CommNationCache cache = CommNationCache.getInstance();
+        NSNation n = NSPriority.SEND_CRITICAL.call( // always load, helps to deal with CTE nations
+                () -> cache.lookupShards(r, cache.getMaximumAge(), SHARDS));
         if (t == JTelegramType.RECRUIT) return n.isRecruitable();
         if (t == JTelegramType.CAMPAIGN) return n.isCampaignable();
         return true; // default
     }
+
+    /**
+     * @param r recipient to check
+     * @return true if {@link #doesRecipientAccept(String, JTelegramType)} would not need to contact the API
+     */
+    public static boolean isCached(String r) {
+        CommNationCache cache = CommNationCache.getInstance();
+        return cache.isCached(r, cache.getMaximumAge(), SHARDS);
+    }
 }
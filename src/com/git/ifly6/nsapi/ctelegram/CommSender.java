@@ -18,6 +18,8 @@
 package com.git.ifly6.nsapi.ctelegram;
 
 import com.git.ifly6.nsapi.NSIOException;
+import com.git.ifly6.nsapi.NSNameSet;
+import com.git.ifly6.nsapi.NSRetryPolicy;
 import com.git.ifly6.nsapi.NSNation;
 import com.git.ifly6.nsapi.ctelegram.io.CommFormatter;
 import com.git.ifly6.nsapi.ctelegram.io.NSTGSettingsException;
@@ -32,11 +34,11 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -77,13 +79,15 @@ public class CommSender {
     /**
      * First-in-first-out send queue.
      */
-    private final Queue<String> sendQueue = new LinkedList<>();
+    private final Deque<String> sendQueue = new LinkedList<>();
+    private final NSNameSet queued = new NSNameSet(); // names in send queue, for constant time membership tests
 
     /**
-     * Recipients to which the telegram has already been sent are put in the sent list.
+     * Recipients to which the telegram has already been sent are put in the sent list. Skipped recipients need no
+     * order, so are held by identifier.
      */
     private Set<String> sentList = new LinkedHashSet<>(); // ordered
-    private Set<String> skipList = new LinkedHashSet<>();
+    private Set<String> skipList = new NSNameSet();
 
     /**
      * Constructs a {@link CommSender}.
@@ -117,8 +121,9 @@ public class CommSender {
 
         int recipientsAdded = 0;
         for (String s : recipients) {
-            if (!sendQueue.contains(s) && !sentList.contains(s)) {  // prevent double-queueing
+            if (!queued.contains(s) && !sentList.contains(s)) {  // prevent double-queueing
                 sendQueue.add(s);
+                queued.add(s);
                 recipientsAdded++;
                 LOGGER.finest(String.format("Fed queue element %s", s));
             }
@@ -157,12 +162,23 @@ public class CommSender {
         String recipient = sendQueue.poll();
         if (recipient == null)
             return; // do nothing but throw no error; this is possible when the event monitored hasn't happened yet
+        queued.remove(recipient);
 
         // if we have a recipient...
         LOGGER.info(String.format("Got recipient %s from queue", recipient));
         boolean acceptsType;
         try {
-            acceptsType = CommRecipientChecker.doesRecipientAccept(recipient, telegramType);
+            try {
+                acceptsType = CommRecipientChecker.doesRecipientAccept(recipient, telegramType);
+            } catch (NSIOException e) {
+                if (!NSRetryPolicy.isTransient(e)) throw e;
+                // API unavailable even after retries; keep recipient and try again next round, not stop the campaign
+                LOGGER.log(Level.WARNING, String.format("Cannot check recipient '%s' now; will try again next round",
+                        recipient), e);
+                sendQueue.addFirst(recipient);
+                queued.add(recipient);
+                return;
+            }
             boolean alreadyProcessed = processListsContain(recipient);
             if (!acceptsType || alreadyProcessed)
                 try {
@@ -18,41 +18,44 @@
 package com.git.ifly6.nsapi.ctelegram.io;
 
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 import com.git.ifly6.nsapi.NSIOException;
+import com.git.ifly6.nsapi.NSXMLSelector;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
-import com.jcabi.xml.XML;
-import com.jcabi.xml.XMLDocument;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
 public class CommHappenings {
 
-    private static final String HAPPENINGS_URL = NSConnection.API_PREFIX
-            + "q=happenings;filter=law+change+dispatch+rmb+embassy+admin+vote+resolution+member";
     private static final Pattern PATTERN = Pattern.compile("(?<=@@).*?(?=@@)");
+    private static final NSXMLSelector.Path EVENT = NSXMLSelector.Path.compile("/WORLD/HAPPENINGS/EVENT");
+    private static final NSXMLSelector.Path TIMESTAMP = EVENT.resolve("TIMESTAMP");
+    private static final NSXMLSelector.Path TEXT = EVENT.resolve("TEXT");
 
     /** Gets list of nations appearing in happenings right now. */
     public static Map<String, Instant> getActiveNations() throws JTelegramException {
         try {
-            NSConnection connection = new NSConnection(HAPPENINGS_URL).connect();
-            XMLDocument xml = new XMLDocument(connection.getResponse());
-            List<XML> nodes = xml.nodes("/WORLD/HAPPENINGS/EVENT");
-
-            Map<String, Instant> map = new HashMap<>();
-            for (XML node : nodes) {
-                Instant theInstant = Instant.ofEpochSecond(Long.parseLong(node.xpath("TIMESTAMP/text()").get(0)));
-                PATTERN.matcher(node.xpath("TEXT/text()").get(0))
-                        .results()
-                        .map(MatchResult::group)
-                        .forEach(s -> map.put(s, theInstant));
-            }
-            return map;
+            return new NSConnection(NSEndpoint.HAPPENINGS.url()).parse(reader -> {
+                Map<String, Instant> map = new HashMap<>();
+                String[] current = new String[2]; // timestamp, text of event being read
+                new NSXMLSelector()
+                        .text(TIMESTAMP, t -> current[0] = t)
+                        .text(TEXT, t -> current[1] = t)
+                        .end(EVENT, () -> {
+                            Instant theInstant = Instant.ofEpochSecond(Long.parseLong(current[0]));
+                            PATTERN.matcher(current[1])
+                                    .results()
+                                    .map(MatchResult::group)
+                                    .forEach(s -> map.put(s, theInstant));
+                        })
+                        .parse(reader);
+                return map;
+            });
 
         } catch (IOException e) {
             throw new NSIOException("Encountered IO exception when getting active nations", e);
@@ -19,13 +19,14 @@ package com.git.ifly6.nsapi.ctelegram.io;
 
 import com.git.ifly6.nsapi.ApiUtils;
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 import com.git.ifly6.nsapi.NSIOException;
 import com.git.ifly6.nsapi.NSTimeStamped;
-import com.jcabi.xml.XML;
-import com.jcabi.xml.XMLDocument;
+import com.git.ifly6.nsapi.NSXMLSelector;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,6 +34,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -42,32 +44,32 @@ import java.util.stream.IntStream;
  */
 public class CommWorldAssembly {
 
+    private static final NSXMLSelector.Path RESOLUTION_ID = NSXMLSelector.Path.compile("/WA/RESOLUTION/ID");
+    private static final NSXMLSelector.Path PROPOSAL = NSXMLSelector.Path.compile("/WA/PROPOSALS/PROPOSAL");
+    private static final NSXMLSelector.Path APPROVALS = PROPOSAL.resolve("APPROVALS");
+
     private CommWorldAssembly() { }
 
     /** Formats URL to get information on the resolution. */
     private static String formatResolutionURL(Chamber c) {
-        return NSConnection.API_PREFIX
-                + MessageFormat.format("wa={0}&q=resolution", c.getCouncilCode());
+        return NSEndpoint.WA_RESOLUTION.url(Integer.toString(c.getCouncilCode()));
     }
 
     /** Formats URL for NS chamber vote; nation. */
     private static String formatNationsURL(Chamber c) {
-        return NSConnection.API_PREFIX
-                + MessageFormat.format("wa={0}&q=resolution+voters", c.getCouncilCode());
+        return NSEndpoint.WA_RESOLUTION_VOTERS.url(Integer.toString(c.getCouncilCode()));
     }
 
     /** Formats URL for NS chamber vote; delegates. */
     public static String formatDelegatesURL(Chamber c, Vote vote) {
         // https://www.nationstates.net/cgi-bin/api.cgi?wa=1&q=resolution+delvotes
-        return NSConnection.API_PREFIX
-                + MessageFormat.format("wa={0}&q=resolution+delvotes", c.getCouncilCode());
+        return NSEndpoint.WA_RESOLUTION_DELEGATE_VOTES.url(Integer.toString(c.getCouncilCode()));
     }
 
     /** Formats URL for NS chamber vote; delegates. */
     public static String formatProposalURL(Chamber c) {
         // https://www.nationstates.net/cgi-bin/api.cgi?wa=1&q=proposals
-        return NSConnection.API_PREFIX
-                + MessageFormat.format("wa={0}&q=proposals", c.getCouncilCode());
+        return NSEndpoint.WA_PROPOSALS.url(Integer.toString(c.getCouncilCode()));
     }
 
     /**
@@ -77,14 +79,17 @@ public class CommWorldAssembly {
     public static String getResolutionID(Chamber chamber) {
         try {
             NSConnection apiConnect = new NSConnection(formatResolutionURL(chamber));
-            XML xml = new XMLDocument(apiConnect.getResponse());
-            return xml.xpath("/WA/RESOLUTION/ID/text()").get(0);
+            String id = apiConnect.parse(reader -> {
+                String[] found = new String[1];
+                new NSXMLSelector().text(RESOLUTION_ID, i -> found[0] = i).parse(reader);
+                return found[0];
+            });
+            if (id == null)
+                throw new NoSuchProposalException(String.format("No resolution at vote in chamber %s", chamber));
+            return id;
 
         } catch (IOException e) {
             throw new NSIOException("Could not connect to NationStates API", e);
-
-        } catch (IndexOutOfBoundsException e) {
-            throw new NoSuchProposalException(String.format("No resolution at vote in chamber %s", chamber));
         }
     }
 
@@ -98,19 +103,23 @@ public class CommWorldAssembly {
     public static BothChamberVoters getVoters(Chamber chamber) {
         try {
             NSConnection apiConnect = new NSConnection(formatNationsURL(chamber));
-            XML xml = new XMLDocument(apiConnect.getResponse());
-            return new BothChamberVoters(
-                    xml.xpath("/WA/RESOLUTION/ID/text()").get(0),
-                    xml.xpath(MessageFormat.format("/WA/RESOLUTION/{0}/N/text()", Vote.FOR.getNationXMLTag())),
-                    xml.xpath(MessageFormat.format("/WA/RESOLUTION/{0}/N/text()",
-                            Vote.AGAINST.getNationXMLTag()))
-            );
+            return apiConnect.parse(reader -> {
+                String[] id = new String[1];
+                List<String> votersFor = new ArrayList<>();
+                List<String> votersAgainst = new ArrayList<>();
+                new NSXMLSelector()
+                        .text(RESOLUTION_ID, i -> id[0] = i)
+                        .text(Vote.FOR.voters, votersFor::add)
+                        .text(Vote.AGAINST.voters, votersAgainst::add)
+                        .parse(reader);
+
+                if (id[0] == null)
+                    throw new NoSuchProposalException(String.format("No proposal at vote in chamber %s", chamber));
+                return new BothChamberVoters(id[0], votersFor, votersAgainst);
+            });
 
         } catch (IOException e) {
             throw new NSIOException("Could not connect to NationStates API", e);
-
-        } catch (IndexOutOfBoundsException e) {
-            throw new NoSuchProposalException(String.format("No proposal at vote in chamber %s", chamber));
         }
     }
 
@@ -125,14 +134,15 @@ public class CommWorldAssembly {
     public static List<Delegate> getDelegates(Chamber chamber, Vote voting) {
         try {
             NSConnection apiConnect = new NSConnection(formatDelegatesURL(chamber, voting));
-            XML xml = new XMLDocument(apiConnect.getResponse());
-            List<String> delegates = xml.xpath(
-                    MessageFormat.format("/WA/RESOLUTION/{0}/DELEGATE/NATION/text()", // load all these values
-                            voting.getDelegateXMLTag())); // get elements voting this direction
-
-            List<String> votingWeights = xml.xpath(
-                    MessageFormat.format("/WA/RESOLUTION/{0}/DELEGATE/VOTES/text()", // load all these values
-                            voting.getDelegateXMLTag())); // get elements voting this direction
+            List<String> delegates = new ArrayList<>();
+            List<String> votingWeights = new ArrayList<>();
+            apiConnect.parse(reader -> {
+                new NSXMLSelector()
+                        .text(voting.delegateNames, delegates::add) // load all these values
+                        .text(voting.delegateVotes, votingWeights::add)
+                        .parse(reader);
+                return null;
+            });
 
             if (delegates.size() != votingWeights.size())
                 throw new UnsupportedOperationException("Error in NS API; every delegate must have a voting weight!");
@@ -146,9 +156,6 @@ public class CommWorldAssembly {
 
         } catch (IOException e) {
             throw new NSIOException("Could not connect to NationStates API", e);
-
-        } catch (IndexOutOfBoundsException e) {
-            throw new NoSuchProposalException(String.format("No proposal at vote in chamber %s", chamber));
         }
     }
 
@@ -175,23 +182,44 @@ public class CommWorldAssembly {
      */
     public static List<Proposal> getAllProposals() {
         try {
-            List<Proposal> proposals = new ArrayList<>();
-            for (Chamber c : Chamber.values()) {
-                XML xml = new XMLDocument(new NSConnection(formatProposalURL(c)).getResponse());
-                for (XML xmlNode : xml.nodes("/WA/PROPOSALS/PROPOSAL")) {
-                    String thisProposalID = xmlNode.node().getAttributes().getNamedItem("id").getTextContent();
-                    List<String> approvers = ApiUtils.ref(Arrays.asList(
-                            xmlNode.nodes("APPROVALS").get(0).node().getTextContent().split(":")));
-                    proposals.add(new Proposal(thisProposalID, approvers));
-                }
-            }
-            return proposals;
+            return NSConnection.await(getAllProposalsAsync());
 
         } catch (IOException e) {
             throw new NSIOException("Could not connect to NationStates API", e);
         }
     }
 
+    /**
+     * Asynchronous version of {@link #getAllProposals()}. Chambers are queried concurrently.
+     * @return future completing with list of {@link Proposal}s, in chamber order
+     */
+    public static CompletableFuture<List<Proposal>> getAllProposalsAsync() {
+        List<CompletableFuture<List<Proposal>>> futures = Arrays.stream(Chamber.values())
+                .map(c -> new NSConnection(formatProposalURL(c)).parseAsync(CommWorldAssembly::parseProposals))
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList()));
+    }
+
+    /** Streams proposals from the response to a proposals query for one chamber. */
+    private static List<Proposal> parseProposals(XMLStreamReader reader) throws XMLStreamException {
+        List<Proposal> proposals = new ArrayList<>();
+        String[] id = new String[1];
+        List<String> approvers = new ArrayList<>();
+        new NSXMLSelector()
+                .attribute(PROPOSAL, "id", i -> id[0] = i)
+                .refs(APPROVALS, ':', approvers::add)
+                .end(PROPOSAL, () -> {
+                    proposals.add(new Proposal(id[0], new ArrayList<>(approvers)));
+                    approvers.clear();
+                })
+                .parse(reader);
+        return proposals;
+    }
+
     /** Record for delegate names and weights. */
     public static class Delegate {
         public final String name;
@@ -217,9 +245,17 @@ public class CommWorldAssembly {
         AGAINST("VOTES_AGAINST");
 
         private String nationXMLTag;
+        private final NSXMLSelector.Path voters;
+        private final NSXMLSelector.Path delegateNames;
+        private final NSXMLSelector.Path delegateVotes;
 
         Vote(String nationXMLTag) {
             this.nationXMLTag = nationXMLTag;
+            this.voters = NSXMLSelector.Path.compile("/WA/RESOLUTION/" + nationXMLTag + "/N");
+            NSXMLSelector.Path delegates =
+                    NSXMLSelector.Path.compile("/WA/RESOLUTION/DEL" + nationXMLTag + "/DELEGATE");
+            this.delegateNames = delegates.resolve("NATION");
+            this.delegateVotes = delegates.resolve("VOTES");
         }
 
         public String getNationXMLTag() {
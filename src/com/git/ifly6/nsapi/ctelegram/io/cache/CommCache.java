@@ -17,6 +17,9 @@
 package com.git.ifly6.nsapi.ctelegram.io.cache;
 
 import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSNameDictionary;
+import com.git.ifly6.nsapi.NSOfflineReport;
 import com.git.ifly6.nsapi.NSTimeStamped;
 
 import java.time.Duration;
@@ -28,6 +31,10 @@ import java.util.logging.Logger;
 /**
  * Creates a high-level caching framework for objects which can be timestamped. Also implicitly requires, due to
  * {@link #createNewObject(String)} that the key (a string) be mappable 1:1 to the object.
+ * <p>
+ * While {@link NSConnection#isOffline() offline}, cached objects are returned whatever their age, and their age is
+ * recorded in {@link NSOfflineReport}. Nothing is purged, as stale objects are then all there is.
+ * </p>
  * @param <T> is time-stamped object, ie implements {@link NSTimeStamped}.
  * @since version 13
  */
@@ -61,10 +68,11 @@ public abstract class CommCache<T extends NSTimeStamped> {
     public void purge() { purge(this.maximumAge); }
 
     /**
-     * Purges items older than a certain age
+     * Purges items older than a certain age. Does nothing while offline.
      * @param age required for purge
      */
     public void purge(Duration age) {
+        if (NSConnection.isOffline()) return;
         Instant cutoff = Instant.now().minus(age);
         cache.entrySet().removeIf(entry -> entry.getValue().timestamp() == null
                 || entry.getValue().timestamp().isBefore(cutoff));
@@ -93,11 +101,38 @@ public abstract class CommCache<T extends NSTimeStamped> {
      */
     private void cacheObject(String s) {
         T object = createNewObject(s);
-        T oldObject = cache.put(s, object);
+        T oldObject = cache.put(NSNameDictionary.getInstance().intern(s), object); // key shared with recipients
         if (object != oldObject) // if they have different REFERENCES, they must be different objects
             LOGGER.fine(String.format("overwrote cache for element <%s>", s));
     }
 
+    /**
+     * @param s is the ref name of the object
+     * @return cached object, without loading it; null if not cached
+     * @since version 13
+     */
+    protected T getCached(String s) {
+        return cache.get(ApiUtils.ref(s));
+    }
+
+    /**
+     * Puts object into cache as is, for subclasses which load objects themselves.
+     * @param s      is the ref name of the object
+     * @param object to cache
+     * @since version 13
+     */
+    protected void putCached(String s, T object) {
+        cache.put(NSNameDictionary.getInstance().intern(ApiUtils.ref(s)), object);
+    }
+
+    /**
+     * Runs {@link #finaliser}, if any.
+     * @since version 13
+     */
+    protected void runFinaliser() {
+        if (hasFinaliser()) finaliser.run();
+    }
+
     /** @returns {@code true} if {@link #finaliser} is not null */
     public boolean hasFinaliser() {
         return finaliser != null;
@@ -111,6 +146,35 @@ public abstract class CommCache<T extends NSTimeStamped> {
         this.finaliser = finaliser;
     }
 
+    /**
+     * Determines whether an object is cached and no older than an age; ie, whether
+     * {@link #lookupObject(String, Duration)} would return it without loading it again. Does not load anything.
+     * @param s   is the ref name of the object
+     * @param age which the cached object must not exceed; capped by {@link #maximumAge}
+     * @return true if cached and fresh enough
+     * @since version 13
+     */
+    public boolean isCached(String s, Duration age) {
+        T n = cache.get(ApiUtils.ref(s));
+        if (n == null || n.timestamp() == null) return false;
+        age = age.compareTo(maximumAge) > 0 ? maximumAge : age;
+        return !n.timestamp().isBefore(Instant.now().minus(age));
+    }
+
+    /**
+     * Records age of cached data served while offline.
+     * @param asOf time data was loaded
+     * @since version 13
+     */
+    protected void recordOffline(Instant asOf) {
+        NSOfflineReport.getInstance().record(getClass().getSimpleName(), asOf);
+    }
+
+    /** @return {@link #maximumAge}, the age beyond which cached objects are always loaded again */
+    public Duration getMaximumAge() {
+        return maximumAge;
+    }
+
     /**
      * Gets information for an object. If it does not exist, adds that object to the cache. If the cached information is
      * older than {@link #maximumAge}, it updates the cache.
@@ -123,7 +187,7 @@ public abstract class CommCache<T extends NSTimeStamped> {
 
     /**
      * Gets information for an object. If it does not exist, adds that object to the cache. If the cached information is
-     * older than requested, it updates the cache.
+     * older than requested, it updates the cache; unless offline, when any cached object is returned.
      * @param s         is the ref name of the object to get data for
      * @param orElseAge calls for a new object if the cached version is older than this age; capped by
      *                  {@link #maximumAge}
@@ -133,9 +197,15 @@ public abstract class CommCache<T extends NSTimeStamped> {
         s = ApiUtils.ref(s); // normalise inputs
         orElseAge = (orElseAge.compareTo(maximumAge)) > 0 ? maximumAge : orElseAge;
 
+        T cached = cache.get(s);
+        if (NSConnection.isOffline() && cached != null && cached.timestamp() != null) {
+            recordOffline(cached.timestamp());
+            return cached;
+        }
+
         T n = getOrCacheObject(s);
         Instant cutoff = Instant.now().minus(orElseAge);
-        if (n.timestamp().isAfter(cutoff))
+        if (n.timestamp() == null || n.timestamp().isBefore(cutoff))
             cacheObject(s); // update cache
 
         if (hasFinaliser()) finaliser.run();
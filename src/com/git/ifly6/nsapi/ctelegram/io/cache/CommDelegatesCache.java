@@ -48,7 +48,7 @@ public class CommDelegatesCache extends CommCache<CommDelegatesCache.Delegates>
 
     private static final Logger LOGGER = Logger.getLogger(CommDelegatesCache.class.getName());
     public static final String DELEGATE_KEY = "__delegates__";
-    private static final Path LOCATION = APP_SUPPORT.resolve("nation_cache.json");
+    private static final Path LOCATION = APP_SUPPORT.resolve("delegates_cache.json");
     public static final Duration CACHE_DURATION = Duration.ofMinutes(30);
 
     private static CommDelegatesCache instance;
@@ -60,7 +60,7 @@ public class CommDelegatesCache extends CommCache<CommDelegatesCache.Delegates>
                 Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
                 gson.toJson(this, bw);
             } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, "Unable to save nation cache!", e);
+                LOGGER.log(Level.SEVERE, "Unable to save delegates cache!", e);
             }
         });
     }
@@ -69,6 +69,7 @@ public class CommDelegatesCache extends CommCache<CommDelegatesCache.Delegates>
         try {
             CommDelegatesCache c = new Gson().fromJson(
                     Files.newBufferedReader(LOCATION), CommDelegatesCache.class);
+            if (c == null) return new CommDelegatesCache(); // empty file
             c.purge();
             return c;
 
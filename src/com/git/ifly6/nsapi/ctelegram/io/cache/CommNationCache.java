@@ -16,7 +16,9 @@
  */
 package com.git.ifly6.nsapi.ctelegram.io.cache;
 
+import com.git.ifly6.nsapi.NSConnection;
 import com.git.ifly6.nsapi.NSNation;
+import com.git.ifly6.nsapi.builders.NSNationShard;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -27,7 +29,9 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +39,11 @@ import static com.git.ifly6.CommuniqueApplication.APP_SUPPORT;
 
 /**
  * Caches information about nations. Expiration duration is {@link CommCache#DEFAULT_EXPIRATION_DURATION}.
+ * <p>
+ * Records may be partial. Callers needing only some shards of a nation should use
+ * {@link #lookupShards(String, Duration, NSNationShard...)}, which loads only those shards and merges them into the
+ * cached record.
+ * </p>
  * @since version 13
  */
 public class CommNationCache extends CommCache<NSNation> {
@@ -60,6 +69,7 @@ public class CommNationCache extends CommCache<NSNation> {
     private static CommNationCache makeInstance() {
         try {
             CommNationCache c = new Gson().fromJson(Files.newBufferedReader(LOCATION), CommNationCache.class);
+            if (c == null) return new CommNationCache(); // empty file
             c.purge();
             return c;
 
@@ -86,6 +96,78 @@ public class CommNationCache extends CommCache<NSNation> {
         return super.lookupObject(s);
     }
 
+    /**
+     * Gets nation with every shard in {@link NSNation#ALL_SHARDS} no older than age, loading only those which are.
+     * @param s         is the ref name of the nation
+     * @param orElseAge beyond which shards are loaded again; capped by {@link #getMaximumAge()}
+     * @return nation
+     * @throws NSNation.NSNoSuchNationException if nation does not exist
+     */
+    @Override
+    public NSNation lookupObject(String s, Duration orElseAge) {
+        return lookupShards(s, orElseAge, NSNation.ALL_SHARDS.toArray(new NSNationShard[0]));
+    }
+
+    /**
+     * Gets nation with the shards given no older than age. Shards which are not cached, or are older, are loaded and
+     * merged into the cached record; other shards are neither loaded nor updated. A nation not cached at all is
+     * loaded with only the shards given. While offline, cached shards are used whatever their age.
+     * @param s      is the ref name of the nation
+     * @param age    beyond which shards are loaded again; capped by {@link #getMaximumAge()}
+     * @param shards needed
+     * @return nation, with at least the shards given loaded
+     * @throws NSNation.NSNoSuchNationException if nation does not exist
+     * @since version 13
+     */
+    public NSNation lookupShards(String s, Duration age, NSNationShard... shards) {
+        NSNation cached = getCached(s);
+        NSNation nation = cached == null ? new NSNation(s) : cached;
+        boolean offline = NSConnection.isOffline();
+        NSNationShard[] stale = Arrays.stream(shards)
+                .filter(shard -> offline ? nation.timestamp(shard) == null : !isFresh(nation, shard, age))
+                .toArray(NSNationShard[]::new);
+        if (offline && cached != null && stale.length == 0) {
+            Arrays.stream(shards).map(nation::timestamp).min(Instant::compareTo)
+                    .ifPresent(this::recordOffline);
+            return nation;
+        }
+        if (stale.length > 0 || !nation.hasData()) {
+            nation.populateData(stale);
+            putCached(s, nation);
+        }
+        runFinaliser();
+        return nation;
+    }
+
+    /**
+     * @param s   is the ref name of the nation
+     * @param age which cached shards must not exceed; capped by {@link #getMaximumAge()}
+     * @return true if every shard in {@link NSNation#ALL_SHARDS} is cached and fresh enough
+     */
+    @Override
+    public boolean isCached(String s, Duration age) {
+        return isCached(s, age, NSNation.ALL_SHARDS.toArray(new NSNationShard[0]));
+    }
+
+    /**
+     * Determines whether {@link #lookupShards(String, Duration, NSNationShard...)} would load anything.
+     * @param s      is the ref name of the nation
+     * @param age    which cached shards must not exceed; capped by {@link #getMaximumAge()}
+     * @param shards needed
+     * @return true if every shard given is cached and fresh enough
+     * @since version 13
+     */
+    public boolean isCached(String s, Duration age, NSNationShard... shards) {
+        NSNation nation = getCached(s);
+        return nation != null && Arrays.stream(shards).allMatch(shard -> isFresh(nation, shard, age));
+    }
+
+    private boolean isFresh(NSNation nation, NSNationShard shard, Duration age) {
+        if (age.compareTo(getMaximumAge()) > 0) age = getMaximumAge();
+        Instant loaded = nation.timestamp(shard);
+        return loaded != null && !loaded.isBefore(Instant.now().minus(age));
+    }
+
     /** @throws NSNation.NSNoSuchNationException from {@link NSNation#populateData()} */
     @Override
     protected NSNation createNewObject(String s) { return new NSNation(s).populateData(); }
@@ -18,6 +18,7 @@
 package com.git.ifly6.nsapi.ctelegram.monitors;
 
 import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSPriority;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -58,7 +59,8 @@ public abstract class CommUpdatableMonitor implements CommMonitor {
 
     /**
      * Actual implementation of {@link #update()}. Prior to calling this method, the monitor makes sure that it is
-     * not exhausted. It then calls the update action. After updating, it saves the time of completion as
+     * not exhausted. It then calls the update action, whose API requests are made at
+     * {@link NSPriority#BACKGROUND_POLL} priority. After updating, it saves the time of completion as
      * {@link #lastUpdate}.
      * @see #update()
      */
@@ -69,7 +71,7 @@ public abstract class CommUpdatableMonitor implements CommMonitor {
             throw new ExhaustedException(String.format("%s (%s) is exhausted",
                     this.getClass().getSimpleName(), this.toString()
             ));
-        updateAction();
+        NSPriority.BACKGROUND_POLL.run(this::updateAction);
         lastUpdate = Instant.now();
         return this;
     }
@@ -17,6 +17,7 @@
 
 package com.git.ifly6.nsapi.ctelegram.monitors.updaters;
 
+import com.git.ifly6.nsapi.NSNameSet;
 import com.git.ifly6.nsapi.ctelegram.io.CommParseException;
 import com.git.ifly6.nsapi.ctelegram.io.CommWorldAssembly;
 import com.git.ifly6.nsapi.ctelegram.io.cache.CommPermanentCache;
@@ -24,7 +25,6 @@ import com.git.ifly6.nsapi.ctelegram.monitors.CommMonitor;
 import com.git.ifly6.nsapi.ctelegram.monitors.CommUpdatableMonitor;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.OptionalLong;
 import java.util.Set;
@@ -45,8 +45,8 @@ public class CommApprovalMonitor extends CommUpdatableMonitor implements CommMon
     private final String proposalID;
     private final Action action;
 
-    private Set<String> allApproversEver = new HashSet<>();
-    private Set<String> currentApprovers = new HashSet<>();
+    private Set<String> allApproversEver = new NSNameSet();
+    private Set<String> currentApprovers = new NSNameSet();
 
     /** Creates monitor to monitor provided proposal ID for specified action. */
     private CommApprovalMonitor(String proposalID, Action action) {
@@ -97,7 +97,7 @@ public class CommApprovalMonitor extends CommUpdatableMonitor implements CommMon
     @Override
     protected void updateAction() {
         try {
-            currentApprovers = new HashSet<>(CommWorldAssembly.getApprovers(proposalID));
+            currentApprovers = new NSNameSet(CommWorldAssembly.getApprovers(proposalID));
             allApproversEver.addAll(currentApprovers); // set deals with duplicates automatically
         } catch (CommWorldAssembly.NoSuchProposalException e) { exhausted = true; }
     }
@@ -121,7 +121,7 @@ public class CommApprovalMonitor extends CommUpdatableMonitor implements CommMon
             public Set<String> find(Set<String> current, Set<String> allApproversEver) {
                 return allApproversEver.stream()
                         .filter(s -> !current.contains(s)) // every approver ever who is not in current are removed
-                        .collect(Collectors.toSet());
+                        .collect(Collectors.toCollection(NSNameSet::new));
                 // elements in before that are not in afterSet
                 // return new ArrayList<>(Sets.difference(new HashSet<>(before), new HashSet<>(after)));
             }
@@ -17,6 +17,7 @@
 
 package com.git.ifly6.nsapi.ctelegram.monitors.updaters;
 
+import com.git.ifly6.nsapi.NSNameSet;
 import com.git.ifly6.nsapi.NSRegion;
 import com.git.ifly6.nsapi.ctelegram.io.CommParseException;
 import com.git.ifly6.nsapi.ctelegram.io.cache.CommPermanentCache;
@@ -25,7 +26,6 @@ import com.git.ifly6.nsapi.ctelegram.monitors.CommUpdatableMonitor;
 import com.google.common.collect.EvictingQueue;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.OptionalLong;
@@ -92,7 +92,7 @@ public class CommMovementMonitor extends CommUpdatableMonitor implements CommMon
             throw new IllegalArgumentException("job started without specifying region");
 
         inhabitantsBefore = inhabitantsNow;
-        Set<String> newInhabitants = new HashSet<>();
+        Set<String> newInhabitants = new NSNameSet();
         for (final String regionName : regions)
             newInhabitants.addAll(
                     new NSRegion(regionName).populateData().getRegionMembers()
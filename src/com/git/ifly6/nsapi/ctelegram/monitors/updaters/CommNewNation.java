@@ -18,16 +18,17 @@
 package com.git.ifly6.nsapi.ctelegram.monitors.updaters;
 
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 import com.git.ifly6.nsapi.NSTimeStamped;
-import com.jcabi.xml.XMLDocument;
+import com.git.ifly6.nsapi.NSXMLSelector;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static com.git.ifly6.nsapi.ApiUtils.ref;
 
@@ -35,6 +36,11 @@ public class CommNewNation implements NSTimeStamped {
 
     public static final Set<String> sinkers = Set.of("lazarus", "balder", "osiris");
 
+    private static final NSXMLSelector.Path NEW_NATION =
+            NSXMLSelector.Path.compile("/WORLD/NEWNATIONDETAILS/NEWNATION");
+    private static final NSXMLSelector.Path REGION = NEW_NATION.resolve("REGION");
+    private static final NSXMLSelector.Path FOUNDED_TIME = NEW_NATION.resolve("FOUNDEDTIME");
+
     public final String name;
     public final String foundingRegion;
     public final Instant timestamp;
@@ -75,23 +81,22 @@ public class CommNewNation implements NSTimeStamped {
     }
 
     public static List<CommNewNation> getNewNations() throws IOException {
-        final NSConnection conn = new NSConnection("https://www.nationstates.net/cgi-bin/api.cgi?q=newnationdetails");
-        XMLDocument xml = new XMLDocument(conn.connect().getResponse());
-
-        // ln = list name; lr = list region; lf = list founding time
-        List<String> ln = xml.xpath("/WORLD/NEWNATIONDETAILS/NEWNATION/@name");
-        List<String> lr = xml.xpath("/WORLD/NEWNATIONDETAILS/NEWNATION/REGION/text()");
-        List<Instant> lf = xml.xpath("/WORLD/NEWNATIONDETAILS/NEWNATION/FOUNDEDTIME/text()").stream()
-                .map(Long::parseLong)
-                .map(Instant::ofEpochSecond)
-                .collect(Collectors.toList());
-
-        // create objects
-        List<CommNewNation> toReturn = new ArrayList<>(ln.size());
-        for (int i = 0; i < ln.size(); i++)
-            toReturn.add(new CommNewNation(ln.get(i), lr.get(i), lf.get(i)));
-
-        return toReturn;
+        final NSConnection conn = new NSConnection(NSEndpoint.NEW_NATION_DETAILS.url());
+        return conn.parse(reader -> {
+            List<CommNewNation> toReturn = new ArrayList<>();
+            String[] current = new String[3]; // name, region, founding time of nation being read
+            new NSXMLSelector()
+                    .attribute(NEW_NATION, "name", n -> current[0] = n)
+                    .text(REGION, r -> current[1] = r)
+                    .text(FOUNDED_TIME, f -> current[2] = f)
+                    .end(NEW_NATION, () -> {
+                        toReturn.add(new CommNewNation(current[0], current[1],
+                                Instant.ofEpochSecond(Long.parseLong(current[2]))));
+                        Arrays.fill(current, null);
+                    })
+                    .parse(reader);
+            return toReturn;
+        });
     }
 
 }
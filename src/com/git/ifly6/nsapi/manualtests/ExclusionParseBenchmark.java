@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi.manualtests;
+
+import com.git.ifly6.communique.data.Communique7Parser;
+import com.git.ifly6.communique.data.CommuniqueRecipient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Compares applying a long running Marconi configuration token by token against {@link Communique7Parser#apply(List)},
+ * which applies runs of {@code -nation:} exclusions together. The configuration has {@value #LINES} lines: nations to
+ * send to, followed by an exclusion for each nation already sent to, as Marconi appends them.
+ */
+public class ExclusionParseBenchmark {
+
+    private static final int LINES = 50_000;
+    private static final int NATIONS = 20_000;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        List<String> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < NATIONS; i++) lines.add("nation:nation_" + i);
+        for (int i = 0; lines.size() < LINES; i++) lines.add("-nation:nation_" + (i * 7 % (NATIONS * 2)));
+        List<CommuniqueRecipient> tokens = CommuniqueRecipient.parseRecipients(lines);
+        System.out.printf("Configuration of %d lines, %d exclusions%n", LINES, LINES - NATIONS);
+
+        Callable<List<String>> oneByOne = () -> {
+            Communique7Parser parser = new Communique7Parser();
+            for (CommuniqueRecipient token : tokens) parser.apply(token);
+            return parser.listRecipients();
+        };
+        Callable<List<String>> batched = () -> new Communique7Parser().apply(tokens).listRecipients();
+
+        List<String> expected = measure("token by token", oneByOne, 0, 1);
+        if (!expected.equals(measure("batched", batched, WARMUP, RUNS)))
+            throw new IllegalStateException("Batched parse gave different recipients");
+    }
+
+    private static List<String> measure(String name, Callable<List<String>> parse, int warmup, int runs)
+            throws Exception {
+        for (int i = 0; i < warmup; i++) parse.call();
+        List<String> result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) result = parse.call();
+        System.out.printf("%-15s %10.1f ms/parse, %d recipients%n", name, (System.nanoTime() - start) / 1e6 / runs,
+                result.size());
+        return result;
+    }
+}
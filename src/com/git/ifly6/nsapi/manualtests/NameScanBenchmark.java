@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi.manualtests;
+
+import com.git.ifly6.nsapi.NSNameScanner;
+import com.git.ifly6.nsapi.NSXMLSelector;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * Compares splitting a {@code q=nations} sized list into reference names by {@code split}, {@code trim},
+ * {@code toLowerCase}, and a regular expression against {@link NSNameScanner}, both alone and streamed through
+ * {@link NSXMLSelector}. Names are mixed case with spaces, as for lists typed by users, so none skip normalisation.
+ * Reports mean time and peak heap above the retained input. Run with a fixed heap, eg {@code -Xmx1g}.
+ */
+public class NameScanBenchmark {
+
+    private static final int NATIONS = 300_000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NATIONS; i++) sb.append(i == 0 ? "" : ", ").append("Nation of ").append(i);
+        String list = sb.toString();
+        char[] chars = list.toCharArray();
+        byte[] document = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<WORLD><NATIONS>" + list
+                + "</NATIONS></WORLD>").getBytes(StandardCharsets.UTF_8);
+        System.out.printf("List of %d nations, %.1f MB%n", NATIONS, list.length() / 1e6);
+
+        Callable<List<String>> regex = () -> {
+            List<String> nations = new ArrayList<>();
+            for (String s : list.split(","))
+                if (!s.trim().isEmpty()) nations.add(WHITESPACE.matcher(s.trim().toLowerCase()).replaceAll("_"));
+            return nations;
+        };
+        Callable<List<String>> scan = () -> {
+            List<String> nations = new ArrayList<>();
+            NSNameScanner.scan(chars, 0, chars.length, ',', nations::add);
+            return nations;
+        };
+        Callable<List<String>> parallel = () -> NSNameScanner.scanParallel(chars, 0, chars.length, ',');
+        Callable<List<String>> selectorList = () -> {
+            List<String> nations = new ArrayList<>();
+            new NSXMLSelector()
+                    .list("/WORLD/NATIONS", ',', s -> nations.add(WHITESPACE.matcher(s.toLowerCase()).replaceAll("_")))
+                    .parse(new ByteArrayInputStream(document), null);
+            return nations;
+        };
+        Callable<List<String>> selectorRefs = () -> {
+            List<String> nations = new ArrayList<>();
+            new NSXMLSelector()
+                    .refs("/WORLD/NATIONS", ',', nations::add)
+                    .parse(new ByteArrayInputStream(document), null);
+            return nations;
+        };
+        Callable<List<String>> selectorParallel = () -> {
+            List<String> nations = new ArrayList<>();
+            new NSXMLSelector()
+                    .refsParallel(NSXMLSelector.Path.compile("/WORLD/NATIONS"), ',', nations::add)
+                    .parse(new ByteArrayInputStream(document), null);
+            return nations;
+        };
+
+        List<String> expected = regex.call();
+        measure("split + regex", regex, expected);
+        measure("scan", scan, expected);
+        measure("scan parallel", parallel, expected);
+        measure("list + regex", selectorList, expected);
+        measure("refs", selectorRefs, expected);
+        measure("refs parallel", selectorParallel, expected);
+    }
+
+    private static void measure(String name, Callable<List<String>> scanner, List<String> expected)
+            throws Exception {
+        if (!expected.equals(scanner.call())) throw new IllegalStateException(name + " gave different names");
+        for (int i = 0; i < WARMUP; i++) scanner.call();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) scanner.call();
+        double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+
+        System.out.printf("%-14s %8.1f ms/list %8.1f MB peak heap%n", name, millis, peakHeap(scanner) / 1e6);
+    }
+
+    /** @return peak heap used during one scan, above heap used before it */
+    private static long peakHeap(Callable<List<String>> scanner) throws Exception {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pools.add(pool);
+
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+        }
+
+        scanner.call();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) peak += pool.getPeakUsage().getUsed();
+        return peak - before;
+    }
+}
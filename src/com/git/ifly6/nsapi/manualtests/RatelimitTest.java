@@ -18,6 +18,7 @@
 package com.git.ifly6.nsapi.manualtests;
 
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 import com.git.ifly6.nsapi.NSIOException;
 
 import java.io.IOException;
@@ -57,7 +58,7 @@ public class RatelimitTest {
         for (int i = 0; i < MAX; i++) {
 
             try {
-                NSConnection connection = new NSConnection(NSConnection.API_PREFIX + "q=newnations");
+                NSConnection connection = new NSConnection(NSEndpoint.NEW_NATIONS.url());
                 connection.connect();
             } catch (NSIOException e) {
                 // pass
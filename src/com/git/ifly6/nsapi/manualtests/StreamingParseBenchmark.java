@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi.manualtests;
+
+import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSXMLSelector;
+import com.jcabi.xml.XMLDocument;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Compares parsing a {@code q=nations} sized response by string, DOM, and XPath against streaming it through
+ * {@link NSXMLSelector}. Both start from the raw bytes, as delivered by the network. Reports mean parse time and peak
+ * heap above the retained input. Run with a fixed heap, eg {@code -Xmx1g}, for comparable figures.
+ */
+public class StreamingParseBenchmark {
+
+    private static final int NATIONS = 300_000;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<WORLD><NATIONS>");
+        for (int i = 0; i < NATIONS; i++) sb.append(i == 0 ? "" : ",").append("Nation ").append(i);
+        sb.append("</NATIONS></WORLD>");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        System.out.printf("Document of %d nations, %.1f MB%n", NATIONS, bytes.length / 1e6);
+
+        Callable<List<String>> dom = () -> {
+            String response = new String(bytes, StandardCharsets.UTF_8);
+            String nations = new XMLDocument(response).xpath("/WORLD/NATIONS/text()").get(0);
+            return ApiUtils.ref(Arrays.asList(nations.split(",")));
+        };
+        Callable<List<String>> stax = () -> {
+            List<String> nations = new ArrayList<>();
+            new NSXMLSelector()
+                    .list("/WORLD/NATIONS", ',', s -> nations.add(ApiUtils.ref(s)))
+                    .parse(new ByteArrayInputStream(bytes), null);
+            return nations;
+        };
+
+        measure("DOM + XPath", dom);
+        measure("StAX selector", stax);
+    }
+
+    private static void measure(String name, Callable<List<String>> parser) throws Exception {
+        for (int i = 0; i < WARMUP; i++) parser.call();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) parser.call();
+        double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+
+        long peak = peakHeap(parser);
+        System.out.printf("%-14s %8.1f ms/parse %8.1f MB peak heap%n", name, millis, peak / 1e6);
+    }
+
+    /** @return peak heap used during one parse, above heap used before it */
+    private static long peakHeap(Callable<List<String>> parser) throws Exception {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pools.add(pool);
+
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+        }
+
+        List<String> result = parser.call();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) peak += pool.getPeakUsage().getUsed();
+        if (result.size() != NATIONS) throw new XMLStreamException("Parsed wrong number of nations");
+        return peak - before;
+    }
+}
@@ -18,17 +18,17 @@
 package com.git.ifly6.nsapi.telegram;
 
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSContentEncoding;
+import com.git.ifly6.nsapi.NSEndpoint;
+import com.git.ifly6.nsapi.NSTransport;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.http.HttpClient;
+import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.text.MessageFormat;
-import java.time.Duration;
-import java.util.logging.Level;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 
 import static com.git.ifly6.nsapi.telegram.JTelegramResponseCode.UNKNOWN_ERROR;
@@ -50,8 +50,8 @@ public class JTelegramConnection {
 //    public static final int SECRET_KEY_MISMATCH = 5;
 //    public static final int NO_SUCH_TELEGRAM = 6;
 
-    private static HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
-    private HttpResponse<String> httpResponse;
+    private HttpResponse<InputStream> httpResponse;
+    private String body;
 
     /**
      * Creates a telegram connection. If {@code doNothing} is true, does nothing.
@@ -61,29 +61,27 @@ public class JTelegramConnection {
      * @throws IOException if {@link MalformedURLException} or if cannot connect to Internet
      */
     public JTelegramConnection(JTelegramKeys keys, String recipient, boolean doNothing) throws IOException {
-        String urlString = MessageFormat.format("{0}a=sendTG&client={1}&key={2}&tgid={3}&to={4}",
-                NSConnection.API_PREFIX,
-                keys.getClientKey(),
-                keys.getSecretKey(),
-                keys.getTelegramID(),
-                recipient);
-        URL tgURL = new URL(urlString);
+        URI uri;
         try {
-            HttpRequest request = HttpRequest.newBuilder(tgURL.toURI())
-                    .header("User-Agent",
-                            String.format("JavaTelegram (maintained by Imperium Anglorum, used by %s)",
-                                    keys.getClientKey()))
-                    .GET().build();
-            if (doNothing) {
-                LOGGER.fine(String.format("Constructed JTelegramConnection for TG <%s> to <%s>. Did not send.",
-                        keys.getTelegramID(), recipient));
-                return;
-            }
-            httpResponse = client.send(request, HttpResponse.BodyHandlers.ofString());
+            uri = NSEndpoint.SEND_TELEGRAM.uri(keys.getClientKey(), keys.getSecretKey(), keys.getTelegramID(),
+                    recipient);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedURLException(String.format("Cannot form telegram URL: %s", e.getMessage()));
+        }
 
-        } catch (URISyntaxException | InterruptedException e) {
-            LOGGER.log(Level.SEVERE, String.format("Encountered normally-impossible %s",
-                    e.getClass().getSimpleName()), e);
+        HttpRequest request = NSTransport.getInstance().newRequest(uri)
+                .header("User-Agent",
+                        String.format("JavaTelegram (maintained by Imperium Anglorum, used by %s)",
+                                keys.getClientKey()))
+                .GET().build();
+        if (doNothing) {
+            LOGGER.fine(String.format("Constructed JTelegramConnection for TG <%s> to <%s>. Did not send.",
+                    keys.getTelegramID(), recipient));
+            return;
+        }
+        httpResponse = NSTransport.getInstance().send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream stream = NSContentEncoding.decode(httpResponse.headers(), httpResponse.body())) {
+            body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
         }
     }
 
@@ -103,14 +101,14 @@ public class JTelegramConnection {
      * @throws IOException if error in queuing the telegram
      */
     public JTelegramResponseCode verify() throws IOException {
-        String response = httpResponse.body().trim().toLowerCase();
+        String response = body.trim().toLowerCase();
 
         for (JTelegramResponseCode r : JTelegramResponseCode.values())
             if (response.contains(r.getMatchString())) return r;
 
         // else, print and return
         LOGGER.severe(String.format("Unknown error with code %d: %s",
-                httpResponse.statusCode(), httpResponse.body().trim()
+                httpResponse.statusCode(), body.trim()
         ));
         return UNKNOWN_ERROR;
     }
@@ -19,6 +19,7 @@ package com.git.ifly6.nsapi.telegram.util;
 
 import com.git.ifly6.nsapi.ApiUtils;
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSEndpoint;
 import com.git.ifly6.nsapi.NSException;
 import com.git.ifly6.nsapi.NSRegion;
 import com.git.ifly6.nsapi.NSWorld;
@@ -85,7 +86,7 @@ public class JInfoFetcher {
      */
     public List<String> getNew() throws JTelegramException {
         try {
-            NSConnection connection = new NSConnection(NSConnection.API_PREFIX + "q=newnations");
+            NSConnection connection = new NSConnection(NSEndpoint.NEW_NATIONS.url());
             String response = connection.connect().getResponse();
             String newNations = new XMLDocument(response).xpath("/WORLD/NEWNATIONS/text()").get(0);
             return Stream.of(newNations.split(","))
@@ -20,7 +20,11 @@ package com.git.ifly6.communique.data;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -50,4 +54,23 @@ class Communique7ParserTest {
                 ).listRecipients());
         assertEquals(regexRemove, List.of("transilia"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void nationFilterRunsMatchTokenByToken() {
+        CommuniqueFilterType[] filters = {CommuniqueFilterType.NORMAL, CommuniqueFilterType.EXCLUDE,
+                CommuniqueFilterType.INCLUDE};
+        Random random = new Random(21);
+        for (int trial = 0; trial < 200; trial++) {
+            List<CommuniqueRecipient> tokens = new ArrayList<>();
+            for (int i = random.nextInt(60); i > 0; i--) {
+                CommuniqueFilterType filter = filters[random.nextInt(10) < 5 ? 0 : 1 + random.nextInt(2)];
+                tokens.add(new CommuniqueRecipient(filter, CommuniqueRecipientType.NATION, "n" + random.nextInt(12)));
+            }
+
+            Set<CommuniqueRecipient> oneByOne = new LinkedHashSet<>();
+            for (CommuniqueRecipient token : tokens) oneByOne = token.getFilterType().apply(oneByOne, token);
+            assertEquals(oneByOne.stream().map(CommuniqueRecipient::getName).collect(Collectors.toList()),
+                    new Communique7Parser().apply(tokens).listRecipients(), tokens.toString());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.communique.io.CommuniqueConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommuniquePlanTest {
+
+    private static CommuniqueConfig config(String... tokens) {
+        CommuniqueConfig config = new CommuniqueConfig();
+        config.setcRecipients(CommuniqueRecipient.parseRecipients(List.of(tokens)));
+        config.setTelegramInterval(Duration.ofSeconds(30));
+        return config;
+    }
+
+    @Test
+    void costsNationsWithoutDecomposing() {
+        CommuniquePlan plan = CommuniquePlan.of(config(
+                "nation:plan_test_alpha", "nation:plan_test_beta", "-nation:plan_test_beta"));
+        assertEquals(0, plan.getDecompositionCalls());
+        assertFalse(plan.isOpen());
+        assertEquals(OptionalInt.of(1), plan.getRecipients());
+        assertEquals(1, plan.getLookups()); // not in the nation cache
+        assertEquals(Duration.ofSeconds(30), plan.getSendingTime());
+    }
+
+    @Test
+    void costsDecomposition() {
+        CommuniquePlan plan = CommuniquePlan.of(config(
+                "region:europe", "region_tag:fascist", "tag:wa", "-regex:^a.*", "nation:plan_test_alpha"));
+        assertEquals(List.of(1, 1, 1, 0, 0), plan.getSteps().stream()
+                .map(CommuniquePlan.Step::getCalls)
+                .collect(Collectors.toList()));
+        assertEquals(3, plan.getDecompositionCalls());
+        assertTrue(plan.isOpen()); // regions in tag unknown
+        assertTrue(plan.getRecipients().isEmpty());
+        assertTrue(plan.toString().contains("plus one per region in region_tag:fascist"), plan.toString());
+    }
+
+    @Test
+    void costsDecomposedRecipients() {
+        CommuniquePlan plan = CommuniquePlan.of(config("region:europe"),
+                List.of("plan_test_alpha", "plan_test_beta", "plan_test_gamma"));
+        assertEquals(OptionalInt.of(3), plan.getRecipients());
+        assertEquals(3, plan.getLookups());
+        assertEquals(Duration.ofSeconds(90), plan.getSendingTime());
+        assertEquals(plan.getDecompositionTime().plus(Duration.ofSeconds(90)), plan.getTotalTime());
+    }
+}
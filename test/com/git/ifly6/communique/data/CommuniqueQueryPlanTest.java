@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSPriority;
+import com.git.ifly6.nsapi.NSRateLimiter;
+import com.git.ifly6.nsapi.NSRegion;
+import com.git.ifly6.nsapi.NSResponseCache;
+import com.git.ifly6.nsapi.NSStaticRateLimiter;
+import com.git.ifly6.nsapi.NSStubServer;
+import com.git.ifly6.nsapi.NSStubWorld;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommuniqueQueryPlanTest {
+
+    @TempDir
+    Path directory;
+
+    private final NSStubWorld world = new NSStubWorld(150, 5);
+    private NSStubServer server;
+    private String previousPrefix;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(world);
+        previousPrefix = NSConnection.getApiPrefix();
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setApiPrefix(server.apiPrefix());
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(100));
+        NSConnection.setResponseCache(new NSResponseCache(directory));
+        new NSRegion("region_0"); // starts client and loads World Assembly members before counting anything
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setApiPrefix(previousPrefix);
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        server.close();
+    }
+
+    private static CommuniqueRecipient nation(CommuniqueFilterType filter, String name) {
+        return new CommuniqueRecipient(filter, CommuniqueRecipientType.NATION, name);
+    }
+
+    private static CommuniqueRecipient region(CommuniqueFilterType filter, String name) {
+        return new CommuniqueRecipient(filter, CommuniqueRecipientType.REGION, name);
+    }
+
+    @Test
+    void executeMatchesTokenByToken() {
+        CommuniqueFilterType[] filters = CommuniqueFilterType.values();
+        Random random = new Random(22);
+        for (int trial = 0; trial < 500; trial++) {
+            List<CommuniqueRecipient> tokens = new ArrayList<>();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                CommuniqueFilterType filter = random.nextBoolean()
+                        ? CommuniqueFilterType.NORMAL
+                        : filters[random.nextInt(filters.length)];
+                String name = filter == CommuniqueFilterType.REQUIRE_REGEX
+                        || filter == CommuniqueFilterType.EXCLUDE_REGEX
+                        ? "n[" + random.nextInt(6) + "-9]"
+                        : "n" + random.nextInt(10);
+                tokens.add(nation(filter, name));
+            }
+
+            Set<CommuniqueRecipient> start = new LinkedHashSet<>();
+            if (random.nextBoolean()) start.add(nation(CommuniqueFilterType.NORMAL, "n" + random.nextInt(10)));
+
+            Set<CommuniqueRecipient> oneByOne = new LinkedHashSet<>(start);
+            for (CommuniqueRecipient token : tokens) oneByOne = token.getFilterType().apply(oneByOne, token);
+            Set<CommuniqueRecipient> planned = CommuniqueQueryPlan.of(tokens, start.isEmpty())
+                    .execute(new LinkedHashSet<>(start));
+            assertEquals(new ArrayList<>(oneByOne), new ArrayList<>(planned), tokens.toString());
+        }
+    }
+
+    @Test
+    void explainShowsSkippedOperators() {
+        CommuniqueQueryPlan plan = CommuniqueQueryPlan.of(List.of(
+                nation(CommuniqueFilterType.EXCLUDE, "transilia"),
+                nation(CommuniqueFilterType.NORMAL, "imperium_anglorum"),
+                nation(CommuniqueFilterType.NORMAL, "transilia"),
+                nation(CommuniqueFilterType.INCLUDE, "imperium_anglorum"),
+                nation(CommuniqueFilterType.INCLUDE, "transilia"),
+                nation(CommuniqueFilterType.NORMAL, "panem")));
+
+        List<CommuniqueQueryPlan.Operator> operators = plan.getOperators();
+        assertEquals(5, operators.size());
+        assertTrue(operators.get(0).isSkipped()); // nothing to exclude from
+        assertTrue(operators.get(1).isSkipped()); // emptied by the run of includes
+        assertTrue(operators.get(3).isSkipped());
+        assertFalse(operators.get(4).isSkipped());
+        assertEquals(2, operators.get(3).getTokens().size());
+        assertTrue(plan.explain().contains("skipped, emptied by step 4"), plan.explain());
+
+        Set<CommuniqueRecipient> recipients = plan.execute(new LinkedHashSet<>());
+        assertEquals(Set.of(nation(CommuniqueFilterType.NORMAL, "panem")), recipients);
+    }
+
+    @Test
+    void prefetchDecomposesConcurrently() {
+        server.delay(300);
+        List<CommuniqueRecipient> tokens = List.of(
+                region(CommuniqueFilterType.NORMAL, "region_1"),
+                region(CommuniqueFilterType.NORMAL, "region_2"),
+                region(CommuniqueFilterType.EXCLUDE, "region_4"),
+                nation(CommuniqueFilterType.EXCLUDE, "nation_6"));
+
+        long start = System.nanoTime();
+        CommuniqueQueryPlan plan = CommuniqueQueryPlan.of(tokens);
+        Set<CommuniqueRecipient> planned = plan.execute(new LinkedHashSet<>());
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed < 750_000_000L, String.format("%d ms for three decompositions", elapsed / 1_000_000));
+        assertTrue(plan.explain().contains("prefetched"), plan.explain());
+
+        Set<CommuniqueRecipient> oneByOne = new LinkedHashSet<>();
+        for (CommuniqueRecipient token : tokens) oneByOne = token.getFilterType().apply(oneByOne, token);
+        assertFalse(oneByOne.isEmpty());
+        assertEquals(new ArrayList<>(oneByOne), new ArrayList<>(planned));
+    }
+
+    @Test
+    void statefulTokensDecomposedInOrder() {
+        List<CommuniqueRecipient> stateful = Collections.synchronizedList(new ArrayList<>());
+        CommuniqueDecompositionMemo memo = new CommuniqueDecompositionMemo(token -> {
+            if (token.getRecipientType().stateful()) stateful.add(token);
+            switch (token.getName()) {
+                case "first":
+                    return List.of(nation(CommuniqueFilterType.NORMAL, "n1"),
+                            nation(CommuniqueFilterType.NORMAL, "n2"));
+                case "second":
+                    return List.of(nation(CommuniqueFilterType.NORMAL, "n2"));
+                case "region_1":
+                    return List.of(nation(CommuniqueFilterType.NORMAL, "n3"));
+                default:
+                    return Collections.emptyList();
+            }
+        });
+        List<CommuniqueRecipient> tokens = List.of(
+                new CommuniqueRecipient(CommuniqueFilterType.NORMAL, CommuniqueRecipientType._HAPPENINGS, "first"),
+                region(CommuniqueFilterType.NORMAL, "region_1"),
+                new CommuniqueRecipient(CommuniqueFilterType.INCLUDE, CommuniqueRecipientType._HAPPENINGS, "second"),
+                region(CommuniqueFilterType.INCLUDE, "region_2")); // empty; would empty everything before it
+
+        CommuniqueQueryPlan plan = CommuniqueQueryPlan.of(tokens, true, memo);
+        assertTrue(plan.execute(new LinkedHashSet<>()).isEmpty());
+        assertEquals(List.of(tokens.get(0), tokens.get(2)), stateful, plan.explain());
+    }
+
+    @Test
+    void repeatedTokensDecomposedOnce() {
+        int before = server.requests();
+        Communique7Parser parser = new Communique7Parser()
+                .apply(new CommuniqueRecipient(CommuniqueFilterType.NORMAL, CommuniqueRecipientType.TAG, "wa"))
+                .apply(region(CommuniqueFilterType.NORMAL, "region_1"))
+                .apply(new CommuniqueRecipient(CommuniqueFilterType.EXCLUDE, CommuniqueRecipientType.TAG, "wa"))
+                .apply(region(CommuniqueFilterType.INCLUDE, "region_1"))
+                .apply(new CommuniqueRecipient(CommuniqueFilterType.NORMAL, CommuniqueRecipientType.TAG, "wa"));
+        assertEquals(2, server.requests() - before); // once for the World Assembly, once for the region
+
+        List<String> expected = new ArrayList<>(world.residents(1));
+        expected.removeAll(world.members());
+        expected.addAll(world.members());
+        assertEquals(expected, parser.listRecipients());
+    }
+
+    @Test
+    void decompositionsKeepPriorityOfAskingThread() {
+        List<NSPriority> seen = Collections.synchronizedList(new ArrayList<>());
+        CommuniqueDecompositionMemo memo = new CommuniqueDecompositionMemo(token -> {
+            seen.add(NSPriority.current());
+            return Collections.emptyList();
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            NSPriority.BACKGROUND_POLL.run(() -> memo.decompose(
+                    new CommuniqueRecipient(CommuniqueFilterType.NORMAL, CommuniqueRecipientType.TAG, "wa"),
+                    executor).join());
+            memo.decompose(region(CommuniqueFilterType.NORMAL, "region_1"), executor).join();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(List.of(NSPriority.BACKGROUND_POLL, NSPriority.INTERACTIVE), seen);
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.git.ifly6.communique.data;
 
+import com.git.ifly6.nsapi.NSNameDictionary;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
@@ -35,6 +36,7 @@ import static com.git.ifly6.communique.data.CommuniqueRecipientType.REGION;
 import static com.git.ifly6.communique.data.CommuniqueRecipientType.REGION_TAG;
 import static com.git.ifly6.communique.data.CommuniqueRecipientType._VOTING;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class CommuniqueRecipientTest {
@@ -88,6 +90,40 @@ class CommuniqueRecipientTest {
             assertThrows(IllegalArgumentException.class, () -> CommuniqueRecipient.parseRecipient(s));
     }
 
+    @Test
+    void parseRecipientByPrefixTrie() {
+        // longest prefix, as the loop over filter and recipient types in declaration order took
+        assertEquals(new CommuniqueRecipient(REQUIRE_REGEX, NONE, "[a-z]"),
+                CommuniqueRecipient.parseRecipient("+regex:[a-z]"));
+        assertEquals(new CommuniqueRecipient(EXCLUDE, REGION, "regex_land"),
+                CommuniqueRecipient.parseRecipient("-region:regex_land"));
+        assertEquals(new CommuniqueRecipient(EXCLUDE, REGION_TAG, "fascist"),
+                CommuniqueRecipient.parseRecipient("  -REGION_TAG:Fascist\t"));
+        assertEquals(new CommuniqueRecipient(INCLUDE, REGION, "euro"),
+                CommuniqueRecipient.parseRecipient("+region:pe:euro"));
+
+        // names beginning with recipient types, but without colons, are nations
+        assertEquals(new CommuniqueRecipient(NORMAL, NATION, "regionalia"),
+                CommuniqueRecipient.parseRecipient("regionalia"));
+        assertEquals(new CommuniqueRecipient(NORMAL, NATION, "nationalist"),
+                CommuniqueRecipient.parseRecipient("Nationalist"));
+        assertThrows(IllegalArgumentException.class, () -> CommuniqueRecipient.parseRecipient("tagalog:x"));
+    }
+
+    @Test
+    void onlyNationNamesInterned() {
+        NSNameDictionary dictionary = NSNameDictionary.getInstance();
+        CommuniqueRecipient.parseRecipient("+regex:interned_[a-z]+_pattern");
+        CommuniqueRecipient.parseRecipient("region:interned_region_only");
+        new CommuniqueRecipient(NORMAL, REGION_TAG, "interned_tag_only");
+        assertEquals(-1, dictionary.find("interned_[a-z]+_pattern"));
+        assertEquals(-1, dictionary.find("interned_region_only"));
+        assertEquals(-1, dictionary.find("interned_tag_only"));
+
+        CommuniqueRecipient nation = CommuniqueRecipient.parseRecipient("-nation:Interned Nation Only");
+        assertSame(dictionary.name(dictionary.find("interned_nation_only")), nation.getName());
+    }
+
     @Test
     void translateToken() {
         // world tags
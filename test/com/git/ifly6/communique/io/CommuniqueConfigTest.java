@@ -30,6 +30,8 @@ import static com.git.ifly6.communique.data.CommuniqueFilterType.NORMAL;
 import static com.git.ifly6.communique.data.CommuniqueRecipientType.NATION;
 import static com.git.ifly6.communique.data.CommuniqueRecipientType.REGION;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class CommuniqueConfigTest {
     static CommuniqueConfig config;
@@ -60,6 +62,21 @@ class CommuniqueConfigTest {
                 config.getcRecipientsString());
     }
 
+    @Test
+    void parsedRecipientsKeptUntilChanged() {
+        CommuniqueConfig config = new CommuniqueConfig();
+        config.setcRecipients(crs);
+        List<CommuniqueRecipient> parsed = config.getcRecipients();
+        assertSame(parsed, config.getcRecipients()); // not reparsed
+        assertThrows(UnsupportedOperationException.class, () -> parsed.add(crs.get(0)));
+
+        CommuniqueRecipient added = new CommuniqueRecipient(NORMAL, NATION, "panem");
+        config.addcRecipient(added);
+        assertEquals(added, config.getcRecipients().get(3));
+        config.setcRecipients(List.of(added));
+        assertEquals(List.of(added), config.getcRecipients());
+    }
+
     @Test
     void getProcessingAction() {
         assertEquals(config.getProcessingAction(), CommuniqueProcessingAction.NONE);
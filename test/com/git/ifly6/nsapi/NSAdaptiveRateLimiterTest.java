@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSAdaptiveRateLimiterTest {
+
+    private static final String QUERY = "q=newnations";
+    private static final String BODY = "<WORLD><NEWNATIONS>a,b,c</NEWNATIONS></WORLD>";
+
+    private NSStubServer server;
+    private NSRateLimiter previous;
+    private NSRetryPolicy previousPolicy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().respond(QUERY, BODY);
+        previous = NSConnection.getRateLimiter();
+        previousPolicy = NSConnection.getRetryPolicy();
+        NSConnection.setRetryPolicy(NSRetryPolicy.NONE); // observe the limiter alone
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setRateLimiter(previous);
+        NSConnection.setRetryPolicy(previousPolicy);
+        server.close();
+    }
+
+    private static HttpHeaders headers(Map<String, List<String>> map) {
+        return HttpHeaders.of(map, (a, b) -> true);
+    }
+
+    @Test
+    void usesFullBudgetWithHeadroom() {
+        NSAdaptiveRateLimiter limiter = new NSAdaptiveRateLimiter(40 / (double) 30);
+        limiter.observe(200, headers(Map.of(
+                "RateLimit-Policy", List.of("50;w=30"),
+                "RateLimit-Remaining", List.of("49"),
+                "RateLimit-Reset", List.of("30"))));
+        assertEquals(50 / (double) 30, limiter.getCeilingRate(), 1e-9);
+        assertTrue(limiter.getRate() > 40 / (double) 30);
+        assertTrue(limiter.getRate() <= limiter.getCeilingRate());
+    }
+
+    @Test
+    void pausesBeforeExhaustion() {
+        NSAdaptiveRateLimiter limiter = new NSAdaptiveRateLimiter(40 / (double) 30);
+        limiter.observe(200, headers(Map.of(
+                "RateLimit-Remaining", List.of(String.valueOf(NSAdaptiveRateLimiter.SAFETY_MARGIN)),
+                "RateLimit-Reset", List.of("5"))));
+        assertTrue(limiter.getPausedUntil().isAfter(Instant.now().plusSeconds(3)));
+    }
+
+    @Test
+    void staticIgnoresHeaders() {
+        NSStaticRateLimiter limiter = new NSStaticRateLimiter(2);
+        limiter.observe(429, headers(Map.of("Retry-After", List.of("30"))));
+        assertEquals(2, limiter.getRate(), 1e-9);
+    }
+
+    @Test
+    void honoursRetryAfter() throws IOException {
+        server.rateLimit(1, 2);
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(20)); // spends window without adaptive seeing it
+        new NSConnection(server.apiPrefix() + QUERY).connect();
+
+        NSAdaptiveRateLimiter limiter = new NSAdaptiveRateLimiter(20);
+        NSConnection.setRateLimiter(limiter);
+        assertThrows(NSIOException.class, () -> new NSConnection(server.apiPrefix() + QUERY).connect());
+        assertTrue(limiter.getPausedUntil().isAfter(Instant.now()));
+
+        long start = System.currentTimeMillis();
+        assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertTrue(System.currentTimeMillis() - start >= 500);
+    }
+
+    @Test
+    void avoidsRateLimit() throws IOException {
+        server.rateLimit(6, 1);
+
+        // at a fixed 20 requests per second, the stub's limit is exceeded
+        // requests are pipelined and distinct, so they are neither serialised by latency nor coalesced
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(20));
+        List<CompletableFuture<NSConnection>> burst = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            burst.add(new NSConnection(server.apiPrefix() + QUERY + ";n=" + i).connectAsync());
+        CompletableFuture.allOf(burst.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        assertTrue(server.rateLimited() > 0);
+
+        // adaptive limiter starting at the same rate slows down before it is exceeded
+        server.rateLimit(6, 1);
+        int before = server.rateLimited();
+        NSConnection.setRateLimiter(new NSAdaptiveRateLimiter(20));
+        for (int i = 0; i < 12; i++)
+            assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(before, server.rateLimited());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSContentEncodingTest {
+
+    private static final String NATIONS = "q=nations";
+    private static final String MEMBERS = "wa=1&q=members";
+
+    @TempDir
+    Path directory;
+
+    private NSResponseCache previous;
+
+    @BeforeEach
+    void setUp() {
+        previous = NSConnection.getResponseCache();
+        NSResponseCache cache = new NSResponseCache(directory);
+        cache.removeTTL("nations"); // so that every request transfers the whole body
+        cache.removeTTL("members");
+        NSConnection.setResponseCache(cache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setResponseCache(previous);
+    }
+
+    private static String list(String root, String element, int n) {
+        StringBuilder sb = new StringBuilder("<" + root + "><" + element + ">");
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "" : ",").append("nation_").append(i);
+        return sb.append("</").append(element).append("></").append(root).append(">").toString();
+    }
+
+    @Test
+    void transfersLessWhenCompressed() throws IOException {
+        String nations = list("WORLD", "NATIONS", 20_000);
+        String members = list("WA", "MEMBERS", 5_000);
+
+        for (String encoding : new String[] {"gzip", "deflate"})
+            try (NSStubServer plain = new NSStubServer().respond(NATIONS, nations).respond(MEMBERS, members);
+                 NSStubServer compressed = new NSStubServer().respond(NATIONS, nations).respond(MEMBERS, members)
+                         .compress(encoding)) {
+
+                for (String query : new String[] {NATIONS, MEMBERS}) {
+                    String expected = query.equals(NATIONS) ? nations : members;
+                    assertEquals(expected, new NSConnection(plain.apiPrefix() + query).getResponse());
+                    assertEquals(expected, new NSConnection(compressed.apiPrefix() + query).getResponse());
+
+                    long before = plain.bytesSent(query);
+                    long after = compressed.bytesSent(query);
+                    System.out.printf("%-8s %-16s %8d bytes -> %8d bytes%n", encoding, query, before, after);
+                    assertTrue(after * 3 < before);
+                }
+            }
+    }
+
+    @Test
+    void streamsCompressedIntoParser() throws IOException {
+        try (NSStubServer server = new NSStubServer().respond(NATIONS, list("WORLD", "NATIONS", 1_000))
+                .compress("gzip")) {
+            List<String> out = new ArrayList<>();
+            new NSConnection(server.apiPrefix() + NATIONS).parse(reader -> {
+                new NSXMLSelector().list("/WORLD/NATIONS", ',', out::add).parse(reader);
+                return out;
+            });
+            assertEquals(1_000, out.size());
+        }
+    }
+
+    @Test
+    void decodesRawAndZlibDeflate() throws IOException {
+        byte[] text = "<WORLD><NATIONS>a,b</NATIONS></WORLD>".getBytes(StandardCharsets.UTF_8);
+        HttpHeaders deflate = HttpHeaders.of(Map.of("Content-Encoding", List.of("deflate")), (a, b) -> true);
+
+        for (boolean raw : new boolean[] {true, false}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (DeflaterOutputStream os = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION,
+                    raw))) {
+                os.write(text);
+            }
+            try (InputStream in = NSContentEncoding.decode(deflate, new ByteArrayInputStream(out.toByteArray()))) {
+                assertEquals(new String(text, StandardCharsets.UTF_8),
+                        new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSDispatcherTest {
+
+    /** Submits job recording its name, in dispatch order, to order. */
+    private static CompletableFuture<String> submit(NSDispatcher d, NSPriority p, String name, List<String> order) {
+        return d.submit(p, () -> {
+            order.add(name);
+            return CompletableFuture.completedFuture(name);
+        });
+    }
+
+    private static void joinAll(List<CompletableFuture<String>> futures) {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    @Test
+    void criticalOvertakesBackground() {
+        NSDispatcher dispatcher = new NSDispatcher(new NSStaticRateLimiter(10));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) futures.add(submit(dispatcher, NSPriority.BACKGROUND_POLL, "poll" + i, order));
+        futures.add(submit(dispatcher, NSPriority.SEND_CRITICAL, "send", order));
+        joinAll(futures);
+
+        assertTrue(order.indexOf("send") <= 1, order.toString()); // at most one poll already had its permit
+        assertEquals("poll5", order.get(order.size() - 1));
+    }
+
+    @Test
+    void starvedRequestsAreServed() {
+        NSDispatcher dispatcher = new NSDispatcher(new NSStaticRateLimiter(20));
+        dispatcher.setMaxWait(NSPriority.BACKGROUND_POLL, Duration.ofMillis(100));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        futures.add(submit(dispatcher, NSPriority.BACKGROUND_POLL, "poll", order));
+        for (int i = 0; i < 30; i++) futures.add(submit(dispatcher, NSPriority.INTERACTIVE, "user" + i, order));
+        joinAll(futures);
+
+        // served once it has waited 100 ms, ie after about two of the 30 interactive requests
+        assertTrue(order.indexOf("poll") < 10, order.toString());
+    }
+
+    @Test
+    void cancelledRequestsSpendNoPermit() {
+        NSDispatcher dispatcher = new NSDispatcher(new NSStaticRateLimiter(5));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> first = submit(dispatcher, NSPriority.INTERACTIVE, "first", order);
+        CompletableFuture<String> cancelled = submit(dispatcher, NSPriority.INTERACTIVE, "cancelled", order);
+        cancelled.cancel(true);
+        CompletableFuture<String> last = submit(dispatcher, NSPriority.INTERACTIVE, "last", order);
+        joinAll(List.of(first, last));
+        assertEquals(List.of("first", "last"), order);
+    }
+
+    @Test
+    void resultsOfRequestsCancelledInFlightAreHandedOn() throws InterruptedException {
+        NSDispatcher dispatcher = new NSDispatcher(new NSStaticRateLimiter(10));
+        CompletableFuture<String> response = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> orphans = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> result = dispatcher.submit(NSPriority.INTERACTIVE, () -> {
+            started.countDown();
+            return response;
+        }, (t, e) -> orphans.add(t));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        result.cancel(false);
+        response.complete("body");
+        assertEquals(List.of("body"), orphans);
+    }
+
+    @Test
+    void cancelledConnectionsAreNeverSent(@TempDir Path directory) throws IOException, InterruptedException {
+        NSRateLimiter previousLimiter = NSConnection.getRateLimiter();
+        NSResponseCache previousCache = NSConnection.getResponseCache();
+        try (NSStubServer server = new NSStubServer().world(new NSStubWorld(10, 2))) {
+            NSConnection.setRateLimiter(new NSStaticRateLimiter(2));
+            NSConnection.setResponseCache(new NSResponseCache(directory));
+            String prefix = server.apiPrefix();
+
+            CompletableFuture<String> first = new NSConnection(prefix + "nation=nation_1;q=name").getResponseAsync();
+            CompletableFuture<NSConnection> connected = new NSConnection(prefix + "nation=nation_2;q=name")
+                    .connectAsync();
+            CompletableFuture<String> parsed = new NSConnection(prefix + "nation=nation_3;q=name")
+                    .parseAsync(reader -> "parsed");
+            connected.cancel(false);
+            parsed.cancel(false);
+
+            first.join();
+            Thread.sleep(1500); // three permits' worth
+            assertEquals(1, server.requests());
+
+        } finally {
+            NSConnection.setRateLimiter(previousLimiter);
+            NSConnection.setResponseCache(previousCache);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NSEndpointTest {
+
+    private String previousPrefix;
+
+    @BeforeEach
+    void setUp() {
+        previousPrefix = NSConnection.getApiPrefix();
+        NSConnection.setApiPrefix("http://localhost/api?");
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setApiPrefix(previousPrefix);
+    }
+
+    @Test
+    void fillsTemplate() {
+        assertEquals("http://localhost/api?q=nations", NSEndpoint.NATIONS.url());
+        assertEquals("http://localhost/api?nation=imperium_anglorum&q=", NSEndpoint.NATION.url("imperium_anglorum"));
+        assertEquals("http://localhost/api?a=sendTG&client=c&key=k&tgid=1&to=n",
+                NSEndpoint.SEND_TELEGRAM.url("c", "k", "1", "n"));
+        assertEquals(4, NSEndpoint.SEND_TELEGRAM.getArity());
+    }
+
+    @Test
+    void encodesOnlyWhatBreaksQuery() {
+        assertEquals("http://localhost/api?q=regionsbytag;tags=-medium,class",
+                NSEndpoint.REGIONS_BY_TAG.url("-medium,class"));
+        assertEquals("http://localhost/api?a=sendTG&client=a%26b&key=c%3Dd%2B&tgid=1&to=caf%C3%A9%20x",
+                NSEndpoint.SEND_TELEGRAM.url("a&b", "c=d+", "1", "café x"));
+        assertEquals("/api", NSEndpoint.NATION.uri("a b").getPath());
+    }
+
+    @Test
+    void rejectsWrongArity() {
+        assertThrows(IllegalArgumentException.class, () -> NSEndpoint.NATION.url());
+        assertThrows(IllegalArgumentException.class, () -> NSEndpoint.NATIONS.url("x"));
+    }
+}
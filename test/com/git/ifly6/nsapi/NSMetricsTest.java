@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSMetricsTest {
+
+    @TempDir
+    Path directory;
+
+    private NSStubServer server;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(new NSStubWorld(2000, 20)).compress("gzip");
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(5));
+        NSConnection.setResponseCache(new NSResponseCache(directory));
+        NSMetrics.getInstance().reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        server.close();
+    }
+
+    @Test
+    void tagsEndpoints() {
+        String prefix = NSConnection.API_PREFIX;
+        assertEquals("nations", NSMetrics.endpoint(URI.create(prefix + "q=Nations")));
+        assertEquals("sendtg", NSMetrics.endpoint(URI.create(prefix + "a=sendTG&client=x")));
+        assertEquals("nation", NSMetrics.endpoint(URI.create(prefix + "nation=x&q=name+region")));
+        assertEquals("region", NSMetrics.endpoint(URI.create(prefix + "region=x&q=nations")));
+        assertEquals("wa:resolution", NSMetrics.endpoint(URI.create(prefix + "wa=1&q=resolution+voters")));
+        assertEquals("regionsbytag", NSMetrics.endpoint(URI.create(prefix + "q=regionsbytag;tags=a")));
+        assertEquals("", NSMetrics.endpoint(URI.create(prefix)));
+    }
+
+    @Test
+    void approximatesPercentiles() {
+        NSHistogram histogram = new NSHistogram();
+        assertEquals(Duration.ZERO, histogram.getPercentile(0.5));
+        for (int i = 1; i <= 100; i++) histogram.record(Duration.ofMillis(i).toNanos());
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(Duration.ofMillis(100), histogram.getMax());
+        long median = histogram.getPercentile(0.5).toMillis();
+        assertTrue(median >= 50 && median <= 100, String.valueOf(median)); // within a power of two above
+        assertEquals(Duration.ofMillis(100), histogram.getPercentile(1));
+        assertTrue(histogram.getPercentile(0.95).compareTo(histogram.getPercentile(0.5)) >= 0);
+    }
+
+    @Test
+    void breaksDownRequests() throws IOException {
+        server.delay(30);
+        List<CompletableFuture<NSConnection>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) // distinct URLs, so not coalesced; more than a burst, so they queue for permits
+            futures.add(new NSConnection(server.apiPrefix() + "q=nations;n=" + i).connectAsync());
+        for (CompletableFuture<NSConnection> future : futures) NSConnection.await(future);
+
+        NSMetrics metrics = NSMetrics.getInstance();
+        for (NSMetrics.Phase phase : NSMetrics.Phase.values())
+            assertEquals(8, metrics.get("nations", phase).orElseThrow().getCount(), phase.name());
+        assertTrue(metrics.get("nations", NSMetrics.Phase.FIRST_BYTE).orElseThrow().getMax().toMillis() >= 30);
+        assertTrue(metrics.get("nations", NSMetrics.Phase.LIMITER_WAIT).orElseThrow().getMax().toMillis() >= 300,
+                metrics.getSummary());
+        assertTrue(metrics.getSummary().contains("nations [n=8"), metrics.getSummary());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSNameDictionaryTest {
+
+    private final NSNameDictionary dictionary = NSNameDictionary.getInstance();
+
+    @Test
+    void internsOnceAcrossThreads() {
+        String prefix = "dictionary_test_" + System.nanoTime() + "_";
+        List<String> names = IntStream.range(0, 50_000).mapToObj(i -> prefix + i).collect(Collectors.toList());
+        List<Integer> ids = names.parallelStream().map(dictionary::id).collect(Collectors.toList());
+        assertEquals(names.size(), ids.stream().distinct().count());
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals(names.get(i), dictionary.name(ids.get(i)));
+            assertEquals(ids.get(i), dictionary.find(new String(names.get(i))));
+        }
+        assertEquals(-1, dictionary.find(prefix + "absent"));
+
+        String name = names.get(7);
+        String typed = " " + name.toUpperCase() + "\t";
+        assertSame(dictionary.intern(name), dictionary.intern(new String(name)));
+        assertSame(dictionary.intern(name), dictionary.intern(typed.toCharArray(), 0, typed.length()));
+        assertSame(dictionary.intern(name), NSNameScanner.scan("a," + name, ',').get(1));
+        assertEquals("", dictionary.intern(" \t".toCharArray(), 0, 2));
+    }
+
+    @Test
+    void nameSetCombinesById() {
+        NSNameSet a = new NSNameSet(List.of("alpha_set", "beta_set", "gamma_set"));
+        NSNameSet b = new NSNameSet(List.of("beta_set", "delta_set"));
+        assertTrue(a.contains("beta_set"));
+        assertFalse(a.contains("delta_set"));
+        assertFalse(a.contains("never_seen_name_" + System.nanoTime()));
+        assertFalse(a.add("alpha_set"));
+
+        NSNameSet union = new NSNameSet(a);
+        union.addAll(b);
+        assertEquals(Set.of("alpha_set", "beta_set", "gamma_set", "delta_set"), union);
+
+        NSNameSet intersection = new NSNameSet(a);
+        intersection.retainAll(b);
+        assertEquals(Set.of("beta_set"), intersection);
+
+        a.removeAll(b);
+        assertEquals(Set.of("alpha_set", "gamma_set"), a);
+        assertEquals(2, a.size());
+        a.removeIf("alpha_set"::equals);
+        assertEquals(new ArrayList<>(List.of("gamma_set")), new ArrayList<>(a));
+    }
+}
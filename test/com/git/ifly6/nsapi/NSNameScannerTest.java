@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class NSNameScannerTest {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+    private static final String ALPHABET = "aZ _-\t\n\r\u000B\f\u0001.9é";
+
+    /** @return reference form as given by the regular expression {@link ApiUtils#ref(String)} used before */
+    private static String legacyRef(String s) {
+        return WHITESPACE.matcher(s.trim().toLowerCase()).replaceAll("_");
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = random.nextInt(8); j > 0; j--) sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return sb.toString();
+    }
+
+    @Test
+    void refMatchesRegularExpression() {
+        Random random = new Random(13);
+        for (int i = 0; i < 20_000; i++) {
+            String name = randomName(random);
+            assertEquals(legacyRef(name), ApiUtils.ref(name), name);
+            assertEquals(legacyRef(name), NSNameScanner.ref(name.toCharArray(), 0, name.length()), name);
+        }
+
+        String ref = "imperium_anglorum";
+        assertSame(ref, ApiUtils.ref(ref)); // already in reference form, so not copied
+    }
+
+    @Test
+    void parallelScanMatchesSequential() {
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; sb.length() < 4 * NSNameScanner.PARALLEL_THRESHOLD; i++)
+            sb.append(i == 0 ? "" : ",").append(i % 100 == 0 ? " " : "Nation ").append(i).append(randomName(random));
+        String list = sb.toString();
+
+        List<String> expected = new ArrayList<>();
+        for (String s : list.split(",")) if (!legacyRef(s).isEmpty()) expected.add(legacyRef(s));
+        assertEquals(expected, NSNameScanner.scan(list, ','));
+        assertEquals(expected, NSNameScanner.scanParallel(list.toCharArray(), 0, list.length(), ','));
+    }
+
+    @Test
+    void selectorScansAcrossChunks() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder("<WORLD><NATIONS>");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            sb.append(i == 0 ? "" : ",").append(" Nation  ").append(i);
+            expected.add("nation__" + i);
+        }
+        sb.append("</NATIONS></WORLD>");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        List<String> streamed = new ArrayList<>();
+        List<String> gathered = new ArrayList<>();
+        new NSXMLSelector()
+                .refs("/WORLD/NATIONS", ',', streamed::add)
+                .refsParallel(NSXMLSelector.Path.compile("/WORLD/NATIONS"), ',', gathered::add)
+                .parse(new ByteArrayInputStream(bytes), null);
+        assertEquals(expected, streamed);
+        assertEquals(expected, gathered);
+    }
+}
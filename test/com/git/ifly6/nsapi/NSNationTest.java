@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.git.ifly6.nsapi.builders.NSNationShard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSNationTest {
+
+    @TempDir
+    Path directory;
+
+    private final NSStubWorld world = new NSStubWorld(40, 4);
+    private NSStubServer server;
+    private String previousPrefix;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(world);
+        previousPrefix = NSConnection.getApiPrefix();
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setApiPrefix(server.apiPrefix());
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(100));
+        NSConnection.setResponseCache(new NSResponseCache(directory));
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setApiPrefix(previousPrefix);
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        server.close();
+    }
+
+    @Test
+    void loadsOnlyShardsRequested() {
+        NSNation nation = new NSNation("nation_5")
+                .populateData(NSNationShard.CAN_RECRUIT, NSNationShard.CAN_CAMPAIGN);
+        assertFalse(nation.isRecruitable()); // every fifth nation
+        assertTrue(nation.isCampaignable());
+        assertNull(nation.getRegion());
+        assertNull(nation.getEndoList());
+        assertNotNull(nation.timestamp(NSNationShard.CAN_RECRUIT));
+        assertNull(nation.timestamp(NSNationShard.REGION));
+    }
+
+    @Test
+    void mergesShards() {
+        NSNation nation = new NSNation("nation_5").populateData(NSNationShard.CAN_RECRUIT);
+        nation.populateData(NSNationShard.REGION, NSNationShard.ENDORSEMENT_LIST);
+        assertFalse(nation.isRecruitable());
+        assertEquals("Region 1", nation.getRegion());
+        assertEquals(nation.getEndoList().size(), nation.getEndoCount());
+        assertFalse(nation.timestamp(NSNationShard.CAN_RECRUIT).isAfter(nation.timestamp(NSNationShard.REGION)));
+
+        nation.populateData();
+        assertEquals("Nation 5", nation.getNationName());
+        for (NSNationShard shard : NSNation.ALL_SHARDS) assertNotNull(nation.timestamp(shard), shard.name());
+    }
+
+    @Test
+    void rejectsMissingNation() {
+        assertThrows(NSNation.NSNoSuchNationException.class,
+                () -> new NSNation("nation_400").populateData(NSNationShard.CAN_RECRUIT));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSOfflineReportTest {
+
+    @TempDir
+    Path directory;
+
+    private final NSStubWorld world = new NSStubWorld(30, 3);
+    private NSStubServer server;
+    private String previousPrefix;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(world);
+        previousPrefix = NSConnection.getApiPrefix();
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setApiPrefix(server.apiPrefix());
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(100));
+        NSConnection.setResponseCache(new NSResponseCache(directory));
+        NSOfflineReport.getInstance().reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setOffline(false);
+        NSConnection.setApiPrefix(previousPrefix);
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        NSOfflineReport.getInstance().reset();
+        server.close();
+    }
+
+    @Test
+    void servesStoredResponsesWithoutNetwork() throws IOException {
+        Instant before = Instant.now().minusSeconds(1);
+        List<String> nations = NSWorld.getAllNations();
+        int requests = server.requests();
+
+        NSConnection.setOffline(true);
+        assertEquals(nations, NSWorld.getAllNations());
+        assertThrows(NSConnection.NSOfflineException.class, () -> new NSNation("nation_3").populateData());
+        assertThrows(NSConnection.NSOfflineException.class, NSWorld::getWAMembers); // never stored
+        assertEquals(requests, server.requests());
+
+        assertEquals(List.of("nations"), List.copyOf(NSOfflineReport.getInstance().getSources().keySet()));
+        assertTrue(NSOfflineReport.getInstance().getOldest().orElseThrow().isAfter(before));
+    }
+
+    @Test
+    void keepsOldestPerSource() {
+        NSOfflineReport report = NSOfflineReport.getInstance();
+        Instant now = Instant.now();
+        report.record("nations", now);
+        report.record("nations", now.minusSeconds(60));
+        report.record("nations", now.minusSeconds(30));
+        report.record("CommNationCache", now.minusSeconds(10));
+        assertEquals(now.minusSeconds(60), report.getSources().get("nations"));
+        assertEquals(now.minusSeconds(60), report.getOldest().orElseThrow());
+        assertTrue(report.getSummary().startsWith("Offline data used: CommNationCache"), report.getSummary());
+    }
+}
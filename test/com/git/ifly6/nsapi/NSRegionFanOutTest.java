@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSRegionFanOutTest {
+
+    @TempDir
+    Path directory;
+
+    private final NSStubWorld world = new NSStubWorld(200, 20);
+    private NSStubServer server;
+    private String previousPrefix;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(world);
+        previousPrefix = NSConnection.getApiPrefix();
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setApiPrefix(server.apiPrefix());
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(200));
+        NSConnection.setResponseCache(new NSResponseCache(directory));
+        new NSRegion("region_0"); // loads World Assembly members before timing anything
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setApiPrefix(previousPrefix);
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        server.close();
+    }
+
+    @Test
+    void mergesMembersInRegionOrder() throws IOException {
+        List<String> regions = List.of("region_7", "region_2", "no_such_region", "region_19", "region_0");
+        List<String> expected = new ArrayList<>();
+        for (int r : new int[] {7, 2, 19, 0}) expected.addAll(world.residents(r));
+
+        server.delay(100);
+        AtomicInteger calls = new AtomicInteger();
+        NSRegionFanOut fanOut = new NSRegionFanOut(regions).onProgress((region, done, total) -> {
+            calls.incrementAndGet();
+            assertEquals(regions.size(), total);
+        });
+
+        long start = System.nanoTime();
+        assertEquals(expected, fanOut.await());
+        assertTrue(System.nanoTime() - start < 400_000_000L); // not one round trip after another
+        assertEquals(regions.size(), calls.get());
+        assertEquals(regions.size(), fanOut.getCompleted());
+    }
+
+    @Test
+    void cancelStopsRequestingRegions() throws InterruptedException {
+        List<String> regions = new ArrayList<>();
+        for (int r = 0; r < 20; r++) regions.add("region_" + r);
+
+        // one request every half second, so that the rest of the window is still queued when cancelled
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(2));
+        server.delay(100);
+        CountDownLatch first = new CountDownLatch(1);
+        NSRegionFanOut fanOut = new NSRegionFanOut(regions).onProgress((region, done, total) -> first.countDown());
+        CompletableFuture<List<String>> future = fanOut.start();
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        fanOut.cancel();
+        int atCancel = server.requests();
+
+        assertTrue(fanOut.isCancelled());
+        assertThrows(CancellationException.class, future::join);
+        Thread.sleep(1500);
+        assertEquals(atCancel, server.requests(), "requests sent after cancelling");
+    }
+
+    @Test
+    void requestsRegionsWithPriorityOfCreatingThread() throws IOException, InterruptedException {
+        // a long interactive queue; background requests wait behind it unless starved
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(20));
+        List<CompletableFuture<String>> interactive = new ArrayList<>();
+        List<String> regions = List.of("region_1", "region_2", "region_3");
+        NSRegionFanOut fanOut = NSPriority.BACKGROUND_POLL.call(() -> new NSRegionFanOut(regions));
+        fanOut.start();
+        for (int i = 0; i < 10; i++)
+            interactive.add(new NSConnection(server.apiPrefix() + "nation=nation_" + i + ";q=name")
+                    .getResponseAsync());
+
+        fanOut.await();
+        for (CompletableFuture<String> f : interactive) assertTrue(f.isDone()); // served first
+    }
+}
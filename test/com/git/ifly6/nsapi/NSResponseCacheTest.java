@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NSResponseCacheTest {
+
+    private static final String QUERY = "q=nations";
+    private static final String BODY = "<WORLD><NATIONS>a,b,c</NATIONS></WORLD>";
+
+    @TempDir
+    Path directory;
+
+    private NSStubServer server;
+    private NSResponseCache previous;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().respond(QUERY, BODY).respond("q=newnations", BODY);
+        previous = NSConnection.getResponseCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setResponseCache(previous);
+        server.close();
+    }
+
+    @Test
+    void endpoint() {
+        assertEquals("members", NSResponseCache.endpoint(URI.create("https://x/api.cgi?wa=1&q=members")));
+        assertEquals("regionsbytag", NSResponseCache.endpoint(URI.create("https://x/api.cgi?q=regionsbytag;tags=a")));
+        assertEquals("", NSResponseCache.endpoint(URI.create("https://x/api.cgi?nation=a")));
+    }
+
+    @Test
+    void revalidatesWithZeroTTL() throws IOException {
+        NSResponseCache cache = new NSResponseCache(directory);
+        NSConnection.setResponseCache(cache);
+
+        for (int i = 0; i < 3; i++)
+            assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(3, server.requests());
+        assertEquals(2, server.notModified());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getRevalidations());
+        assertEquals(2L * BODY.length(), cache.getBytesSaved());
+    }
+
+    @Test
+    void servesFreshWithoutRequest() throws IOException {
+        NSResponseCache cache = new NSResponseCache(directory);
+        cache.setTTL("nations", Duration.ofHours(1));
+        NSConnection.setResponseCache(cache);
+
+        for (int i = 0; i < 3; i++)
+            assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(1, server.requests());
+        assertEquals(2, cache.getHits());
+
+        // persisted: a new cache on the same directory still hits
+        NSResponseCache reopened = new NSResponseCache(directory);
+        reopened.setTTL("nations", Duration.ofHours(1));
+        NSConnection.setResponseCache(reopened);
+        assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(1, server.requests());
+        assertEquals(1, reopened.getHits());
+    }
+
+    @Test
+    void storesOnlyCompletelyStreamedResponses() throws IOException {
+        NSResponseCache cache = new NSResponseCache(directory);
+        NSConnection.setResponseCache(cache);
+
+        // parser giving up half way through must not leave a truncated body in the cache
+        assertThrows(NSException.class, () -> new NSConnection(server.apiPrefix() + QUERY).parse(reader -> {
+            reader.next();
+            throw new NSException("give up");
+        }));
+        assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(0, server.notModified());
+
+        List<String> nations = new ArrayList<>();
+        new NSConnection(server.apiPrefix() + QUERY).parse(reader -> {
+            new NSXMLSelector().list("/WORLD/NATIONS", ',', nations::add).parse(reader);
+            return nations;
+        });
+        assertEquals(List.of("a", "b", "c"), nations);
+        assertEquals(1, server.notModified());
+    }
+
+    @Test
+    void ignoresUncachedEndpoints() throws IOException {
+        NSResponseCache cache = new NSResponseCache(directory);
+        NSConnection.setResponseCache(cache);
+
+        for (int i = 0; i < 2; i++)
+            assertEquals(BODY, new NSConnection(server.apiPrefix() + "q=newnations").getResponse());
+        assertEquals(2, server.requests());
+        assertEquals(0, server.notModified());
+        assertEquals(0, cache.getMisses());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSRetryPolicyTest {
+
+    private static final String QUERY = "q=newnations";
+    private static final String BODY = "<WORLD><NEWNATIONS>a,b,c</NEWNATIONS></WORLD>";
+
+    private NSStubServer server;
+    private NSRetryPolicy previous;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().respond(QUERY, BODY);
+        previous = NSConnection.getRetryPolicy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setRetryPolicy(previous);
+        server.close();
+    }
+
+    @Test
+    void retriesServerErrors() throws IOException {
+        NSConnection.setRetryPolicy(new NSRetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(50), 5,
+                Duration.ofSeconds(30)));
+        server.failNext(2, 503);
+        assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(3, server.requests());
+
+        server.failNext(3, 500);
+        NSResponseException e = assertThrows(NSResponseException.class,
+                () -> new NSConnection(server.apiPrefix() + QUERY).connect());
+        assertEquals(500, e.getStatusCode());
+        assertEquals(6, server.requests());
+    }
+
+    @Test
+    void doesNotRetryNotFound() {
+        NSConnection.setRetryPolicy(new NSRetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(50), 5,
+                Duration.ofSeconds(30)));
+        assertThrows(NSIOException.class, () -> new NSConnection(server.apiPrefix() + "q=nothing").connect());
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void honoursRetryAfter() throws IOException {
+        NSConnection.setRetryPolicy(new NSRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(50), 5,
+                Duration.ofSeconds(30)));
+        server.failNext(1, 429);
+        long start = System.currentTimeMillis();
+        assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    void circuitBreakerFailsFast() throws IOException, InterruptedException {
+        NSConnection.setRetryPolicy(new NSRetryPolicy(1, Duration.ZERO, Duration.ZERO, 2, Duration.ofMillis(500)));
+        server.failNext(2, 503);
+        for (int i = 0; i < 2; i++)
+            assertThrows(NSResponseException.class, () -> new NSConnection(server.apiPrefix() + QUERY).connect());
+        assertEquals(NSCircuitBreaker.State.OPEN, NSConnection.getCircuitState("newnations"));
+
+        // open: no request sent
+        assertThrows(NSCircuitBreaker.NSCircuitOpenException.class,
+                () -> new NSConnection(server.apiPrefix() + QUERY).connect());
+        assertEquals(2, server.requests());
+
+        // cooled down: trial request succeeds and closes circuit
+        Thread.sleep(600);
+        assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+        assertEquals(NSCircuitBreaker.State.CLOSED, NSConnection.getCircuitState("newnations"));
+    }
+
+    @Test
+    void cancelledTrialIsHandedBack() throws IOException, InterruptedException {
+        NSConnection.setRetryPolicy(new NSRetryPolicy(1, Duration.ZERO, Duration.ZERO, 2, Duration.ofMillis(300)));
+        server.world(new NSStubWorld(10, 2)).failNext(2, 503);
+        for (int i = 0; i < 2; i++)
+            assertThrows(NSResponseException.class, () -> new NSConnection(server.apiPrefix() + QUERY).connect());
+        Thread.sleep(400);
+
+        NSRateLimiter previousLimiter = NSConnection.getRateLimiter();
+        try {
+            // trial waits behind another endpoint's request for a permit, and is cancelled there
+            NSConnection.setRateLimiter(new NSStaticRateLimiter(2));
+            CompletableFuture<String> first = new NSConnection(server.apiPrefix() + "nation=nation_1;q=name")
+                    .getResponseAsync();
+            CompletableFuture<String> trial = new NSConnection(server.apiPrefix() + QUERY).getResponseAsync();
+            assertEquals(NSCircuitBreaker.State.HALF_OPEN, NSConnection.getCircuitState("newnations"));
+            trial.cancel(false);
+            first.join();
+            assertEquals(NSCircuitBreaker.State.OPEN, NSConnection.getCircuitState("newnations"));
+
+            // next request runs the trial instead
+            assertEquals(BODY, new NSConnection(server.apiPrefix() + QUERY).getResponse());
+            assertEquals(NSCircuitBreaker.State.CLOSED, NSConnection.getCircuitState("newnations"));
+            assertEquals(4, server.requests());
+
+        } finally {
+            NSConnection.setRateLimiter(previousLimiter);
+        }
+    }
+
+    @Test
+    void circuitBreakerCoversWholeEndpoint() {
+        NSConnection.setRetryPolicy(new NSRetryPolicy(1, Duration.ZERO, Duration.ZERO, 2, Duration.ofSeconds(30)));
+        server.world(new NSStubWorld(10, 2)).failNext(2, 503);
+        assertThrows(NSResponseException.class,
+                () -> new NSConnection(server.apiPrefix() + "nation=nation_1;q=name").connect());
+        assertThrows(NSResponseException.class,
+                () -> new NSConnection(server.apiPrefix() + "nation=nation_2;q=region+wa").connect());
+        assertEquals(NSCircuitBreaker.State.OPEN, NSConnection.getCircuitState("nation"));
+
+        // other shards fail fast; other endpoints are unaffected
+        assertThrows(NSCircuitBreaker.NSCircuitOpenException.class,
+                () -> new NSConnection(server.apiPrefix() + "nation=nation_3;q=endorsements").connect());
+        assertEquals(2, server.requests());
+        assertEquals(NSCircuitBreaker.State.CLOSED, NSConnection.getCircuitState("region"));
+    }
+
+    @Test
+    void delayIsCappedAndRespectsRetryAfter() {
+        NSRetryPolicy policy = new NSRetryPolicy(10, Duration.ofSeconds(1), Duration.ofSeconds(8), 5,
+                Duration.ofSeconds(30));
+        for (int attempt = 1; attempt < 10; attempt++) {
+            long cap = Math.min(1000L << (attempt - 1), 8000);
+            long delay = policy.delay(attempt, null).toMillis();
+            assertTrue(delay >= 0 && delay <= cap);
+            assertTrue(policy.delay(attempt, Duration.ofSeconds(20)).toMillis() >= 20_000);
+        }
+    }
+
+    @Test
+    void isTransient() {
+        assertTrue(NSRetryPolicy.isTransient(new NSResponseException("", 429, null)));
+        assertTrue(NSRetryPolicy.isTransient(new NSResponseException("", 502, null)));
+        assertTrue(NSRetryPolicy.isTransient(new NSIOException("", new ConnectException())));
+        assertTrue(NSRetryPolicy.isTransient(new NSCircuitBreaker.NSCircuitOpenException("")));
+        assertFalse(NSRetryPolicy.isTransient(new NSResponseException("", 404, null)));
+        assertFalse(NSRetryPolicy.isTransient(new NSIOException("")));
+    }
+}
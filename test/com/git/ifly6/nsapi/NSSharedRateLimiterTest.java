@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSSharedRateLimiterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sharesBudget() throws IOException {
+        // each limiter maps the file separately, as separate processes would
+        Path file = directory.resolve("ratelimit.bin");
+        NSSharedRateLimiter a = new NSSharedRateLimiter(file, 20);
+        NSSharedRateLimiter b = new NSSharedRateLimiter(file, 20);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10; i++) a.acquire();
+        });
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10; i++) b.acquire();
+        });
+        CompletableFuture.allOf(first, second).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // 20 permits at 20 per second; alone, each limiter would take about half that
+        assertTrue(seconds >= 0.9, String.format("20 permits took %.2f s", seconds));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = Files.writeString(directory.resolve("other.bin"), "not a rate limit file");
+        assertThrows(IOException.class, () -> new NSSharedRateLimiter(file, 1));
+    }
+}
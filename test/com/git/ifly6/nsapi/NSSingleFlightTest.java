@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class NSSingleFlightTest {
+
+    private static final String QUERY = "q=newnations";
+    private static final String BODY = "<WORLD><NEWNATIONS>a,b,c</NEWNATIONS></WORLD>";
+
+    private NSStubServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().respond(QUERY, BODY).delay(200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void coalescesWhileInFlight() {
+        NSSingleFlight<String> flight = new NSSingleFlight<>();
+        CompletableFuture<String> shared = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<String> a = flight.execute("k", () -> {
+            started.incrementAndGet();
+            return shared;
+        });
+        CompletableFuture<String> b = flight.execute("k", () -> {
+            started.incrementAndGet();
+            return shared;
+        });
+        assertEquals(1, started.get());
+
+        a.cancel(true); // one caller giving up does not affect the other
+        shared.complete("x");
+        assertEquals("x", b.join());
+        assertEquals(0, flight.size());
+
+        flight.execute("k", () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("y");
+        });
+        assertEquals(2, started.get()); // not a cache
+    }
+
+    @Test
+    void sendsOneRequestForConcurrentIdenticalUrls() {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        futures.add(new NSConnection(server.apiPrefix() + QUERY).getResponseAsync());
+        futures.add(new NSConnection(server.apiPrefix() + QUERY).getResponseAsync());
+        futures.add(new NSConnection(server.apiPrefix() + QUERY + "+").getResponseAsync());
+        futures.add(new NSConnection(server.apiPrefix() + "Q=NewNations").getResponseAsync());
+
+        for (CompletableFuture<String> f : futures)
+            assertFalse(f.join().isEmpty());
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void operationMayUseFlightItself() {
+        NSSingleFlight<String> flight = new NSSingleFlight<>();
+        CompletableFuture<String> shared = new CompletableFuture<>();
+        List<CompletableFuture<String>> joined = new ArrayList<>();
+
+        // a recursive update of the map would throw here if the operation were started within it
+        CompletableFuture<String> a = flight.execute("k", () -> {
+            joined.add(flight.execute("k", () -> CompletableFuture.completedFuture("other")));
+            return shared;
+        });
+        shared.complete("x");
+        assertEquals("x", a.join());
+        assertEquals("x", joined.get(0).join());
+    }
+
+    @Test
+    void doesNotCoalesceAcrossPriorities() {
+        CompletableFuture<String> poll = NSPriority.BACKGROUND_POLL.call(
+                () -> new NSConnection(server.apiPrefix() + QUERY).getResponseAsync());
+        CompletableFuture<String> send = NSPriority.SEND_CRITICAL.call(
+                () -> new NSConnection(server.apiPrefix() + QUERY).getResponseAsync());
+        assertEquals(poll.join(), send.join());
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    void normalisesEquivalentUrls() {
+        assertEquals(NSConnection.normalise("a?q=region;region=the north pacific"),
+                NSConnection.normalise("A?q=region;region=The%20North_Pacific+"));
+    }
+}
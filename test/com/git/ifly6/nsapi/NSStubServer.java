@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the NationStates API. Serves fixed bodies keyed by query string, falling back to a generated
+ * {@link NSStubWorld} if one is set, and, if enabled, emulates the API's rate limit with its headers. Bodies are served with an {@code ETag}; requests with a matching
+ * {@code If-None-Match} get {@code 304 Not Modified}. If enabled, bodies are compressed for clients accepting it.
+ */
+public class NSStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, String> bodies = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private final Map<String, AtomicLong> bytesSent = new ConcurrentHashMap<>();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureStatus;
+
+    private volatile long delayMillis;
+    private volatile String encoding;
+    private volatile NSStubWorld world;
+    private int limit = -1;
+    private long windowMillis;
+    private long windowStart;
+    private int windowCount;
+
+    public NSStubServer() throws IOException {
+        this(0);
+    }
+
+    /** @param port on which to listen; zero for any free port */
+    public NSStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/cgi-bin/api.cgi", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** @return API prefix, in the same form as {@link NSConnection#API_PREFIX}, pointing at this server */
+    public String apiPrefix() {
+        return String.format("http://localhost:%d/cgi-bin/api.cgi?", server.getAddress().getPort());
+    }
+
+    /**
+     * Serves body for exact query string.
+     * @param query to match
+     * @param body  to serve
+     * @return this
+     */
+    public NSStubServer respond(String query, String body) {
+        bodies.put(query, body);
+        return this;
+    }
+
+    /**
+     * Serves queries not set with {@link #respond(String, String)} from world.
+     * @param world to serve
+     * @return this
+     */
+    public NSStubServer world(NSStubWorld world) {
+        this.world = world;
+        return this;
+    }
+
+    /**
+     * Emulates rate limit of {@code limit} requests in fixed windows of {@code windowSeconds}, sending
+     * {@code RateLimit-*} headers and returning 429 with {@code Retry-After} when exceeded.
+     * @return this
+     */
+    public synchronized NSStubServer rateLimit(int limit, int windowSeconds) {
+        this.limit = limit;
+        this.windowMillis = windowSeconds * 1000L;
+        this.windowStart = System.currentTimeMillis();
+        this.windowCount = 0;
+        return this;
+    }
+
+    /**
+     * Fails the next requests with status; {@code 429} responses carry {@code Retry-After: 1}.
+     * @param count  of requests to fail
+     * @param status to fail them with
+     * @return this
+     */
+    public NSStubServer failNext(int count, int status) {
+        this.failureStatus = status;
+        this.failures.set(count);
+        return this;
+    }
+
+    /**
+     * Delays every response, emulating network latency.
+     * @param millis to wait before responding
+     * @return this
+     */
+    public NSStubServer delay(long millis) {
+        this.delayMillis = millis;
+        return this;
+    }
+
+    /**
+     * Compresses bodies for clients whose {@code Accept-Encoding} includes encoding.
+     * @param encoding {@code gzip} or {@code deflate}; null to never compress
+     * @return this
+     */
+    public NSStubServer compress(String encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    /**
+     * @param query as passed to {@link #respond(String, String)}
+     * @return number of body bytes sent, after any compression, for query
+     */
+    public long bytesSent(String query) {
+        AtomicLong sent = bytesSent.get(query);
+        return sent == null ? 0 : sent.get();
+    }
+
+    /** @return number of requests received */
+    public int requests() {
+        return requests.get();
+    }
+
+    /** @return number of requests refused with 429 */
+    public int rateLimited() {
+        return rateLimited.get();
+    }
+
+    /** @return number of distinct client connections over which requests were received */
+    public int connections() {
+        return connections.size();
+    }
+
+    /** @return number of requests answered with 304 */
+    public int notModified() {
+        return notModified.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        connections.add(exchange.getRemoteAddress());
+        if (delayMillis > 0) try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String query = exchange.getRequestURI().getRawQuery();
+        int status = 200;
+        synchronized (this) {
+            if (limit > 0) {
+                long now = System.currentTimeMillis();
+                if (now - windowStart >= windowMillis) {
+                    windowStart = now;
+                    windowCount = 0;
+                }
+                long reset = (long) Math.ceil((windowStart + windowMillis - now) / 1000D);
+                windowCount++;
+                exchange.getResponseHeaders().add("RateLimit-Policy",
+                        String.format("%d;w=%d", limit, windowMillis / 1000));
+                exchange.getResponseHeaders().add("RateLimit-Limit", String.valueOf(limit));
+                exchange.getResponseHeaders().add("RateLimit-Remaining",
+                        String.valueOf(Math.max(0, limit - windowCount)));
+                exchange.getResponseHeaders().add("RateLimit-Reset", String.valueOf(reset));
+                if (windowCount > limit) {
+                    status = 429;
+                    rateLimited.incrementAndGet();
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(reset));
+                }
+            }
+        }
+
+        if (status == 200 && failures.getAndUpdate(i -> Math.max(0, i - 1)) > 0) {
+            status = failureStatus;
+            if (status == 429) exchange.getResponseHeaders().add("Retry-After", "1");
+        }
+
+        String body = bodies.get(query);
+        NSStubWorld world = this.world;
+        if (body == null && world != null && status == 200) body = world.respond(query);
+        if (status == 200 && body == null) status = 404;
+        if (status != 200) body = "<ERROR/>";
+
+        if (status == 200) {
+            String etag = String.format("\"%08x\"", body.hashCode());
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        String encoding = this.encoding;
+        if (status == 200 && encoding != null && accepted != null && accepted.contains(encoding)) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream os = encoding.equals("gzip")
+                    ? new GZIPOutputStream(compressed)
+                    : new DeflaterOutputStream(compressed)) {
+                os.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+
+        bytesSent.computeIfAbsent(query, q -> new AtomicLong()).addAndGet(bytes.length);
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Runs stub server standalone, so that the application or manual tests can be pointed at it with
+     * {@code -Dcommunique.api.prefix=...}.
+     * @param args port, number of nations, and number of regions; defaults 8080, 10000, 500
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int nations = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int regions = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        NSStubServer server = new NSStubServer(port).world(new NSStubWorld(nations, regions)).rateLimit(50, 30);
+        System.out.printf("Serving %d nations in %d regions; run with -D%s=%s%n",
+                nations, regions, NSConnection.API_PREFIX_PROPERTY, server.apiPrefix());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generated NationStates world served by {@link NSStubServer#world(NSStubWorld)}. Nation {@code i} is named
+ * {@code nation_i} and lives in region {@code region_(i % regions)}. Every third nation is a World Assembly member; the
+ * first member in each region is its delegate and is endorsed by the others. Even regions are tagged {@code medium}
+ * and regions divisible by three {@code anarchist}.
+ * <p>
+ * Answers the nation, region, world ({@code nations}, {@code newnations}, {@code newnationdetails},
+ * {@code regionsbytag}, {@code happenings}), World Assembly ({@code members}, {@code delegates}, {@code resolution},
+ * {@code proposals}) and {@code sendTG} endpoints in the same shape as the API. Telegrams sent are recorded, not
+ * delivered.
+ * </p>
+ */
+public class NSStubWorld {
+
+    private final int nations;
+    private final int regions;
+    private final long now = System.currentTimeMillis() / 1000;
+    private final List<String> telegrams = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param nations number of nations
+     * @param regions number of regions, at least one
+     */
+    public NSStubWorld(int nations, int regions) {
+        this.nations = nations;
+        this.regions = regions;
+    }
+
+    /** @return names of every nation */
+    public List<String> nations() {
+        return IntStream.range(0, nations).mapToObj(i -> "nation_" + i).collect(Collectors.toList());
+    }
+
+    /** @return names of World Assembly members */
+    public List<String> members() {
+        return IntStream.range(0, nations).filter(this::isMember).mapToObj(i -> "nation_" + i)
+                .collect(Collectors.toList());
+    }
+
+    /** @return names of World Assembly delegates */
+    public List<String> delegates() {
+        return IntStream.range(0, regions).map(this::delegate).filter(d -> d >= 0).mapToObj(d -> "nation_" + d)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param region number
+     * @return names of nations in region
+     */
+    public List<String> residents(int region) {
+        return IntStream.range(0, nations).filter(i -> i % regions == region).mapToObj(i -> "nation_" + i)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param tag region tag
+     * @return names of regions with tag
+     */
+    public List<String> regionsTagged(String tag) {
+        return IntStream.range(0, regions).filter(r -> tags(r).contains(tag)).mapToObj(r -> "region_" + r)
+                .collect(Collectors.toList());
+    }
+
+    /** @return recipients of telegrams sent, in order */
+    public List<String> telegrams() {
+        synchronized (telegrams) {
+            return new ArrayList<>(telegrams);
+        }
+    }
+
+    /**
+     * Answers raw query string as the API would.
+     * @param query raw query string
+     * @return XML body; null if the API would answer 404
+     */
+    public String respond(String query) {
+        Map<String, String> params = parameters(query);
+        if ("sendtg".equalsIgnoreCase(params.get("a"))) {
+            telegrams.add(params.getOrDefault("to", ""));
+            return "queued";
+        }
+
+        Set<String> shards = Arrays.stream(params.getOrDefault("q", "").split(" "))
+                .map(String::toLowerCase).collect(Collectors.toSet());
+        if (params.containsKey("nation")) return nation(params.get("nation"), shards);
+        if (params.containsKey("region")) return region(params.get("region"), shards);
+        if (params.containsKey("wa")) return assembly(params.get("wa"), shards);
+        return world(params, shards);
+    }
+
+    private String nation(String name, Set<String> shards) {
+        int i = index(name, "nation_", nations);
+        if (i < 0) return null;
+        StringBuilder sb = new StringBuilder(String.format("<NATION id=\"nation_%d\">", i));
+        if (shards.contains("name")) sb.append(String.format("<NAME>Nation %d</NAME>", i));
+        if (shards.contains("region")) sb.append(String.format("<REGION>Region %d</REGION>", i % regions));
+        if (shards.contains("category")) sb.append("<CATEGORY>Inoffensive Centrist Democracy</CATEGORY>");
+        if (shards.contains("endorsements")) sb.append("<ENDORSEMENTS>")
+                .append(String.join(",", endorsers(i))).append("</ENDORSEMENTS>");
+        if (shards.contains("tgcanrecruit")) sb.append(String.format("<TGCANRECRUIT>%d</TGCANRECRUIT>",
+                i % 5 == 0 ? 0 : 1));
+        if (shards.contains("tgcancampaign")) sb.append(String.format("<TGCANCAMPAIGN>%d</TGCANCAMPAIGN>",
+                i % 7 == 0 ? 0 : 1));
+        if (shards.contains("census")) sb.append(String.format(
+                "<CENSUS><SCALE id=\"65\"><SCORE>%.2f</SCORE><RANK>%d</RANK></SCALE></CENSUS>",
+                1.5 * endorsers(i).size() + i % 10, i + 1));
+        return sb.append("</NATION>").toString();
+    }
+
+    private String region(String name, Set<String> shards) {
+        int r = index(name, "region_", regions);
+        if (r < 0) return null;
+        List<String> residents = residents(r);
+        StringBuilder sb = new StringBuilder(String.format("<REGION id=\"region_%d\">", r));
+        if (shards.contains("name")) sb.append(String.format("<NAME>Region %d</NAME>", r));
+        if (shards.contains("founder")) sb.append("<FOUNDER>")
+                .append(residents.isEmpty() ? "0" : residents.get(0)).append("</FOUNDER>");
+        if (shards.contains("delegate")) sb.append("<DELEGATE>")
+                .append(delegate(r) < 0 ? "0" : "nation_" + delegate(r)).append("</DELEGATE>");
+        if (shards.contains("nations")) sb.append("<NATIONS>")
+                .append(String.join(":", residents)).append("</NATIONS>");
+        if (shards.contains("numnations")) sb.append(String.format("<NUMNATIONS>%d</NUMNATIONS>", residents.size()));
+        return sb.append("</REGION>").toString();
+    }
+
+    private String assembly(String council, Set<String> shards) {
+        StringBuilder sb = new StringBuilder(String.format("<WA council=\"%s\">", council));
+        if (shards.contains("members"))
+            sb.append("<MEMBERS>").append(String.join(",", members())).append("</MEMBERS>");
+        if (shards.contains("delegates"))
+            sb.append("<DELEGATES>").append(String.join(",", delegates())).append("</DELEGATES>");
+        if (shards.contains("numnations"))
+            sb.append(String.format("<NUMNATIONS>%d</NUMNATIONS>", members().size()));
+
+        if (shards.contains("resolution")) {
+            List<String> members = members();
+            List<String> delegates = delegates();
+            sb.append("<RESOLUTION>").append(String.format("<ID>%s_proposal</ID>", delegates.isEmpty()
+                    ? "nation_0" : delegates.get(0)));
+            sb.append("<NAME>Repeal &quot;Stub Resolution&quot;</NAME><CATEGORY>Repeal</CATEGORY>");
+            if (shards.contains("voters")) {
+                sb.append("<VOTES_FOR>");
+                for (int i = 0; i < members.size(); i += 2) sb.append("<N>").append(members.get(i)).append("</N>");
+                sb.append("</VOTES_FOR><VOTES_AGAINST>");
+                for (int i = 1; i < members.size(); i += 2) sb.append("<N>").append(members.get(i)).append("</N>");
+                sb.append("</VOTES_AGAINST>");
+            }
+            if (shards.contains("delvotes")) {
+                for (String tag : new String[] {"DELVOTES_FOR", "DELVOTES_AGAINST"}) {
+                    sb.append('<').append(tag).append('>');
+                    for (int d = tag.endsWith("FOR") ? 0 : 1; d < delegates.size(); d += 2) {
+                        int index = Integer.parseInt(delegates.get(d).substring("nation_".length()));
+                        sb.append(String.format("<DELEGATE><NATION>%s</NATION><VOTES>%d</VOTES></DELEGATE>",
+                                delegates.get(d), endorsers(index).size() + 1));
+                    }
+                    sb.append("</").append(tag).append('>');
+                }
+            }
+            sb.append("</RESOLUTION>");
+        }
+
+        if (shards.contains("proposals")) {
+            sb.append("<PROPOSALS>");
+            List<String> delegates = delegates();
+            for (int p = 0; p < Math.min(3, delegates.size()); p++)
+                sb.append(String.format("<PROPOSAL id=\"%s_%d\"><APPROVALS>%s</APPROVALS><NAME>Proposal %d</NAME>"
+                                + "</PROPOSAL>",
+                        delegates.get(p), p, String.join(":", delegates.subList(p, delegates.size())), p));
+            sb.append("</PROPOSALS>");
+        }
+        return sb.append("</WA>").toString();
+    }
+
+    private String world(Map<String, String> params, Set<String> shards) {
+        StringBuilder sb = new StringBuilder("<WORLD>");
+        if (shards.contains("nations"))
+            sb.append("<NATIONS>").append(String.join(",", nations())).append("</NATIONS>");
+        if (shards.contains("newnations"))
+            sb.append("<NEWNATIONS>").append(String.join(",", newest(50))).append("</NEWNATIONS>");
+        if (shards.contains("newnationdetails")) {
+            sb.append("<NEWNATIONDETAILS>");
+            for (String n : newest(50)) {
+                int i = Integer.parseInt(n.substring("nation_".length()));
+                sb.append(String.format("<NEWNATION name=\"%s\"><REGION>region_%d</REGION>"
+                        + "<FOUNDEDTIME>%d</FOUNDEDTIME></NEWNATION>", n, i % regions, now - (nations - i) * 60L));
+            }
+            sb.append("</NEWNATIONDETAILS>");
+        }
+        if (shards.contains("regionsbytag")) {
+            List<String> tagged = IntStream.range(0, regions).mapToObj(r -> "region_" + r)
+                    .collect(Collectors.toList());
+            for (String tag : params.getOrDefault("tags", "").split(",")) {
+                boolean excluded = tag.startsWith("-");
+                List<String> matching = regionsTagged(excluded ? tag.substring(1) : tag);
+                tagged.removeIf(r -> excluded == matching.contains(r));
+            }
+            sb.append("<REGIONS>").append(String.join(",", tagged)).append("</REGIONS>");
+        }
+        if (shards.contains("happenings")) {
+            sb.append("<HAPPENINGS>");
+            List<String> newest = newest(10);
+            for (int k = 0; k < newest.size(); k++) {
+                int i = Integer.parseInt(newest.get(k).substring("nation_".length()));
+                sb.append(String.format("<EVENT id=\"%d\"><TIMESTAMP>%d</TIMESTAMP><TEXT>@@%s@@ relocated from "
+                                + "%%%%region_%d%%%% to %%%%region_%d%%%%.</TEXT></EVENT>",
+                        1000 + i, now - k * 30L, newest.get(k), (i + 1) % regions, i % regions));
+            }
+            sb.append("</HAPPENINGS>");
+        }
+        return sb.append("</WORLD>").toString();
+    }
+
+    /** @return endorsers of nation: if it is a delegate, the other members in its region */
+    private List<String> endorsers(int i) {
+        int r = i % regions;
+        if (delegate(r) != i) return Collections.emptyList();
+        return IntStream.range(0, nations).filter(j -> j != i && j % regions == r && isMember(j))
+                .mapToObj(j -> "nation_" + j).collect(Collectors.toList());
+    }
+
+    /** @return delegate of region; -1 if none */
+    private int delegate(int r) {
+        for (int i = r; i < nations; i += regions) if (isMember(i)) return i;
+        return -1;
+    }
+
+    private boolean isMember(int i) {
+        return i % 3 == 0;
+    }
+
+    private List<String> tags(int r) {
+        List<String> tags = new ArrayList<>();
+        if (r % 2 == 0) tags.add("medium");
+        if (r % 3 == 0) tags.add("anarchist");
+        return tags;
+    }
+
+    /** @return up to count newest nations, newest first */
+    private List<String> newest(int count) {
+        List<String> newest = new ArrayList<>();
+        for (int i = nations - 1; i >= Math.max(0, nations - count); i--) newest.add("nation_" + i);
+        return newest;
+    }
+
+    /** @return index of name with prefix, if less than bound; else -1 */
+    private static int index(String name, String prefix, int bound) {
+        String ref = name.trim().toLowerCase().replace(' ', '_');
+        if (!ref.startsWith(prefix)) return -1;
+        try {
+            int i = Integer.parseInt(ref.substring(prefix.length()));
+            return i >= 0 && i < bound ? i : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** @return decoded parameters of query, which may be separated by {@code &} or {@code ;} */
+    private static Map<String, String> parameters(String query) {
+        if (query == null) return new HashMap<>();
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String parameter : query.split("[&;]")) {
+            int eq = parameter.indexOf('=');
+            if (eq < 0) continue;
+            params.put(parameter.substring(0, eq).toLowerCase(),
+                    URLDecoder.decode(parameter.substring(eq + 1), StandardCharsets.UTF_8).trim());
+        }
+        return params;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.git.ifly6.nsapi.ctelegram.io.CommHappenings;
+import com.git.ifly6.nsapi.ctelegram.io.CommWorldAssembly;
+import com.git.ifly6.nsapi.ctelegram.monitors.updaters.CommNewNation;
+import com.git.ifly6.nsapi.telegram.JTelegramConnection;
+import com.git.ifly6.nsapi.telegram.JTelegramKeys;
+import com.git.ifly6.nsapi.telegram.JTelegramResponseCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Exercises the API classes end to end against {@link NSStubServer} serving a {@link NSStubWorld}. */
+class NSStubWorldTest {
+
+    @TempDir
+    Path directory;
+
+    private final NSStubWorld world = new NSStubWorld(40, 4);
+    private NSStubServer server;
+    private String previousPrefix;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(world);
+        previousPrefix = NSConnection.getApiPrefix();
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setApiPrefix(server.apiPrefix());
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(100));
+        NSConnection.setResponseCache(new NSResponseCache(directory));
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSConnection.setApiPrefix(previousPrefix);
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        server.close();
+    }
+
+    @Test
+    void rejectsMalformedPrefix() {
+        assertThrows(IllegalArgumentException.class, () -> NSConnection.setApiPrefix("http://localhost/api.cgi"));
+    }
+
+    @Test
+    void servesWorld() throws IOException {
+        assertEquals(world.nations(), NSWorld.getAllNations());
+        assertEquals(world.members(), NSWorld.getWAMembers());
+        assertEquals(world.delegates(), NSWorld.getDelegates());
+        assertEquals(List.of("region_2"), NSWorld.getRegionTag("medium,-anarchist"));
+        assertEquals("nation_39", NSWorld.getNew().get(0));
+        assertEquals("nation_39", CommNewNation.getNewNations().get(0).name);
+        assertTrue(CommHappenings.getActiveNations().containsKey("nation_39"));
+    }
+
+    @Test
+    void servesNationsAndRegions() {
+        NSNation delegate = new NSNation("nation_0").populateData();
+        assertEquals("Region 0", delegate.getRegion());
+        assertEquals(List.of("nation_12", "nation_24", "nation_36"), delegate.getEndoList());
+        assertThrows(NSNation.NSNoSuchNationException.class, () -> new NSNation("nation_400").populateData());
+
+        NSRegion region = new NSRegion("region_1").populateData();
+        assertEquals(world.residents(1), region.getRegionMembers());
+        assertEquals("nation_9", region.getDelegateName());
+        assertThrows(NSRegion.NoSuchRegionException.class, () -> new NSRegion("region_40").populateData());
+
+        assertFalse(new NSNation("nation_5").populateData().isRecruitable());
+        assertTrue(new NSNation("nation_6").populateData().isRecruitable());
+    }
+
+    @Test
+    void servesAssembly() {
+        CommWorldAssembly.Chamber ga = CommWorldAssembly.Chamber.GA;
+        assertEquals("nation_0_proposal", CommWorldAssembly.getResolutionID(ga));
+        assertEquals(world.delegates().size(),
+                CommWorldAssembly.getDelegates(ga, CommWorldAssembly.Vote.FOR).size()
+                        + CommWorldAssembly.getDelegates(ga, CommWorldAssembly.Vote.AGAINST).size());
+        assertEquals(world.delegates(), CommWorldAssembly.getApprovers("nation_0_0"));
+    }
+
+    @Test
+    void recordsTelegrams() throws IOException {
+        JTelegramKeys keys = new JTelegramKeys("client", "secret", "1");
+        assertEquals(JTelegramResponseCode.QUEUED, new JTelegramConnection(keys, "nation_3").verify());
+        new JTelegramConnection(keys, "nation_4", true);
+        assertEquals(List.of("nation_3"), world.telegrams());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import com.git.ifly6.nsapi.telegram.JTelegramConnection;
+import com.git.ifly6.nsapi.telegram.JTelegramKeys;
+import com.git.ifly6.nsapi.telegram.JTelegramResponseCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSTrafficArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private final NSStubWorld world = new NSStubWorld(30, 3);
+    private NSStubServer server;
+    private NSExchange previousExchange;
+    private String previousPrefix;
+    private NSRateLimiter previousLimiter;
+    private NSResponseCache previousCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer().world(world).compress("gzip");
+        previousExchange = NSTransport.getInstance().getExchange();
+        previousPrefix = NSConnection.getApiPrefix();
+        previousLimiter = NSConnection.getRateLimiter();
+        previousCache = NSConnection.getResponseCache();
+        NSConnection.setApiPrefix(server.apiPrefix());
+        NSConnection.setRateLimiter(new NSStaticRateLimiter(100));
+        NSConnection.setResponseCache(new NSResponseCache(directory.resolve("cache")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        NSTransport.getInstance().setExchange(previousExchange);
+        NSConnection.setApiPrefix(previousPrefix);
+        NSConnection.setRateLimiter(previousLimiter);
+        NSConnection.setResponseCache(previousCache);
+        server.close();
+    }
+
+    /**
+     * Waits for recorder to save exchanges. A body can be read to its end before the client signals completion, which
+     * is when it is saved.
+     */
+    private static void awaitRecorded(NSTrafficArchive.Recorder recorder, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recorder.getRecorded() < count && System.nanoTime() < deadline) Thread.sleep(10);
+    }
+
+    @Test
+    void replaysRecordedTraffic() throws IOException, InterruptedException {
+        Path archive = directory.resolve("traffic.bin");
+        NSTransport transport = NSTransport.getInstance();
+        server.delay(100);
+        List<String> nations;
+        try (NSTrafficArchive.Recorder recorder = NSTrafficArchive.record(archive, transport.live())) {
+            transport.setExchange(recorder);
+            nations = NSWorld.getAllNations();
+            new NSNation("nation_3").populateData();
+            awaitRecorded(recorder, 2);
+            assertEquals(2, NSTrafficArchive.read(archive).size()); // readable before closing
+        }
+        server.close();
+
+        List<NSTrafficArchive.Exchange> exchanges = NSTrafficArchive.read(archive);
+        assertTrue(exchanges.get(0).getLatencyNanos() >= 100_000_000L, exchanges.get(0).toString());
+        assertEquals("gzip", exchanges.get(0).getHeaders().firstValue("Content-Encoding").orElse(""));
+
+        NSConnection.setResponseCache(new NSResponseCache(directory.resolve("empty")));
+        transport.setExchange(NSTrafficArchive.replay(archive, 10));
+        long start = System.nanoTime();
+        assertEquals(nations, NSWorld.getAllNations());
+        assertEquals("Region 0", new NSNation("nation_3").populateData().getRegion());
+        assertTrue(System.nanoTime() - start < 150_000_000L); // latencies replayed ten times faster
+
+        // misses fail once, without retrying or counting against the endpoint
+        NSRetryPolicy previousPolicy = NSConnection.getRetryPolicy();
+        try {
+            NSConnection.setRetryPolicy(new NSRetryPolicy(3, Duration.ofMillis(200), Duration.ofMillis(200), 2,
+                    Duration.ofSeconds(30)));
+            start = System.nanoTime();
+            for (int i = 0; i < 2; i++)
+                assertThrows(FileNotFoundException.class,
+                        () -> new NSConnection(server.apiPrefix() + "q=banners").connect());
+            assertTrue(System.nanoTime() - start < 200_000_000L);
+            assertEquals(NSCircuitBreaker.State.CLOSED, NSConnection.getCircuitState("banners"));
+        } finally {
+            NSConnection.setRetryPolicy(previousPolicy);
+        }
+    }
+
+    @Test
+    void redactsTelegramKeys() throws IOException, InterruptedException {
+        Path archive = directory.resolve("telegrams.bin");
+        NSTransport transport = NSTransport.getInstance();
+        try (NSTrafficArchive.Recorder recorder = NSTrafficArchive.record(archive, transport.live())) {
+            transport.setExchange(recorder);
+            new JTelegramConnection(new JTelegramKeys("client", "secret", "1"), "nation_1").verify();
+            awaitRecorded(recorder, 1);
+            assertEquals(1, recorder.getRecorded());
+        }
+
+        String uri = NSTrafficArchive.read(archive).get(0).getURI();
+        assertFalse(uri.contains("secret") || uri.contains("client=client"), uri);
+
+        transport.setExchange(NSTrafficArchive.replay(archive, Double.POSITIVE_INFINITY));
+        assertEquals(JTelegramResponseCode.QUEUED,
+                new JTelegramConnection(new JTelegramKeys("other", "keys", "1"), "nation_1").verify());
+        assertEquals(List.of("nation_1"), world.telegrams()); // replayed send did not reach server
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NSTransportTest {
+
+    private NSStubServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NSStubServer()
+                .respond("q=newnations", "<WORLD><NEWNATIONS>a,b</NEWNATIONS></WORLD>")
+                .respond("q=happenings", "<WORLD><HAPPENINGS></HAPPENINGS></WORLD>");
+        NSMetrics.getInstance().reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void reusesConnections() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            new NSConnection(server.apiPrefix() + "q=newnations").getResponse();
+            new NSConnection(server.apiPrefix() + "q=happenings").getResponse();
+        }
+        assertEquals(6, server.requests());
+        assertEquals(1, server.connections());
+    }
+
+    @Test
+    void recordsLatency() throws IOException {
+        server.delay(50);
+        new NSConnection(server.apiPrefix() + "q=newnations").getResponse();
+        new NSConnection(server.apiPrefix() + "q=newnations").getResponse();
+
+        NSMetrics metrics = NSMetrics.getInstance();
+        NSHistogram latency = metrics.get("newnations", NSMetrics.Phase.FIRST_BYTE).orElseThrow();
+        assertEquals(2, latency.getCount());
+        assertEquals(0, metrics.getFailures("newnations"));
+        assertTrue(latency.getMean().toMillis() >= 50, latency.toString());
+        assertTrue(latency.getMax().compareTo(latency.getMean()) >= 0);
+        assertFalse(metrics.get("happenings", NSMetrics.Phase.FIRST_BYTE).isPresent());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 ifly6
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this class file and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.git.ifly6.nsapi;
+
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NSXMLSelectorTest {
+
+    private static final String NATION = "<NATION id=\"a\"><NAME>Imperium Anglorum</NAME>"
+            + "<ENDORSEMENTS>b,c_d,,e </ENDORSEMENTS>"
+            + "<CENSUS><SCALE id=\"66\"><SCORE>1</SCORE></SCALE><SCALE id=\"65\"><SCORE>2.5</SCORE></SCALE></CENSUS>"
+            + "<REGION><NAME>Not this</NAME></REGION></NATION>";
+
+    @Test
+    void text() throws XMLStreamException {
+        List<String> names = new ArrayList<>();
+        List<String> scores = new ArrayList<>();
+        new NSXMLSelector()
+                .text("/NATION/NAME", names::add)
+                .text("/NATION/CENSUS/SCALE[@id=65]/SCORE", scores::add)
+                .parse(NSXMLSelector.createReader(NATION));
+        assertEquals(List.of("Imperium Anglorum"), names);
+        assertEquals(List.of("2.5"), scores);
+    }
+
+    @Test
+    void list() throws XMLStreamException {
+        List<String> endorsements = new ArrayList<>();
+        new NSXMLSelector()
+                .list("/NATION/ENDORSEMENTS", ',', endorsements::add)
+                .parse(NSXMLSelector.createReader(NATION));
+        assertEquals(List.of("b", "c_d", "e"), endorsements);
+    }
+
+    @Test
+    void listSplitAcrossChunks() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder("<WORLD><NATIONS>");
+        for (int i = 0; i < 50_000; i++) sb.append(i == 0 ? "" : ",").append("nation_").append(i);
+        sb.append("</NATIONS></WORLD>");
+
+        List<String> nations = new ArrayList<>();
+        new NSXMLSelector()
+                .list("/WORLD/NATIONS", ',', nations::add)
+                .parse(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(50_000, nations.size());
+        assertEquals("nation_12345", nations.get(12345));
+    }
+
+    @Test
+    void namesAreNotInterned() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder("<WORLD><REGIONS>");
+        for (int i = 0; i < 20_000; i++) sb.append(i == 0 ? "" : ",").append("Selector Region ").append(i);
+        sb.append("</REGIONS></WORLD>");
+
+        List<String> regions = new ArrayList<>();
+        new NSXMLSelector()
+                .names(NSXMLSelector.Path.compile("/WORLD/REGIONS"), ',', regions::add)
+                .parse(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(20_000, regions.size());
+        assertEquals("selector_region_12345", regions.get(12345));
+        for (String region : regions) assertEquals(-1, NSNameDictionary.getInstance().find(region), region);
+    }
+
+    @Test
+    void records() throws XMLStreamException {
+        String xml = "<WA><PROPOSALS>"
+                + "<PROPOSAL id=\"p1\"><APPROVALS>a:b</APPROVALS></PROPOSAL>"
+                + "<PROPOSAL id=\"p2\"><APPROVALS></APPROVALS></PROPOSAL>"
+                + "</PROPOSALS></WA>";
+        List<String> out = new ArrayList<>();
+        String[] id = new String[1];
+        List<String> approvers = new ArrayList<>();
+        new NSXMLSelector()
+                .attribute("/WA/PROPOSALS/PROPOSAL", "id", i -> id[0] = i)
+                .list("/WA/PROPOSALS/PROPOSAL/APPROVALS", ':', approvers::add)
+                .end("/WA/PROPOSALS/PROPOSAL", () -> {
+                    out.add(id[0] + "=" + approvers);
+                    approvers.clear();
+                })
+                .parse(NSXMLSelector.createReader(xml));
+        assertEquals(List.of("p1=[a, b]", "p2=[]"), out);
+    }
+
+    @Test
+    void compiledPathReused() throws XMLStreamException {
+        NSXMLSelector.Path census = NSXMLSelector.Path.compile("/NATION/CENSUS");
+        NSXMLSelector.Path score = census.resolve("SCALE[@id=65]/SCORE");
+        assertEquals("/NATION/CENSUS/SCALE[@id=65]/SCORE", score.toString());
+        for (int i = 0; i < 2; i++) {
+            List<String> scores = new ArrayList<>();
+            new NSXMLSelector().text(score, scores::add).parse(NSXMLSelector.createReader(NATION));
+            assertEquals(List.of("2.5"), scores);
+        }
+    }
+
+    @Test
+    void rejectsRelativePath() {
+        assertThrows(IllegalArgumentException.class, () -> new NSXMLSelector().text("NATION/NAME", s -> { }));
+    }
+}